@@ -1,6 +1,8 @@
 package com.engindearing.omnicot;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -8,33 +10,182 @@ import android.widget.Button;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.atakmap.android.maps.MapView;
+import com.atakmap.android.maps.Shape;
 import com.atakmap.coremap.log.Log;
 import com.atakmap.coremap.maps.coords.GeoBounds;
 import com.atakmap.coremap.maps.coords.GeoCalculations;
 import com.atakmap.coremap.maps.coords.GeoPoint;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-public class AOIAdapter extends RecyclerView.Adapter<AOIAdapter.AOIViewHolder> {
+/**
+ * The AOI management list, kept current from {@link AOIRegistry} and
+ * {@link AOIAlertRuleStore} events. Changes are coalesced into one new list
+ * snapshot, which is diffed against the shown list on a background thread so
+ * only the rows that were added, removed, renamed or re-armed are rebound.
+ * A rule running out raises no event, so the list also updates itself when
+ * the next shown alert expires. Item IDs are stable per shape UID while the
+ * shape is listed.
+ */
+public class AOIAdapter extends RecyclerView.Adapter<AOIAdapter.AOIViewHolder>
+        implements AOIRegistry.Listener, AOIAlertRuleStore.Listener {
 
     private static final String TAG = AOIAdapter.class.getSimpleName();
 
+    // Events within this window are folded into one list update
+    private static final long UPDATE_DELAY_MS = 100;
+
+    private static final DiffUtil.ItemCallback<AOIItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<AOIItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull AOIItem oldItem, @NonNull AOIItem newItem) {
+            return oldItem.getUID().equals(newItem.getUID());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull AOIItem oldItem, @NonNull AOIItem newItem) {
+            return oldItem.hasSameContents(newItem);
+        }
+    };
+
+    private static final Comparator<AOIItem> BY_NAME = new Comparator<AOIItem>() {
+        @Override
+        public int compare(AOIItem a, AOIItem b) {
+            int byName = a.getName().compareToIgnoreCase(b.getName());
+            return byName != 0 ? byName : a.getUID().compareTo(b.getUID());
+        }
+    };
+
     private final Context context;
     private final MapView mapView;
-    private List<AOIItem> aoiItems;
+    private final AOIRegistry aoiRegistry;
+    private final AOIAlertRuleStore alertRules;
+    private final AsyncListDiffer<AOIItem> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+    private final Runnable update = new Runnable() {
+        @Override
+        public void run() {
+            updatePending = false;
+            submitSnapshot();
+        }
+    };
+    private final Runnable expire = new Runnable() {
+        @Override
+        public void run() {
+            scheduleUpdate();
+        }
+    };
+    // Once a list is shown, forget the IDs of shapes no longer in it
+    private final Runnable pruneItemIds = new Runnable() {
+        @Override
+        public void run() {
+            List<AOIItem> shown = differ.getCurrentList();
+            Set<String> uids = new HashSet<>(shown.size() * 2);
+            for (AOIItem item : shown) {
+                uids.add(item.getUID());
+            }
+            itemIds.keySet().retainAll(uids);
+        }
+    };
+    // UI thread only
+    private final Map<String, Long> itemIds = new HashMap<>();
+    private long nextItemId = 0;
+    private boolean updatePending = false;
 
-    public AOIAdapter(Context context, MapView mapView, List<AOIItem> aoiItems) {
+    public AOIAdapter(Context context, MapView mapView, AOIRegistry aoiRegistry, AOIAlertRuleStore alertRules) {
         this.context = context;
         this.mapView = mapView;
-        this.aoiItems = aoiItems;
+        this.aoiRegistry = aoiRegistry;
+        this.alertRules = alertRules;
+        setHasStableIds(true);
+    }
+
+    /**
+     * Show the current AOIs and follow changes to them
+     */
+    public void start() {
+        aoiRegistry.addListener(this);
+        alertRules.addListener(this);
+        submitSnapshot();
+    }
+
+    public void stop() {
+        aoiRegistry.removeListener(this);
+        alertRules.removeListener(this);
+        uiHandler.removeCallbacks(update);
+        uiHandler.removeCallbacks(expire);
+        updatePending = false;
     }
 
-    public void updateData(List<AOIItem> newItems) {
-        this.aoiItems = newItems;
-        notifyDataSetChanged();
+    /**
+     * Rebuild the list soon, folding in any other changes that arrive first.
+     * Safe to call from any thread.
+     */
+    public void scheduleUpdate() {
+        uiHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!updatePending) {
+                    updatePending = true;
+                    uiHandler.postDelayed(update, UPDATE_DELAY_MS);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onAOIAdded(Shape shape) {
+        scheduleUpdate();
+    }
+
+    @Override
+    public void onAOIRemoved(Shape shape, boolean deleted) {
+        scheduleUpdate();
+    }
+
+    @Override
+    public void onAOIChanged(Shape shape) {
+        scheduleUpdate();
+    }
+
+    @Override
+    public void onAlertRuleChanged(String uid, AOIAlertRule rule) {
+        scheduleUpdate();
+    }
+
+    private void submitSnapshot() {
+        long now = System.currentTimeMillis();
+        long nextExpiryMs = Long.MAX_VALUE;
+        List<Shape> shapes = aoiRegistry.getShapes();
+        List<AOIItem> items = new ArrayList<>(shapes.size());
+        for (Shape shape : shapes) {
+            if (shape.getUID() != null) {
+                items.add(new AOIItem(shape, alertRules));
+                AOIAlertRule rule = alertRules.getRule(shape.getUID());
+                if (rule != null && rule.isActive(now) && rule.getExpiresAtMs() > 0) {
+                    nextExpiryMs = Math.min(nextExpiryMs, rule.getExpiresAtMs());
+                }
+            }
+        }
+        Collections.sort(items, BY_NAME);
+        // Rebuild again once the soonest alert shown as active has run out
+        uiHandler.removeCallbacks(expire);
+        if (nextExpiryMs != Long.MAX_VALUE) {
+            uiHandler.postDelayed(expire, nextExpiryMs - now);
+        }
+        // Diffed on the differ's background executor; rows update on this thread
+        differ.submitList(items, pruneItemIds);
     }
 
     @NonNull
@@ -46,13 +197,24 @@ public class AOIAdapter extends RecyclerView.Adapter<AOIAdapter.AOIViewHolder> {
 
     @Override
     public void onBindViewHolder(@NonNull AOIViewHolder holder, int position) {
-        AOIItem item = aoiItems.get(position);
+        AOIItem item = differ.getCurrentList().get(position);
         holder.bind(item);
     }
 
     @Override
     public int getItemCount() {
-        return aoiItems.size();
+        return differ.getCurrentList().size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        String uid = differ.getCurrentList().get(position).getUID();
+        Long id = itemIds.get(uid);
+        if (id == null) {
+            id = nextItemId++;
+            itemIds.put(uid, id);
+        }
+        return id;
     }
 
     public class AOIViewHolder extends RecyclerView.ViewHolder {
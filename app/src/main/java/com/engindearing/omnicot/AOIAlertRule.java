@@ -0,0 +1,137 @@
+package com.engindearing.omnicot;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Alert configuration for one AOI, keyed by its shape UID. Stored by
+ * {@link AOIAlertRuleStore}; rules are replaced rather than edited in place.
+ */
+public class AOIAlertRule {
+
+    public static final String TRIGGER_ENTRY = "Entry";
+    public static final String TRIGGER_EXIT = "Exit";
+    public static final String TRIGGER_BOTH = "Both";
+
+    public static final String MONITOR_ALL = "All";
+
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+
+    private final String uid;
+    private final boolean enabled;
+    private final String triggerType;
+    private final String monitoredType;
+    private final int durationHours;
+    private final double floorM;
+    private final double ceilingM;
+    private final int[] uasTypes;
+    private final long armedAtMs;
+
+    /**
+     * @param durationHours how long the alert stays armed, or 0 for no limit
+     * @param floorM        lowest drone height AGL that alerts, or NaN for none
+     * @param ceilingM      highest drone height AGL that alerts, or NaN for none
+     * @param uasTypes      Remote ID UAS types that alert, or null for all
+     * @param armedAtMs     when the alert was armed; the duration counts from here
+     */
+    public AOIAlertRule(String uid, boolean enabled, String triggerType, String monitoredType,
+                        int durationHours, double floorM, double ceilingM, int[] uasTypes,
+                        long armedAtMs) {
+        this.uid = uid;
+        this.enabled = enabled;
+        this.triggerType = triggerType != null ? triggerType : TRIGGER_BOTH;
+        this.monitoredType = monitoredType != null ? monitoredType : MONITOR_ALL;
+        this.durationHours = Math.max(0, durationHours);
+        this.floorM = floorM;
+        this.ceilingM = ceilingM;
+        this.uasTypes = uasTypes != null && uasTypes.length > 0 ? uasTypes.clone() : null;
+        this.armedAtMs = armedAtMs;
+    }
+
+    public String getUid() { return uid; }
+    public boolean isEnabled() { return enabled; }
+    public String getTriggerType() { return triggerType; }
+    public String getMonitoredType() { return monitoredType; }
+    public int getDurationHours() { return durationHours; }
+    public double getFloorM() { return floorM; }
+    public double getCeilingM() { return ceilingM; }
+    public int[] getUasTypes() { return uasTypes != null ? uasTypes.clone() : null; }
+    public long getArmedAtMs() { return armedAtMs; }
+
+    /**
+     * When the alert stops, or 0 if it never does
+     */
+    public long getExpiresAtMs() {
+        return durationHours > 0 ? armedAtMs + durationHours * HOUR_MS : 0;
+    }
+
+    /**
+     * Enabled and not yet expired
+     */
+    public boolean isActive(long nowMs) {
+        long expiresAt = getExpiresAtMs();
+        return enabled && (expiresAt == 0 || nowMs < expiresAt);
+    }
+
+    public String getStatus(long nowMs) {
+        if (isActive(nowMs)) {
+            return "Alert: " + triggerType + " (" + monitoredType + ")";
+        } else if (enabled) {
+            return "Alert expired";
+        } else {
+            return "No alerts configured";
+        }
+    }
+
+    public JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("uid", uid);
+        json.put("enabled", enabled);
+        json.put("triggerType", triggerType);
+        json.put("monitoredType", monitoredType);
+        json.put("durationHours", durationHours);
+        if (!Double.isNaN(floorM)) {
+            json.put("floorM", floorM);
+        }
+        if (!Double.isNaN(ceilingM)) {
+            json.put("ceilingM", ceilingM);
+        }
+        if (uasTypes != null) {
+            JSONArray types = new JSONArray();
+            for (int type : uasTypes) {
+                types.put(type);
+            }
+            json.put("uasTypes", types);
+        }
+        json.put("armedAtMs", armedAtMs);
+        return json;
+    }
+
+    public static AOIAlertRule fromJson(JSONObject json) throws JSONException {
+        int[] uasTypes = null;
+        JSONArray types = json.optJSONArray("uasTypes");
+        if (types != null) {
+            uasTypes = new int[types.length()];
+            for (int i = 0; i < uasTypes.length; i++) {
+                uasTypes[i] = types.getInt(i);
+            }
+        }
+        return new AOIAlertRule(
+                json.getString("uid"),
+                json.optBoolean("enabled", false),
+                json.optString("triggerType", TRIGGER_BOTH),
+                json.optString("monitoredType", MONITOR_ALL),
+                json.optInt("durationHours", 24),
+                json.optDouble("floorM", Double.NaN),
+                json.optDouble("ceilingM", Double.NaN),
+                uasTypes,
+                json.optLong("armedAtMs", System.currentTimeMillis()));
+    }
+
+    @Override
+    public String toString() {
+        return "AOIAlertRule{" + uid + ", enabled=" + enabled + ", " + triggerType + "/" + monitoredType +
+                ", " + durationHours + "h}";
+    }
+}
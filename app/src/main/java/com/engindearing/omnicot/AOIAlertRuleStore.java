@@ -0,0 +1,184 @@
+package com.engindearing.omnicot;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Alert rules for AOIs, keyed by shape UID. Every rule is loaded once into an
+ * in-memory map that answers all reads; changes are written through to
+ * SharedPreferences, one JSON entry per AOI, and announced to listeners.
+ *
+ * <p>The number of active rules (enabled and not expired) is kept as rules
+ * change, so reading it is O(1) except when a rule's duration has run out
+ * since the last read.
+ */
+public class AOIAlertRuleStore {
+    private static final String TAG = "AOIAlertRuleStore";
+    private static final String PREFS_NAME = "omnicot_aoi_alerts";
+    private static final String KEY_PREFIX = "rule_";
+
+    /**
+     * Notified on the thread that changed a rule
+     */
+    public interface Listener {
+        /**
+         * @param rule the new rule, or null if it was removed
+         */
+        void onAlertRuleChanged(String uid, AOIAlertRule rule);
+    }
+
+    private static AOIAlertRuleStore instance;
+
+    private final SharedPreferences prefs;
+    private final Map<String, AOIAlertRule> rules = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Guarded by this
+    private int activeCount = 0;
+    private long nextExpiryMs = Long.MAX_VALUE;
+
+    private AOIAlertRuleStore(Context context) {
+        Context appContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        this.prefs = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        load();
+    }
+
+    public static synchronized AOIAlertRuleStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new AOIAlertRuleStore(context);
+        }
+        return instance;
+    }
+
+    public void addListener(Listener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return the AOI's rule, or null if none was ever saved
+     */
+    public AOIAlertRule getRule(String uid) {
+        return uid != null ? rules.get(uid) : null;
+    }
+
+    public List<AOIAlertRule> getRules() {
+        return new ArrayList<>(rules.values());
+    }
+
+    /**
+     * Save a rule, replacing any earlier one for the same AOI
+     */
+    public void putRule(AOIAlertRule rule) {
+        try {
+            prefs.edit().putString(KEY_PREFIX + rule.getUid(), rule.toJson().toString()).apply();
+        } catch (JSONException e) {
+            Log.e(TAG, "Error serializing alert rule for " + rule.getUid(), e);
+        }
+        synchronized (this) {
+            AOIAlertRule previous = rules.put(rule.getUid(), rule);
+            updateCount(previous, rule);
+        }
+        notifyListeners(rule.getUid(), rule);
+        Log.d(TAG, "Stored " + rule);
+    }
+
+    /**
+     * Forget an AOI's rule, e.g. when the AOI is deleted
+     */
+    public void removeRule(String uid) {
+        synchronized (this) {
+            AOIAlertRule previous = rules.remove(uid);
+            if (previous == null) {
+                return;
+            }
+            updateCount(previous, null);
+        }
+        prefs.edit().remove(KEY_PREFIX + uid).apply();
+        notifyListeners(uid, null);
+        Log.d(TAG, "Removed alert rule for " + uid);
+    }
+
+    /**
+     * Number of rules that are enabled and not expired
+     */
+    public synchronized int getActiveCount() {
+        long now = System.currentTimeMillis();
+        if (now >= nextExpiryMs) {
+            recount(now);
+        }
+        return activeCount;
+    }
+
+    private synchronized void updateCount(AOIAlertRule previous, AOIAlertRule current) {
+        long now = System.currentTimeMillis();
+        if (now >= nextExpiryMs) {
+            // Counts may include rules that have since expired
+            recount(now);
+            return;
+        }
+        if (previous != null && previous.isActive(now)) {
+            activeCount--;
+        }
+        if (current != null && current.isActive(now)) {
+            activeCount++;
+            long expiresAt = current.getExpiresAtMs();
+            if (expiresAt > 0 && expiresAt < nextExpiryMs) {
+                nextExpiryMs = expiresAt;
+            }
+        }
+    }
+
+    private synchronized void recount(long now) {
+        int count = 0;
+        long nextExpiry = Long.MAX_VALUE;
+        for (AOIAlertRule rule : rules.values()) {
+            if (rule.isActive(now)) {
+                count++;
+                long expiresAt = rule.getExpiresAtMs();
+                if (expiresAt > 0 && expiresAt < nextExpiry) {
+                    nextExpiry = expiresAt;
+                }
+            }
+        }
+        activeCount = count;
+        nextExpiryMs = nextExpiry;
+    }
+
+    private void load() {
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            if (!entry.getKey().startsWith(KEY_PREFIX) || !(entry.getValue() instanceof String)) {
+                continue;
+            }
+            try {
+                AOIAlertRule rule = AOIAlertRule.fromJson(new JSONObject((String) entry.getValue()));
+                rules.put(rule.getUid(), rule);
+            } catch (JSONException e) {
+                Log.w(TAG, "Skipping unreadable alert rule " + entry.getKey(), e);
+            }
+        }
+        recount(System.currentTimeMillis());
+        Log.d(TAG, "Loaded " + rules.size() + " alert rules, " + activeCount + " active");
+    }
+
+    private void notifyListeners(String uid, AOIAlertRule rule) {
+        for (Listener listener : listeners) {
+            listener.onAlertRuleChanged(uid, rule);
+        }
+    }
+}
@@ -2,19 +2,27 @@ package com.engindearing.omnicot;
 
 import com.atakmap.android.maps.Shape;
 
+/**
+ * One row of the AOI list. Name, type and alert status are captured when the
+ * item is built, so an old list can be compared with a new one to find the
+ * rows that changed.
+ */
 public class AOIItem {
     private final Shape shape;
-    private boolean alertEnabled;
-    private String triggerType;
-    private String monitoredType;
-    private int durationHours;
+    private final AOIAlertRuleStore alertRules;
+    private final String uid;
+    private final String name;
+    private final String type;
+    private final String alertStatus;
 
-    public AOIItem(Shape shape) {
+    public AOIItem(Shape shape, AOIAlertRuleStore alertRules) {
         this.shape = shape;
-        this.alertEnabled = false;
-        this.triggerType = "Both";
-        this.monitoredType = "All";
-        this.durationHours = 24;
+        this.alertRules = alertRules;
+        this.uid = shape.getUID();
+        this.name = shape.getTitle() != null ? shape.getTitle() : "Unnamed AOI";
+        this.type = shape.getClass().getSimpleName().replace("Drawing", "");
+        AOIAlertRule rule = alertRules.getRule(uid);
+        this.alertStatus = rule != null ? rule.getStatus(System.currentTimeMillis()) : "No alerts configured";
     }
 
     public Shape getShape() {
@@ -22,54 +30,37 @@ public class AOIItem {
     }
 
     public String getName() {
-        return shape.getTitle() != null ? shape.getTitle() : "Unnamed AOI";
+        return name;
     }
 
     public String getType() {
-        return shape.getClass().getSimpleName().replace("Drawing", "");
+        return type;
     }
 
     public String getUID() {
-        return shape.getUID();
+        return uid;
     }
 
-    public boolean isAlertEnabled() {
-        return alertEnabled;
-    }
-
-    public void setAlertEnabled(boolean alertEnabled) {
-        this.alertEnabled = alertEnabled;
-    }
-
-    public String getTriggerType() {
-        return triggerType;
-    }
-
-    public void setTriggerType(String triggerType) {
-        this.triggerType = triggerType;
+    /**
+     * The AOI's saved alert rule, or null if none was configured
+     */
+    public AOIAlertRule getAlertRule() {
+        return alertRules.getRule(uid);
     }
 
-    public String getMonitoredType() {
-        return monitoredType;
-    }
-
-    public void setMonitoredType(String monitoredType) {
-        this.monitoredType = monitoredType;
-    }
-
-    public int getDurationHours() {
-        return durationHours;
+    public boolean isAlertEnabled() {
+        AOIAlertRule rule = getAlertRule();
+        return rule != null && rule.isActive(System.currentTimeMillis());
     }
 
-    public void setDurationHours(int durationHours) {
-        this.durationHours = durationHours;
+    public String getAlertStatus() {
+        return alertStatus;
     }
 
-    public String getAlertStatus() {
-        if (alertEnabled) {
-            return "Alert: " + triggerType + " (" + monitoredType + ")";
-        } else {
-            return "No alerts configured";
-        }
+    /**
+     * Whether the two items would render the same row
+     */
+    public boolean hasSameContents(AOIItem other) {
+        return name.equals(other.name) && type.equals(other.type) && alertStatus.equals(other.alertStatus);
     }
 }
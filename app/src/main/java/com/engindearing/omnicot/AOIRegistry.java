@@ -0,0 +1,256 @@
+package com.engindearing.omnicot;
+
+import com.atakmap.android.maps.MapEvent;
+import com.atakmap.android.maps.MapEventDispatcher;
+import com.atakmap.android.maps.MapGroup;
+import com.atakmap.android.maps.MapItem;
+import com.atakmap.android.maps.MapView;
+import com.atakmap.android.maps.Shape;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.coremap.maps.coords.GeoBounds;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The AOI shapes in ATAK's "Drawing Objects" group, indexed by bounds.
+ * The group is scanned once on {@link #start()}; after that the index is kept
+ * current from map item add/remove/persist events and shape point changes, so
+ * counting AOIs or finding the ones around a point never walks the map.
+ *
+ * <p>Map events arrive on the UI thread, and listeners are called there.
+ * Queries may come from any thread.
+ */
+public class AOIRegistry implements MapEventDispatcher.MapEventDispatchListener,
+        Shape.OnPointsChangedListener {
+
+    private static final String TAG = "AOIRegistry";
+
+    public static final String DRAWING_GROUP = "Drawing Objects";
+
+    /**
+     * Notified when the set of AOIs or their geometry changes
+     */
+    public interface Listener {
+        void onAOIAdded(Shape shape);
+
+        /**
+         * @param deleted true if the item was deleted from the map, false if
+         *                it only left the index, e.g. in a rescan or because
+         *                it lost its bounds
+         */
+        void onAOIRemoved(Shape shape, boolean deleted);
+        void onAOIChanged(Shape shape);
+    }
+
+    private final MapView mapView;
+    private final AOISpatialIndex<Shape> index = new AOISpatialIndex<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private boolean started = false;
+
+    public AOIRegistry(MapView mapView) {
+        this.mapView = mapView;
+    }
+
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        MapEventDispatcher dispatcher = mapView.getMapEventDispatcher();
+        dispatcher.addMapEventListener(MapEvent.ITEM_ADDED, this);
+        dispatcher.addMapEventListener(MapEvent.ITEM_REMOVED, this);
+        dispatcher.addMapEventListener(MapEvent.ITEM_PERSIST, this);
+        dispatcher.addMapEventListener(MapEvent.ITEM_REFRESH, this);
+        rescan();
+    }
+
+    public synchronized void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        MapEventDispatcher dispatcher = mapView.getMapEventDispatcher();
+        dispatcher.removeMapEventListener(MapEvent.ITEM_ADDED, this);
+        dispatcher.removeMapEventListener(MapEvent.ITEM_REMOVED, this);
+        dispatcher.removeMapEventListener(MapEvent.ITEM_PERSIST, this);
+        dispatcher.removeMapEventListener(MapEvent.ITEM_REFRESH, this);
+        for (Shape shape : index.values()) {
+            shape.removeOnPointsChangedListener(this);
+        }
+        index.clear();
+    }
+
+    public void addListener(Listener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Rebuild the index from the drawing group, e.g. after events may have
+     * been missed
+     */
+    public void rescan() {
+        MapGroup drawingGroup = getDrawingGroup();
+        List<Shape> found = new ArrayList<>();
+        if (drawingGroup != null) {
+            for (MapItem item : drawingGroup.getItems()) {
+                if (item instanceof Shape) {
+                    found.add((Shape) item);
+                }
+            }
+        } else {
+            Log.d(TAG, DRAWING_GROUP + " group not found");
+        }
+
+        Set<String> foundUids = new HashSet<>();
+        for (Shape shape : found) {
+            foundUids.add(shape.getUID());
+            if (index.contains(shape.getUID())) {
+                update(shape);
+            } else {
+                add(shape);
+            }
+        }
+        for (Shape shape : index.values()) {
+            if (!foundUids.contains(shape.getUID())) {
+                remove(shape, false);
+            }
+        }
+        Log.d(TAG, "Indexed " + index.size() + " AOIs");
+    }
+
+    public int getCount() {
+        return index.size();
+    }
+
+    /**
+     * Every AOI shape, in no particular order
+     */
+    public List<Shape> getShapes() {
+        return index.values();
+    }
+
+    public Shape getShape(String uid) {
+        return index.get(uid);
+    }
+
+    /**
+     * Add to {@code out} the AOIs whose bounds contain the point. These are
+     * candidates; the point may still fall outside the shape itself.
+     *
+     * @return number of shapes added
+     */
+    public int findCandidates(double lat, double lon, Collection<? super Shape> out) {
+        return index.queryPoint(lat, lon, out);
+    }
+
+    /**
+     * Add to {@code out} the AOIs whose bounds overlap the box
+     *
+     * @return number of shapes added
+     */
+    public int findCandidates(double south, double west, double north, double east,
+                              Collection<? super Shape> out) {
+        return index.queryBox(south, west, north, east, out);
+    }
+
+    @Override
+    public void onMapEvent(MapEvent event) {
+        MapItem item = event.getItem();
+        if (!(item instanceof Shape)) {
+            return;
+        }
+        Shape shape = (Shape) item;
+        String type = event.getType();
+        if (MapEvent.ITEM_REMOVED.equals(type)) {
+            // The item has usually left its group by now, so go by UID
+            if (index.contains(shape.getUID())) {
+                remove(shape, true);
+            }
+        } else if (index.contains(shape.getUID())) {
+            update(shape);
+        } else if (isInDrawingGroup(shape)) {
+            add(shape);
+        }
+    }
+
+    @Override
+    public void onPointsChanged(Shape shape) {
+        if (index.contains(shape.getUID())) {
+            update(shape);
+        }
+    }
+
+    private void add(Shape shape) {
+        if (!putBounds(shape)) {
+            return;
+        }
+        shape.addOnPointsChangedListener(this);
+        for (Listener listener : listeners) {
+            listener.onAOIAdded(shape);
+        }
+    }
+
+    private void update(Shape shape) {
+        if (!putBounds(shape)) {
+            remove(shape, false);
+            return;
+        }
+        for (Listener listener : listeners) {
+            listener.onAOIChanged(shape);
+        }
+    }
+
+    private void remove(Shape shape, boolean deleted) {
+        shape.removeOnPointsChangedListener(this);
+        if (!index.remove(shape.getUID())) {
+            return;
+        }
+        for (Listener listener : listeners) {
+            listener.onAOIRemoved(shape, deleted);
+        }
+    }
+
+    /**
+     * @return false if the shape has no usable bounds
+     */
+    private boolean putBounds(Shape shape) {
+        GeoBounds bounds = shape.getBounds(null);
+        if (bounds == null || shape.getUID() == null) {
+            return false;
+        }
+        double west = bounds.getWest();
+        double east = bounds.getEast();
+        if (bounds.crossesIDL()) {
+            // The index expects west > east for a box over the antimeridian
+            west = Math.max(bounds.getWest(), bounds.getEast());
+            east = Math.min(bounds.getWest(), bounds.getEast());
+        }
+        try {
+            index.put(shape.getUID(), shape, bounds.getSouth(), west, bounds.getNorth(), east);
+            return true;
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Not indexing " + shape.getTitle() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean isInDrawingGroup(MapItem item) {
+        MapGroup drawingGroup = getDrawingGroup();
+        return drawingGroup != null && item.getGroup() == drawingGroup;
+    }
+
+    private MapGroup getDrawingGroup() {
+        return mapView.getRootGroup().findMapGroup(DRAWING_GROUP);
+    }
+}
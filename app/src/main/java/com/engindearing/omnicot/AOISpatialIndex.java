@@ -0,0 +1,309 @@
+package com.engindearing.omnicot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uniform grid over the bounding boxes of AOIs, for finding the AOIs that may
+ * contain a point without testing every one. Each AOI is registered in every
+ * cell its box overlaps; a point query looks at one cell, so its cost depends
+ * on how many AOIs overlap that spot rather than how many exist. AOIs whose
+ * box would cover more than {@link #MAX_CELLS_PER_ENTRY} cells (a state
+ * boundary, say) are kept on a short list that every query checks.
+ *
+ * <p>Boxes are in degrees; a box with {@code west > east} crosses the
+ * antimeridian. Results are candidates whose box contains the point or
+ * overlaps the query box; testing the actual shape is up to the caller.
+ * Thread-safe.
+ *
+ * @param <T> what is stored per AOI, e.g. its shape
+ */
+public class AOISpatialIndex<T> {
+
+    /** About 1.1 km of latitude */
+    public static final double DEFAULT_CELL_DEGREES = 0.01;
+
+    public static final int MAX_CELLS_PER_ENTRY = 4096;
+
+    private static final class Entry<T> {
+        final T value;
+        final double south;
+        final double west;
+        final double north;
+        final double east;
+        final boolean oversized;
+        // Last box query that reported this entry, to report it once
+        int queryStamp;
+
+        Entry(T value, double south, double west, double north, double east, boolean oversized) {
+            this.value = value;
+            this.south = south;
+            this.west = west;
+            this.north = north;
+            this.east = east;
+            this.oversized = oversized;
+        }
+
+        boolean contains(double lat, double lon) {
+            if (lat < south || lat > north) {
+                return false;
+            }
+            return west <= east ? lon >= west && lon <= east : lon >= west || lon <= east;
+        }
+
+        boolean intersects(double s, double w, double n, double e) {
+            if (n < south || s > north) {
+                return false;
+            }
+            return lonRangesOverlap(west, east, w, e);
+        }
+    }
+
+    private final double cellDegrees;
+    private final Map<String, Entry<T>> entries = new HashMap<>();
+    private final Map<Long, List<Entry<T>>> cells = new HashMap<>();
+    private final List<Entry<T>> oversized = new ArrayList<>();
+    private int queryCounter = 0;
+
+    public AOISpatialIndex() {
+        this(DEFAULT_CELL_DEGREES);
+    }
+
+    public AOISpatialIndex(double cellDegrees) {
+        if (!(cellDegrees > 0)) {
+            throw new IllegalArgumentException("Cell size must be positive: " + cellDegrees);
+        }
+        this.cellDegrees = cellDegrees;
+    }
+
+    /**
+     * Add an AOI, or replace the one with the same ID
+     */
+    public synchronized void put(String id, T value, double south, double west, double north, double east) {
+        if (Double.isNaN(south) || Double.isNaN(west) || Double.isNaN(north) || Double.isNaN(east)
+                || south > north) {
+            throw new IllegalArgumentException("Invalid bounds for " + id + ": "
+                    + south + "," + west + " to " + north + "," + east);
+        }
+        remove(id);
+
+        boolean tooBig = cellCount(south, west, north, east) > MAX_CELLS_PER_ENTRY;
+
+        Entry<T> entry = new Entry<>(value, south, west, north, east, tooBig);
+        entries.put(id, entry);
+        if (tooBig) {
+            oversized.add(entry);
+        } else {
+            forEachCell(entry, true);
+        }
+    }
+
+    /**
+     * @return whether an AOI with this ID was indexed
+     */
+    public synchronized boolean remove(String id) {
+        Entry<T> entry = entries.remove(id);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.oversized) {
+            oversized.remove(entry);
+        } else {
+            forEachCell(entry, false);
+        }
+        return true;
+    }
+
+    public synchronized T get(String id) {
+        Entry<T> entry = entries.get(id);
+        return entry != null ? entry.value : null;
+    }
+
+    public synchronized boolean contains(String id) {
+        return entries.containsKey(id);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        cells.clear();
+        oversized.clear();
+    }
+
+    /**
+     * Every indexed value, in no particular order
+     */
+    public synchronized List<T> values() {
+        List<T> values = new ArrayList<>(entries.size());
+        for (Entry<T> entry : entries.values()) {
+            values.add(entry.value);
+        }
+        return values;
+    }
+
+    /**
+     * Add to {@code out} every AOI whose box contains the point
+     *
+     * @return number of values added
+     */
+    public synchronized int queryPoint(double lat, double lon, Collection<? super T> out) {
+        lon = normalizeLon(lon);
+        int found = 0;
+        List<Entry<T>> cell = cells.get(key(row(lat), column(lon)));
+        if (cell != null) {
+            for (int i = 0; i < cell.size(); i++) {
+                Entry<T> entry = cell.get(i);
+                if (entry.contains(lat, lon)) {
+                    out.add(entry.value);
+                    found++;
+                }
+            }
+        }
+        for (int i = 0; i < oversized.size(); i++) {
+            Entry<T> entry = oversized.get(i);
+            if (entry.contains(lat, lon)) {
+                out.add(entry.value);
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Add to {@code out} every AOI whose box overlaps the given box, once each
+     *
+     * @return number of values added
+     */
+    public synchronized int queryBox(double south, double west, double north, double east,
+                                     Collection<? super T> out) {
+        int stamp = ++queryCounter;
+        int found = 0;
+        if (cellCount(south, west, north, east) > 4L * entries.size() + 16) {
+            // Visiting the cells would cost more than checking every AOI
+            for (Entry<T> entry : entries.values()) {
+                if (entry.intersects(south, west, north, east)) {
+                    out.add(entry.value);
+                    found++;
+                }
+            }
+            return found;
+        }
+        int y0 = row(south);
+        int y1 = row(north);
+        if (west <= east) {
+            found += scan(y0, y1, column(west), column(east), stamp, south, west, north, east, out);
+        } else {
+            found += scan(y0, y1, column(west), column(180), stamp, south, west, north, east, out);
+            found += scan(y0, y1, column(-180), column(east), stamp, south, west, north, east, out);
+        }
+        for (int i = 0; i < oversized.size(); i++) {
+            Entry<T> entry = oversized.get(i);
+            if (entry.intersects(south, west, north, east)) {
+                out.add(entry.value);
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private int scan(int y0, int y1, int x0, int x1, int stamp,
+                     double south, double west, double north, double east, Collection<? super T> out) {
+        int found = 0;
+        for (int y = y0; y <= y1; y++) {
+            for (int x = x0; x <= x1; x++) {
+                List<Entry<T>> cell = cells.get(key(y, x));
+                if (cell == null) {
+                    continue;
+                }
+                for (int i = 0; i < cell.size(); i++) {
+                    Entry<T> entry = cell.get(i);
+                    if (entry.queryStamp != stamp && entry.intersects(south, west, north, east)) {
+                        entry.queryStamp = stamp;
+                        out.add(entry.value);
+                        found++;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private void forEachCell(Entry<T> entry, boolean add) {
+        int y0 = row(entry.south);
+        int y1 = row(entry.north);
+        if (entry.west <= entry.east) {
+            updateCells(entry, y0, y1, column(entry.west), column(entry.east), add);
+        } else {
+            updateCells(entry, y0, y1, column(entry.west), column(180), add);
+            updateCells(entry, y0, y1, column(-180), column(entry.east), add);
+        }
+    }
+
+    private void updateCells(Entry<T> entry, int y0, int y1, int x0, int x1, boolean add) {
+        for (int y = y0; y <= y1; y++) {
+            for (int x = x0; x <= x1; x++) {
+                Long key = key(y, x);
+                List<Entry<T>> cell = cells.get(key);
+                if (add) {
+                    if (cell == null) {
+                        cell = new ArrayList<>(2);
+                        cells.put(key, cell);
+                    }
+                    cell.add(entry);
+                } else if (cell != null) {
+                    cell.remove(entry);
+                    if (cell.isEmpty()) {
+                        cells.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    private long cellCount(double south, double west, double north, double east) {
+        long rows = row(north) - row(south) + 1;
+        long columns = west <= east ? column(east) - column(west) + 1
+                : (column(180) - column(west) + 1) + (column(east) - column(-180) + 1);
+        return rows * columns;
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor((Math.max(-90, Math.min(90, lat)) + 90) / cellDegrees);
+    }
+
+    private int column(double lon) {
+        return (int) Math.floor((Math.max(-180, Math.min(180, lon)) + 180) / cellDegrees);
+    }
+
+    private static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    private static double normalizeLon(double lon) {
+        if (lon >= -180 && lon <= 180) {
+            return lon;
+        }
+        return ((lon + 180) % 360 + 360) % 360 - 180;
+    }
+
+    static boolean lonRangesOverlap(double w1, double e1, double w2, double e2) {
+        boolean wraps1 = w1 > e1;
+        boolean wraps2 = w2 > e2;
+        if (wraps1 && wraps2) {
+            return true; // both contain the antimeridian
+        }
+        if (wraps1) {
+            return e2 >= w1 || w2 <= e1;
+        }
+        if (wraps2) {
+            return e1 >= w2 || w1 <= e2;
+        }
+        return w1 <= e2 && w2 <= e1;
+    }
+}
@@ -3,6 +3,10 @@ package com.engindearing.omnicot;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * Data model for storing CoT affiliation information
  */
@@ -41,6 +45,11 @@ public class AffiliationData {
     private String serverConnection;
     private String notes;
 
+    // Default UNKNOWN entries for tracks nobody has classified are kept in
+    // memory only (see ImplicitAffiliationTable) and expire with their CoT
+    private volatile boolean implicit;
+    private volatile long expiresAtMs;
+
     public AffiliationData(String uid, Affiliation affiliation, String markedBy, String serverConnection) {
         this.uid = uid;
         this.affiliation = affiliation;
@@ -96,6 +105,26 @@ public class AffiliationData {
         this.notes = notes;
     }
 
+    /**
+     * True for a default UNKNOWN entry that was created automatically and is
+     * not persisted
+     */
+    public boolean isImplicit() {
+        return implicit;
+    }
+
+    void setImplicit(boolean implicit) {
+        this.implicit = implicit;
+    }
+
+    long getExpiresAtMs() {
+        return expiresAtMs;
+    }
+
+    void setExpiresAtMs(long expiresAtMs) {
+        this.expiresAtMs = expiresAtMs;
+    }
+
     // JSON Serialization
     public JSONObject toJson() throws JSONException {
         JSONObject json = new JSONObject();
@@ -121,6 +150,40 @@ public class AffiliationData {
         return data;
     }
 
+    // Binary serialization, used by AffiliationLog
+    void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(uid);
+        out.writeUTF(affiliation.getValue());
+        writeNullableUTF(out, markedBy);
+        out.writeLong(timestamp);
+        writeNullableUTF(out, serverConnection);
+        writeNullableUTF(out, notes);
+    }
+
+    static AffiliationData readFrom(DataInput in) throws IOException {
+        String uid = in.readUTF();
+        Affiliation affiliation = Affiliation.fromString(in.readUTF());
+        String markedBy = readNullableUTF(in);
+        long timestamp = in.readLong();
+        String serverConnection = readNullableUTF(in);
+
+        AffiliationData data = new AffiliationData(uid, affiliation, markedBy, serverConnection);
+        data.timestamp = timestamp;
+        data.notes = readNullableUTF(in);
+        return data;
+    }
+
+    private static void writeNullableUTF(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableUTF(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
     @Override
     public String toString() {
         return "AffiliationData{" +
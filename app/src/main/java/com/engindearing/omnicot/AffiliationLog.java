@@ -0,0 +1,286 @@
+package com.engindearing.omnicot;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary log of affiliation changes.
+ * Persisting one affiliation appends one record instead of rewriting every
+ * stored affiliation, so a write costs O(1) however many UIDs are known.
+ *
+ * <p>File layout: an 8 byte header (magic, version) followed by records of
+ * {@code [int length][int crc32][payload]}. The payload is an op byte followed
+ * by the UID for a removal or the {@link AffiliationData} fields for a put.
+ * On open the log is replayed; a torn or corrupt tail (e.g. from a crash
+ * mid-append) is truncated back to the last intact record. Once superseded
+ * records outnumber live ones the log is compacted into a fresh snapshot that
+ * atomically replaces the old file.
+ *
+ * <p>Not thread-safe beyond its own synchronized methods; AffiliationManager
+ * drives it from a single persist thread.
+ */
+public class AffiliationLog implements Closeable {
+    private static final String TAG = "AffiliationLog";
+
+    private static final int MAGIC = 0x4F43414C; // "OCAL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_OVERHEAD = 8;
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+
+    /** Don't bother compacting small logs */
+    private static final long MIN_RECORDS_FOR_COMPACTION = 1024;
+
+    private final File file;
+    private final CRC32 crc = new CRC32();
+    private final ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream payloadOut = new DataOutputStream(payloadBytes);
+
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+    private long recordCount = 0;
+
+    public AffiliationLog(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Whether the log file exists yet. Used to decide whether to migrate.
+     */
+    public boolean exists() {
+        return file.exists();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Replay the log and open it for appending. Creates an empty log if none
+     * exists.
+     *
+     * @return the live affiliations, keyed by UID
+     */
+    public synchronized Map<String, AffiliationData> open() throws IOException {
+        Map<String, AffiliationData> live = new HashMap<>();
+        if (!file.exists() || file.length() < HEADER_SIZE) {
+            writeSnapshot(file, live.values());
+        } else {
+            long goodLength = replay(live);
+            if (goodLength < file.length()) {
+                Log.w(TAG, "Truncating corrupt log tail: " + (file.length() - goodLength) + " bytes");
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.setLength(goodLength);
+                    raf.getFD().sync();
+                }
+            }
+        }
+        openForAppend();
+        return live;
+    }
+
+    /**
+     * Append a put record. Buffered until {@link #sync()}.
+     */
+    public synchronized void put(AffiliationData data) throws IOException {
+        payloadBytes.reset();
+        payloadOut.writeByte(OP_PUT);
+        data.writeTo(payloadOut);
+        ensureOpen();
+        writeRecord(out);
+    }
+
+    /**
+     * Append a remove record. Buffered until {@link #sync()}.
+     */
+    public synchronized void remove(String uid) throws IOException {
+        payloadBytes.reset();
+        payloadOut.writeByte(OP_REMOVE);
+        payloadOut.writeUTF(uid);
+        ensureOpen();
+        writeRecord(out);
+    }
+
+    /**
+     * Flush buffered records and force them to disk
+     */
+    public synchronized void sync() throws IOException {
+        ensureOpen();
+        out.flush();
+        fileOut.getFD().sync();
+    }
+
+    /**
+     * Whether the log holds enough superseded records to be worth compacting
+     */
+    public synchronized boolean needsCompaction(int liveCount) {
+        return recordCount >= MIN_RECORDS_FOR_COMPACTION && recordCount > 2L * liveCount;
+    }
+
+    /**
+     * Replace the log with a snapshot holding one record per live affiliation.
+     * The snapshot is written to a temporary file and renamed over the log, so
+     * a crash leaves either the old or the new log intact.
+     */
+    public synchronized void compact(Collection<AffiliationData> live) throws IOException {
+        closeStreams();
+        try {
+            File tmp = new File(file.getPath() + ".tmp");
+            writeSnapshot(tmp, live);
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Failed to replace " + file + " with compacted log");
+            }
+            recordCount = live.size();
+        } finally {
+            openForAppend();
+        }
+        Log.d(TAG, "Compacted log to " + recordCount + " records");
+    }
+
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            sync();
+        }
+        closeStreams();
+    }
+
+    /**
+     * Read records into {@code live}, stopping at the first bad one.
+     *
+     * @return length of the intact prefix of the file
+     */
+    private long replay(Map<String, AffiliationData> live) throws IOException {
+        recordCount = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not an affiliation log: " + file);
+            }
+            long offset = HEADER_SIZE;
+            byte[] payload = new byte[256];
+
+            while (true) {
+                int length;
+                int expectedCrc;
+                try {
+                    length = in.readInt();
+                    expectedCrc = in.readInt();
+                } catch (EOFException e) {
+                    return offset;
+                }
+                if (length <= 0 || length > MAX_RECORD_SIZE) {
+                    return offset;
+                }
+                if (payload.length < length) {
+                    payload = new byte[Math.max(length, payload.length * 2)];
+                }
+                try {
+                    in.readFully(payload, 0, length);
+                } catch (EOFException e) {
+                    return offset;
+                }
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != expectedCrc) {
+                    return offset;
+                }
+
+                try {
+                    apply(payload, length, live);
+                } catch (IOException e) {
+                    // CRC matched but the record doesn't decode; treat as corrupt
+                    Log.w(TAG, "Undecodable record at offset " + offset, e);
+                    return offset;
+                }
+                recordCount++;
+                offset += RECORD_OVERHEAD + length;
+            }
+        }
+    }
+
+    private static void apply(byte[] payload, int length, Map<String, AffiliationData> live) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload, 0, length));
+        byte op = in.readByte();
+        if (op == OP_PUT) {
+            AffiliationData data = AffiliationData.readFrom(in);
+            live.put(data.getUid(), data);
+        } else if (op == OP_REMOVE) {
+            live.remove(in.readUTF());
+        } else {
+            throw new IOException("Unknown op " + op);
+        }
+    }
+
+    /**
+     * Frame the current payload as a record and write it to {@code target}
+     */
+    private void writeRecord(DataOutputStream target) throws IOException {
+        payloadOut.flush();
+        byte[] payload = payloadBytes.toByteArray();
+        crc.reset();
+        crc.update(payload, 0, payload.length);
+        target.writeInt(payload.length);
+        target.writeInt((int) crc.getValue());
+        target.write(payload);
+        recordCount++;
+    }
+
+    private void writeSnapshot(File target, Collection<AffiliationData> live) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(target)) {
+            DataOutputStream snapshot = new DataOutputStream(new BufferedOutputStream(fos));
+            snapshot.writeInt(MAGIC);
+            snapshot.writeInt(VERSION);
+            for (AffiliationData data : live) {
+                payloadBytes.reset();
+                payloadOut.writeByte(OP_PUT);
+                data.writeTo(payloadOut);
+                writeRecord(snapshot);
+            }
+            snapshot.flush();
+            fos.getFD().sync();
+        }
+    }
+
+    private void openForAppend() throws IOException {
+        fileOut = new FileOutputStream(file, true);
+        out = new DataOutputStream(new BufferedOutputStream(fileOut, 8192));
+    }
+
+    private void ensureOpen() throws IOException {
+        if (out == null) {
+            throw new IOException("Affiliation log is not open");
+        }
+    }
+
+    private void closeStreams() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+            fileOut = null;
+        }
+    }
+}
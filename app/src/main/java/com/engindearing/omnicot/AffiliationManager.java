@@ -7,22 +7,66 @@ import android.util.Log;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Manager for storing and retrieving CoT affiliation data
- * Uses SharedPreferences for persistent storage
+ * Manager for storing and retrieving CoT affiliation data.
+ * All affiliations are loaded once and kept in an in-memory map, which is
+ * authoritative for every read. Writes update the map immediately and are
+ * persisted in the background to an {@link AffiliationLog}: changes made within
+ * {@link #PERSIST_DELAY_MS} of each other are appended and synced together.
+ *
+ * <p>Older versions stored one JSON blob per UID in SharedPreferences; those
+ * entries are migrated into the log the first time it is created.
+ *
+ * <p>Only explicit affiliations (set by a user or received from another TAK
+ * user) are persisted. The default UNKNOWN entry for a track nobody has
+ * classified lives in an {@link ImplicitAffiliationTable} and is swept once
+ * the track goes stale. Passing an implicit entry to {@link #setAffiliation}
+ * promotes it to an explicit one.
+ *
+ * <p>{@link #getAffiliation} returns the cached instance. Callers that modify
+ * it must pass it back to {@link #setAffiliation} for the change to persist.
  */
 public class AffiliationManager {
     private static final String TAG = "AffiliationManager";
     private static final String PREFS_NAME = "omnicot_affiliations";
     private static final String KEY_PREFIX = "affiliation_";
+    private static final String LOG_FILE_NAME = "omnicot_affiliations.log";
+
+    /** Window for batching writes into one log sync */
+    private static final long PERSIST_DELAY_MS = 500;
+
+    /** How often stale implicit entries are swept */
+    private static final long IMPLICIT_SWEEP_INTERVAL_MS = 60 * 1000;
+
+    // Written by older versions for every UID seen; now implicit
+    private static final String IMPLICIT_MARKED_BY = "System";
 
     private static AffiliationManager instance;
     private final SharedPreferences prefs;
     private final Context context;
+    // Null if the log could not be opened; affiliations are then kept in memory only
+    private AffiliationLog log;
+
+    private final ConcurrentHashMap<String, AffiliationData> affiliations = new ConcurrentHashMap<>();
+    private final ImplicitAffiliationTable implicitAffiliations = new ImplicitAffiliationTable();
+    // UIDs changed since the last write; a UID missing from the map is a removal
+    private final Set<String> dirtyUids = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean persistScheduled = new AtomicBoolean(false);
+    private final ScheduledExecutorService persistExecutor =
+            Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "omnicot-affiliation-persist"));
 
     private AffiliationManager(Context context) {
         if (context == null) {
@@ -30,6 +74,10 @@ public class AffiliationManager {
         }
         this.context = context.getApplicationContext() != null ? context.getApplicationContext() : context;
         this.prefs = this.context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        load(new AffiliationLog(new File(this.context.getFilesDir(), LOG_FILE_NAME)));
+
+        persistExecutor.scheduleWithFixedDelay(this::sweepImplicit,
+                IMPLICIT_SWEEP_INTERVAL_MS, IMPLICIT_SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
     }
 
     public static synchronized AffiliationManager getInstance(Context context) {
@@ -47,14 +95,13 @@ public class AffiliationManager {
      * Store affiliation data for a CoT UID
      */
     public void setAffiliation(AffiliationData data) {
-        try {
-            String key = KEY_PREFIX + data.getUid();
-            String jsonString = data.toJson().toString();
-            prefs.edit().putString(key, jsonString).apply();
-            Log.d(TAG, "Stored affiliation for UID: " + data.getUid() + " -> " + data.getAffiliation());
-        } catch (JSONException e) {
-            Log.e(TAG, "Error storing affiliation data", e);
+        if (data.isImplicit()) {
+            data.setImplicit(false);
         }
+        implicitAffiliations.remove(data.getUid());
+        affiliations.put(data.getUid(), data);
+        markDirty(data.getUid());
+        Log.d(TAG, "Stored affiliation for UID: " + data.getUid() + " -> " + data.getAffiliation());
     }
 
     /**
@@ -62,93 +109,74 @@ public class AffiliationManager {
      * @return AffiliationData or null if not found
      */
     public AffiliationData getAffiliation(String uid) {
-        String key = KEY_PREFIX + uid;
-        String jsonString = prefs.getString(key, null);
-
-        if (jsonString != null) {
-            try {
-                JSONObject json = new JSONObject(jsonString);
-                return AffiliationData.fromJson(json);
-            } catch (JSONException e) {
-                Log.e(TAG, "Error parsing affiliation data for UID: " + uid, e);
-            }
-        }
-
-        return null;
+        AffiliationData data = affiliations.get(uid);
+        return data != null ? data : implicitAffiliations.get(uid);
     }
 
     /**
      * Check if affiliation exists for a UID
      */
     public boolean hasAffiliation(String uid) {
-        String key = KEY_PREFIX + uid;
-        return prefs.contains(key);
+        return getAffiliation(uid) != null;
+    }
+
+    /**
+     * Record a received track that carries no affiliation. Creates an
+     * in-memory UNKNOWN entry for a new UID, or keeps an existing one alive
+     * until {@code staleAtMs} plus a grace period. Nothing is persisted.
+     */
+    public AffiliationData recordImplicit(String uid, String server, long staleAtMs) {
+        return implicitAffiliations.touch(uid, server, staleAtMs, System.currentTimeMillis());
+    }
+
+    /**
+     * Keep an implicit entry alive without looking it up again
+     */
+    public void extendImplicit(AffiliationData data, long staleAtMs) {
+        implicitAffiliations.extend(data, staleAtMs, System.currentTimeMillis());
+    }
+
+    /**
+     * Number of in-memory UNKNOWN entries for unclassified tracks
+     */
+    public int getImplicitCount() {
+        return implicitAffiliations.size();
     }
 
     /**
      * Remove affiliation data for a CoT UID
      */
     public void removeAffiliation(String uid) {
-        String key = KEY_PREFIX + uid;
-        prefs.edit().remove(key).apply();
+        implicitAffiliations.remove(uid);
+        affiliations.remove(uid);
+        markDirty(uid);
         Log.d(TAG, "Removed affiliation for UID: " + uid);
     }
 
     /**
-     * Get all stored affiliations
+     * Get all stored (explicit) affiliations
      */
     public List<AffiliationData> getAllAffiliations() {
-        List<AffiliationData> affiliations = new ArrayList<>();
-        Map<String, ?> allPrefs = prefs.getAll();
-
-        for (Map.Entry<String, ?> entry : allPrefs.entrySet()) {
-            if (entry.getKey().startsWith(KEY_PREFIX)) {
-                try {
-                    String jsonString = (String) entry.getValue();
-                    if (jsonString != null) {
-                        JSONObject json = new JSONObject(jsonString);
-                        affiliations.add(AffiliationData.fromJson(json));
-                    }
-                } catch (JSONException e) {
-                    Log.e(TAG, "Error parsing affiliation data", e);
-                }
-            }
-        }
-
-        return affiliations;
+        return new ArrayList<>(affiliations.values());
     }
 
     /**
      * Clear all affiliation data
      */
     public void clearAll() {
-        SharedPreferences.Editor editor = prefs.edit();
-        Map<String, ?> allPrefs = prefs.getAll();
-
-        for (String key : allPrefs.keySet()) {
-            if (key.startsWith(KEY_PREFIX)) {
-                editor.remove(key);
-            }
+        implicitAffiliations.clear();
+        for (String uid : affiliations.keySet()) {
+            affiliations.remove(uid);
+            markDirty(uid);
         }
-
-        editor.apply();
         Log.d(TAG, "Cleared all affiliation data");
     }
 
     /**
-     * Get count of stored affiliations
+     * Get count of stored (explicit) affiliations
      */
     public int getAffiliationCount() {
-        int count = 0;
-        Map<String, ?> allPrefs = prefs.getAll();
-
-        for (String key : allPrefs.keySet()) {
-            if (key.startsWith(KEY_PREFIX)) {
-                count++;
-            }
-        }
-
-        return count;
+        return affiliations.size();
     }
 
     /**
@@ -167,4 +195,135 @@ public class AffiliationManager {
             setAffiliation(newData);
         }
     }
+
+    /**
+     * Write any pending changes now, e.g. before the plugin is unloaded
+     */
+    public void flush() {
+        try {
+            persistExecutor.submit(this::persistDirty).get();
+        } catch (Exception e) {
+            Log.e(TAG, "Error flushing affiliation data", e);
+        }
+    }
+
+    private void load(AffiliationLog affiliationLog) {
+        try {
+            if (!affiliationLog.exists()) {
+                migrateFromPrefs(affiliationLog);
+            }
+            Map<String, AffiliationData> stored = openLog(affiliationLog);
+            int dropped = 0;
+            for (AffiliationData data : stored.values()) {
+                if (isLegacyImplicit(data)) {
+                    dropped++;
+                } else {
+                    affiliations.put(data.getUid(), data);
+                }
+            }
+            if (dropped > 0) {
+                // Default entries persisted by older versions; rewrite without them
+                affiliationLog.compact(new ArrayList<>(affiliations.values()));
+                Log.d(TAG, "Dropped " + dropped + " persisted default UNKNOWN affiliations");
+            }
+            log = affiliationLog;
+        } catch (IOException e) {
+            Log.e(TAG, "Affiliation log unavailable, changes will not be persisted", e);
+        }
+        Log.d(TAG, "Loaded " + affiliations.size() + " affiliations");
+    }
+
+    private static boolean isLegacyImplicit(AffiliationData data) {
+        return data.getAffiliation() == AffiliationData.Affiliation.UNKNOWN
+                && IMPLICIT_MARKED_BY.equals(data.getMarkedBy())
+                && (data.getNotes() == null || data.getNotes().isEmpty());
+    }
+
+    private void sweepImplicit() {
+        int removed = implicitAffiliations.sweep(System.currentTimeMillis());
+        if (removed > 0) {
+            Log.d(TAG, "Evicted " + removed + " stale implicit affiliations, " +
+                    implicitAffiliations.size() + " remain");
+        }
+    }
+
+    private static Map<String, AffiliationData> openLog(AffiliationLog affiliationLog) throws IOException {
+        try {
+            return affiliationLog.open();
+        } catch (IOException e) {
+            // Unreadable header - keep the file for diagnosis and start a new log
+            File file = affiliationLog.getFile();
+            File corrupt = new File(file.getPath() + ".corrupt");
+            Log.e(TAG, "Affiliation log unreadable, moving it to " + corrupt, e);
+            if (!file.renameTo(corrupt)) {
+                throw e;
+            }
+            return affiliationLog.open();
+        }
+    }
+
+    /**
+     * One-time copy of the per-UID JSON entries in SharedPreferences into a new
+     * log. The log is written as a single snapshot before the prefs are
+     * cleared, so an interrupted migration simply runs again next time.
+     */
+    private void migrateFromPrefs(AffiliationLog affiliationLog) throws IOException {
+        List<AffiliationData> migrated = new ArrayList<>();
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            if (!entry.getKey().startsWith(KEY_PREFIX) || !(entry.getValue() instanceof String)) {
+                continue;
+            }
+            try {
+                migrated.add(AffiliationData.fromJson(new JSONObject((String) entry.getValue())));
+            } catch (JSONException e) {
+                Log.e(TAG, "Error parsing affiliation data for key: " + entry.getKey(), e);
+            }
+        }
+
+        affiliationLog.compact(migrated);
+        affiliationLog.close();
+        prefs.edit().clear().commit();
+        Log.d(TAG, "Migrated " + migrated.size() + " affiliations from SharedPreferences");
+    }
+
+    private void markDirty(String uid) {
+        dirtyUids.add(uid);
+        if (persistScheduled.compareAndSet(false, true)) {
+            persistExecutor.schedule(this::persistDirty, PERSIST_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Append all dirty UIDs to the log and sync once. Runs on the persist thread.
+     */
+    private void persistDirty() {
+        persistScheduled.set(false);
+        if (dirtyUids.isEmpty() || log == null) {
+            return;
+        }
+
+        int written = 0;
+        try {
+            Iterator<String> it = dirtyUids.iterator();
+            while (it.hasNext()) {
+                String uid = it.next();
+                it.remove();
+                AffiliationData data = affiliations.get(uid);
+                if (data == null) {
+                    log.remove(uid);
+                } else {
+                    log.put(data);
+                }
+                written++;
+            }
+            log.sync();
+
+            if (log.needsCompaction(affiliations.size())) {
+                log.compact(new ArrayList<>(affiliations.values()));
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error persisting affiliation data", e);
+        }
+        Log.d(TAG, "Persisted " + written + " affiliation changes");
+    }
 }
@@ -63,6 +63,9 @@ public class AlertConfigDialog {
         PluginSpinner spinnerTriggerType = dialogView.findViewById(R.id.spinnerTriggerType);
         PluginSpinner spinnerMonitoredTypes = dialogView.findViewById(R.id.spinnerMonitoredTypes);
         EditText editAlertDuration = dialogView.findViewById(R.id.editAlertDuration);
+        EditText editAlertFloor = dialogView.findViewById(R.id.editAlertFloor);
+        EditText editAlertCeiling = dialogView.findViewById(R.id.editAlertCeiling);
+        EditText editAlertUasTypes = dialogView.findViewById(R.id.editAlertUasTypes);
         Button btnSaveAlert = dialogView.findViewById(R.id.btnSaveAlert);
         Button btnCancelAlert = dialogView.findViewById(R.id.btnCancelAlert);
 
@@ -73,8 +76,14 @@ public class AlertConfigDialog {
 
         // Set current values
         alertAoiName.setText("AOI: " + aoiItem.getName());
-        checkEnableAlert.setChecked(aoiItem.isAlertEnabled());
-        editAlertDuration.setText(String.valueOf(aoiItem.getDurationHours()));
+        AOIAlertRule rule = aoiItem.getAlertRule();
+        checkEnableAlert.setChecked(rule != null && rule.isEnabled());
+        editAlertDuration.setText(String.valueOf(rule != null ? rule.getDurationHours() : 24));
+        if (rule != null) {
+            editAlertFloor.setText(formatOptional(rule.getFloorM()));
+            editAlertCeiling.setText(formatOptional(rule.getCeilingM()));
+            editAlertUasTypes.setText(formatUasTypes(rule.getUasTypes()));
+        }
 
         // Setup spinners
         ArrayAdapter<CharSequence> triggerAdapter = ArrayAdapter.createFromResource(
@@ -88,8 +97,10 @@ public class AlertConfigDialog {
         spinnerMonitoredTypes.setAdapter(monitoredAdapter);
 
         // Set spinner selections based on current config
-        setTriggerTypeSelection(spinnerTriggerType, aoiItem.getTriggerType());
-        setMonitoredTypeSelection(spinnerMonitoredTypes, aoiItem.getMonitoredType());
+        setTriggerTypeSelection(spinnerTriggerType,
+                rule != null ? rule.getTriggerType() : AOIAlertRule.TRIGGER_BOTH);
+        setMonitoredTypeSelection(spinnerMonitoredTypes,
+                rule != null ? rule.getMonitoredType() : AOIAlertRule.MONITOR_ALL);
 
         // Create dialog with activity context
         AlertDialog.Builder builder = new AlertDialog.Builder(dialogContext);
@@ -138,7 +149,10 @@ public class AlertConfigDialog {
                         checkEnableAlert.isChecked(),
                         spinnerTriggerType.getSelectedItemPosition(),
                         spinnerMonitoredTypes.getSelectedItemPosition(),
-                        editAlertDuration.getText().toString()
+                        editAlertDuration.getText().toString(),
+                        editAlertFloor.getText().toString(),
+                        editAlertCeiling.getText().toString(),
+                        editAlertUasTypes.getText().toString()
                 );
             }
         });
@@ -163,12 +177,22 @@ public class AlertConfigDialog {
         spinner.setSelection(position);
     }
 
-    private void saveAlertConfiguration(boolean enabled, int triggerPos, int monitoredPos, String durationStr) {
+    private void saveAlertConfiguration(boolean enabled, int triggerPos, int monitoredPos, String durationStr,
+                                        String floorStr, String ceilingStr, String uasTypesStr) {
         try {
             // Parse duration
             int durationHours = Integer.parseInt(durationStr);
             long durationMillis = durationHours * 60 * 60 * 1000L;
 
+            // Parse drone filters; blank means no limit
+            double floorM = parseOptional(floorStr);
+            double ceilingM = parseOptional(ceilingStr);
+            if (!Double.isNaN(floorM) && !Double.isNaN(ceilingM) && floorM > ceilingM) {
+                Toast.makeText(mapView.getContext(), "Floor must be below ceiling", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            int[] uasTypes = parseUasTypes(uasTypesStr);
+
             // Map trigger type
             GeoFence.Trigger trigger;
             String triggerName;
@@ -212,11 +236,11 @@ public class AlertConfigDialog {
                     break;
             }
 
-            // Update AOI item
-            aoiItem.setAlertEnabled(enabled);
-            aoiItem.setTriggerType(triggerName);
-            aoiItem.setMonitoredType(monitoredName);
-            aoiItem.setDurationHours(durationHours);
+            // Save the rule; GeofenceMonitor arms or disarms the drone
+            // geofence from it
+            AOIAlertRuleStore.getInstance(context).putRule(new AOIAlertRule(aoiItem.getUID(), enabled,
+                    triggerName, monitoredName, durationHours, floorM, ceilingM, uasTypes,
+                    System.currentTimeMillis()));
 
             if (enabled) {
                 // Create and register geofence
@@ -260,14 +284,53 @@ public class AlertConfigDialog {
             dialog.dismiss();
 
         } catch (NumberFormatException e) {
-            Toast.makeText(mapView.getContext(), "Invalid duration", Toast.LENGTH_SHORT).show();
-            Log.e(TAG, "Error parsing duration", e);
+            Toast.makeText(mapView.getContext(), "Invalid duration, altitude or UAS type", Toast.LENGTH_SHORT).show();
+            Log.e(TAG, "Error parsing alert settings", e);
         } catch (Exception e) {
             Toast.makeText(mapView.getContext(), "Error configuring alert", Toast.LENGTH_SHORT).show();
             Log.e(TAG, "Error configuring geofence", e);
         }
     }
 
+    private static double parseOptional(String value) {
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? Double.NaN : Double.parseDouble(trimmed);
+    }
+
+    private static String formatOptional(double value) {
+        return Double.isNaN(value) ? "" : String.valueOf(value);
+    }
+
+    /**
+     * @return UAS types from a comma separated list, or null if blank
+     */
+    private static int[] parseUasTypes(String value) {
+        String trimmed = value.trim();
+        if (trimmed.isEmpty()) {
+            return null;
+        }
+        String[] parts = trimmed.split("\\s*,\\s*");
+        int[] types = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            types[i] = Integer.parseInt(parts[i]);
+        }
+        return types;
+    }
+
+    private static String formatUasTypes(int[] types) {
+        if (types == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int type : types) {
+            if (sb.length() > 0) {
+                sb.append(",");
+            }
+            sb.append(type);
+        }
+        return sb.toString();
+    }
+
     private void setupBreachListener() {
         if (breachReceiver != null) {
             // Already registered
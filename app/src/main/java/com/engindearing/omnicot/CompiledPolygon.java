@@ -0,0 +1,300 @@
+package com.engindearing.omnicot;
+
+import java.util.Arrays;
+
+/**
+ * An AOI outline compiled for fast point-in-polygon tests. The vertices are
+ * projected once onto a local east/north plane in meters and kept in flat
+ * {@code double[]} arrays. The plane is split into horizontal slabs at every
+ * vertex's northing, and each slab lists the edges crossing it sorted west to
+ * east. A test finds the point's slab and its position among that slab's edges
+ * by binary search, so it costs O(log V) instead of a walk over every vertex.
+ *
+ * <p>Results match an even-odd ray cast. In a slab where edges of a
+ * self-intersecting outline cross, the edges can't be sorted and that slab is
+ * scanned instead. Outlines whose slab tables would exceed
+ * {@link #MAX_SLAB_ENTRIES} are ray cast on the projected vertices.
+ *
+ * <p>Immutable; compile a new one when the outline changes.
+ */
+public final class CompiledPolygon {
+
+    /** Cap on slab table size, about 8 MB */
+    public static final int MAX_SLAB_ENTRIES = 1 << 21;
+
+    // Edges meeting at a slab boundary may differ by rounding there
+    private static final double ORDER_TOLERANCE_M = 1e-6;
+
+    private static final double METERS_PER_DEGREE_LAT = 110_540.0;
+    private static final double METERS_PER_DEGREE_LON = 111_320.0;
+
+    // Projection origin
+    private final double originLat;
+    private final double originLon;
+    private final double metersPerDegreeLon;
+
+    // Vertices, interleaved east/north in meters
+    private final double[] xy;
+    private final int vertexCount;
+    private final double minX, minY, maxX, maxY;
+
+    // Per edge: east at edgeY0, edgeY0, and east change per meter north
+    private final double[] edgeX0;
+    private final double[] edgeY0;
+    private final double[] edgeSlope;
+
+    // Slab s spans northings slabY[s] to slabY[s + 1] and holds the edges
+    // slabEdges[slabStart[s]] to slabEdges[slabStart[s + 1] - 1]
+    private final double[] slabY;
+    private final int[] slabStart;
+    private final int[] slabEdges;
+    private final boolean[] slabSorted;
+
+    /**
+     * @param lats outline latitudes; the ring is closed implicitly
+     * @param lons outline longitudes, same length as {@code lats}
+     */
+    public CompiledPolygon(double[] lats, double[] lons) {
+        if (lats.length != lons.length || lats.length < 3) {
+            throw new IllegalArgumentException("Polygon needs at least 3 points");
+        }
+        vertexCount = lats.length;
+
+        double south = Double.MAX_VALUE, north = -Double.MAX_VALUE;
+        for (double lat : lats) {
+            south = Math.min(south, lat);
+            north = Math.max(north, lat);
+        }
+        originLat = (south + north) / 2;
+        originLon = lons[0];
+        metersPerDegreeLon = METERS_PER_DEGREE_LON * Math.cos(Math.toRadians(originLat));
+
+        xy = new double[vertexCount * 2];
+        double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE;
+        double x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+        for (int i = 0; i < vertexCount; i++) {
+            double x = projectX(lons[i]);
+            double y = projectY(lats[i]);
+            xy[2 * i] = x;
+            xy[2 * i + 1] = y;
+            x0 = Math.min(x0, x);
+            y0 = Math.min(y0, y);
+            x1 = Math.max(x1, x);
+            y1 = Math.max(y1, y);
+        }
+        minX = x0;
+        minY = y0;
+        maxX = x1;
+        maxY = y1;
+
+        edgeX0 = new double[vertexCount];
+        edgeY0 = new double[vertexCount];
+        edgeSlope = new double[vertexCount];
+        for (int i = 0, j = vertexCount - 1; i < vertexCount; j = i++) {
+            double ax = xy[2 * j], ay = xy[2 * j + 1];
+            double bx = xy[2 * i], by = xy[2 * i + 1];
+            edgeX0[i] = ax;
+            edgeY0[i] = ay;
+            edgeSlope[i] = by != ay ? (bx - ax) / (by - ay) : 0;
+        }
+
+        // Slab boundaries at every distinct northing
+        double[] ys = new double[vertexCount];
+        for (int i = 0; i < vertexCount; i++) {
+            ys[i] = xy[2 * i + 1];
+        }
+        Arrays.sort(ys);
+        int distinct = 0;
+        for (int i = 0; i < ys.length; i++) {
+            if (i == 0 || ys[i] != ys[distinct - 1]) {
+                ys[distinct++] = ys[i];
+            }
+        }
+        double[] boundaries = Arrays.copyOf(ys, distinct);
+        int slabs = distinct - 1;
+
+        // Count, then fill, the edges crossing each slab
+        int[] start = new int[slabs + 1];
+        long total = 0;
+        for (int e = 0; e < vertexCount; e++) {
+            int from = slabOf(boundaries, lowY(e));
+            int to = slabOf(boundaries, highY(e));
+            for (int s = from; s < to; s++) {
+                start[s + 1]++;
+            }
+            total += to - from;
+        }
+        if (total > MAX_SLAB_ENTRIES) {
+            slabY = null;
+            slabStart = null;
+            slabEdges = null;
+            slabSorted = null;
+            return;
+        }
+        for (int s = 0; s < slabs; s++) {
+            start[s + 1] += start[s];
+        }
+        int[] edges = new int[(int) total];
+        int[] fill = Arrays.copyOf(start, slabs);
+        for (int e = 0; e < vertexCount; e++) {
+            int from = slabOf(boundaries, lowY(e));
+            int to = slabOf(boundaries, highY(e));
+            for (int s = from; s < to; s++) {
+                edges[fill[s]++] = e;
+            }
+        }
+
+        boolean[] sorted = new boolean[slabs];
+        for (int s = 0; s < slabs; s++) {
+            sorted[s] = sortSlab(edges, start[s], start[s + 1], boundaries[s], boundaries[s + 1]);
+        }
+
+        slabY = boundaries;
+        slabStart = start;
+        slabEdges = edges;
+        slabSorted = sorted;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * Whether the point is inside the outline, by the even-odd rule
+     */
+    public boolean contains(double lat, double lon) {
+        double px = projectX(lon);
+        double py = projectY(lat);
+        if (px < minX || px > maxX || py < minY || py >= maxY) {
+            return false;
+        }
+        if (slabStart == null) {
+            return rayCast(px, py);
+        }
+
+        // Last slab starting at or below the point
+        int lo = 0, hi = slabY.length - 2;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (slabY[mid] <= py) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        int from = slabStart[lo];
+        int to = slabStart[lo + 1];
+
+        int crossings;
+        if (slabSorted[lo]) {
+            // First edge east of the point; every edge after it is too
+            int a = from, b = to;
+            while (a < b) {
+                int mid = (a + b) >>> 1;
+                if (xAt(slabEdges[mid], py) > px) {
+                    b = mid;
+                } else {
+                    a = mid + 1;
+                }
+            }
+            crossings = to - a;
+        } else {
+            crossings = 0;
+            for (int k = from; k < to; k++) {
+                if (xAt(slabEdges[k], py) > px) {
+                    crossings++;
+                }
+            }
+        }
+        return (crossings & 1) == 1;
+    }
+
+    /**
+     * Distance in meters from the point to the nearest edge
+     */
+    public double distanceToEdge(double lat, double lon) {
+        double px = projectX(lon);
+        double py = projectY(lat);
+        double best = Double.MAX_VALUE;
+        for (int i = 0, j = vertexCount - 1; i < vertexCount; j = i++) {
+            double ax = xy[2 * j] - px, ay = xy[2 * j + 1] - py;
+            double dx = xy[2 * i] - xy[2 * j], dy = xy[2 * i + 1] - xy[2 * j + 1];
+            double len2 = dx * dx + dy * dy;
+            double t = len2 > 0 ? Math.max(0, Math.min(1, -(ax * dx + ay * dy) / len2)) : 0;
+            double cx = ax + t * dx, cy = ay + t * dy;
+            best = Math.min(best, cx * cx + cy * cy);
+        }
+        return Math.sqrt(best);
+    }
+
+    private boolean rayCast(double px, double py) {
+        boolean inside = false;
+        for (int i = 0, j = vertexCount - 1; i < vertexCount; j = i++) {
+            double yi = xy[2 * i + 1], yj = xy[2 * j + 1];
+            if ((yi > py) != (yj > py) && px < xAt(i, py)) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    private double xAt(int edge, double y) {
+        return edgeX0[edge] + (y - edgeY0[edge]) * edgeSlope[edge];
+    }
+
+    private double lowY(int edge) {
+        int j = edge == 0 ? vertexCount - 1 : edge - 1;
+        return Math.min(xy[2 * edge + 1], xy[2 * j + 1]);
+    }
+
+    private double highY(int edge) {
+        int j = edge == 0 ? vertexCount - 1 : edge - 1;
+        return Math.max(xy[2 * edge + 1], xy[2 * j + 1]);
+    }
+
+    /**
+     * Sort a slab's edges west to east at its middle
+     *
+     * @return false if edges cross within the slab, so the order doesn't hold
+     * throughout it
+     */
+    private boolean sortSlab(int[] edges, int from, int to, double bottom, double top) {
+        int n = to - from;
+        if (n < 2) {
+            return true;
+        }
+        double middle = (bottom + top) / 2;
+        Integer[] order = new Integer[n];
+        for (int k = 0; k < n; k++) {
+            order[k] = edges[from + k];
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(xAt(a, middle), xAt(b, middle)));
+        boolean sorted = true;
+        for (int k = 0; k < n; k++) {
+            edges[from + k] = order[k];
+            if (k > 0 && (xAt(order[k], bottom) < xAt(order[k - 1], bottom) - ORDER_TOLERANCE_M
+                    || xAt(order[k], top) < xAt(order[k - 1], top) - ORDER_TOLERANCE_M)) {
+                sorted = false;
+            }
+        }
+        return sorted;
+    }
+
+    private static int slabOf(double[] boundaries, double y) {
+        return Arrays.binarySearch(boundaries, y);
+    }
+
+    private double projectX(double lon) {
+        double d = lon - originLon;
+        if (d > 180) {
+            d -= 360;
+        } else if (d < -180) {
+            d += 360;
+        }
+        return d * metersPerDegreeLon;
+    }
+
+    private double projectY(double lat) {
+        return (lat - originLat) * METERS_PER_DEGREE_LAT;
+    }
+}
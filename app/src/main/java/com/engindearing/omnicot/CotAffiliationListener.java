@@ -7,6 +7,7 @@ import com.atakmap.android.maps.MapView;
 import com.atakmap.comms.CommsLogger;
 import com.atakmap.coremap.cot.event.CotDetail;
 import com.atakmap.coremap.cot.event.CotEvent;
+import com.atakmap.coremap.maps.time.CoordinatedTime;
 
 /**
  * CoT listener that monitors incoming CoT messages for affiliation information
@@ -35,6 +36,13 @@ public class CotAffiliationListener implements CommsLogger {
         Log.d(TAG, "CotAffiliationListener initialized with callsign: " + localCallsign);
     }
 
+    /**
+     * Called for every CoT event ATAK receives. The common case - a known UID
+     * with no affiliation detail and an unchanged server - costs one map lookup
+     * and allocates nothing. Changes go through
+     * {@link AffiliationManager#setAffiliation}, which persists them in batches
+     * in the background.
+     */
     @Override
     public void logReceive(CotEvent event, String rxid, String server) {
         if (event == null) {
@@ -47,85 +55,81 @@ public class CotAffiliationListener implements CommsLogger {
                 return;
             }
 
-            // Check if the CoT event contains affiliation detail
-            CotDetail detail = event.getDetail();
-            if (detail != null) {
-                CotDetail affiliationDetail = detail.getFirstChildByName(0, AFFILIATION_DETAIL_TAG);
+            AffiliationData existingData = affiliationManager.getAffiliation(uid);
 
-                if (affiliationDetail != null) {
-                    // Extract affiliation information from the detail
-                    String affiliationValue = affiliationDetail.getAttribute("affiliation");
-                    String markedBy = affiliationDetail.getAttribute("markedBy");
-                    String notes = affiliationDetail.getAttribute("notes");
-
-                    if (affiliationValue != null) {
-                        AffiliationData.Affiliation affiliation =
-                            AffiliationData.Affiliation.fromString(affiliationValue);
-
-                        // Check if we already have this affiliation stored
-                        AffiliationData existingData = affiliationManager.getAffiliation(uid);
-
-                        if (existingData != null) {
-                            // Update existing affiliation if it's different
-                            boolean affiliationChanged = existingData.getAffiliation() != affiliation;
-                            boolean markerChanged = markedBy != null && !markedBy.equals(existingData.getMarkedBy());
-
-                            if (affiliationChanged || markerChanged) {
-                                existingData.setAffiliation(affiliation);
-                                if (markedBy != null) {
-                                    existingData.setMarkedBy(markedBy);
-                                }
-                                if (server != null) {
-                                    existingData.setServerConnection(server);
-                                }
-                                if (notes != null && !notes.isEmpty()) {
-                                    existingData.setNotes(notes);
-                                }
-
-                                affiliationManager.setAffiliation(existingData);
-
-                                Log.d(TAG, "Updated affiliation for " + uid + ": " + affiliation +
-                                      " (marked by " + markedBy + ")");
-                            }
-                        } else {
-                            // Create new affiliation entry
-                            AffiliationData newData = new AffiliationData(
-                                uid, affiliation, markedBy, server
-                            );
-                            if (notes != null && !notes.isEmpty()) {
-                                newData.setNotes(notes);
-                            }
-
-                            affiliationManager.setAffiliation(newData);
-
-                            Log.d(TAG, "New affiliation received for " + uid + ": " + affiliation +
-                                  " (marked by " + markedBy + ")");
-                        }
+            CotDetail detail = event.getDetail();
+            CotDetail affiliationDetail = detail != null
+                    ? detail.getFirstChildByName(0, AFFILIATION_DETAIL_TAG) : null;
+
+            if (affiliationDetail == null) {
+                if (existingData == null) {
+                    // Default UNKNOWN for new CoT items; kept in memory only and
+                    // dropped once the track goes stale
+                    affiliationManager.recordImplicit(uid, server, staleMillis(event));
+                } else if (existingData.isImplicit()) {
+                    affiliationManager.extendImplicit(existingData, staleMillis(event));
+                    if (server != null && !server.equals(existingData.getServerConnection())) {
+                        existingData.setServerConnection(server);
                     }
+                } else if (server != null && !server.equals(existingData.getServerConnection())) {
+                    // Update server connection for existing affiliation
+                    existingData.setServerConnection(server);
+                    affiliationManager.setAffiliation(existingData);
                 }
+                return;
             }
 
-            // Also check if we have existing affiliation data for this UID
-            // This helps maintain affiliation even when the CoT doesn't include the detail
-            if (!affiliationManager.hasAffiliation(uid)) {
-                // Create default UNKNOWN affiliation for new CoT items
-                AffiliationData defaultData = new AffiliationData(
-                    uid,
-                    AffiliationData.Affiliation.UNKNOWN,
-                    "System",
-                    server
-                );
-                affiliationManager.setAffiliation(defaultData);
+            // Extract affiliation information from the detail
+            String affiliationValue = affiliationDetail.getAttribute("affiliation");
+            if (affiliationValue == null) {
+                return;
+            }
+            String markedBy = affiliationDetail.getAttribute("markedBy");
+            String notes = affiliationDetail.getAttribute("notes");
+            AffiliationData.Affiliation affiliation =
+                AffiliationData.Affiliation.fromString(affiliationValue);
+
+            if (existingData != null) {
+                // Update existing affiliation if it's different
+                boolean affiliationChanged = existingData.getAffiliation() != affiliation;
+                boolean markerChanged = markedBy != null && !markedBy.equals(existingData.getMarkedBy());
+                boolean serverChanged = server != null && !server.equals(existingData.getServerConnection());
+
+                // A federated affiliation for a track we only knew implicitly is
+                // persisted even when it still says UNKNOWN
+                if (affiliationChanged || markerChanged || existingData.isImplicit()) {
+                    existingData.setAffiliation(affiliation);
+                    if (markedBy != null) {
+                        existingData.setMarkedBy(markedBy);
+                    }
+                    if (server != null) {
+                        existingData.setServerConnection(server);
+                    }
+                    if (notes != null && !notes.isEmpty()) {
+                        existingData.setNotes(notes);
+                    }
 
-                Log.d(TAG, "Created default UNKNOWN affiliation for new CoT: " + uid);
-            } else {
-                // Update server connection for existing affiliation
-                AffiliationData existingData = affiliationManager.getAffiliation(uid);
-                if (existingData != null && server != null &&
-                    !server.equals(existingData.getServerConnection())) {
+                    affiliationManager.setAffiliation(existingData);
+
+                    Log.d(TAG, "Updated affiliation for " + uid + ": " + affiliation +
+                          " (marked by " + markedBy + ")");
+                } else if (serverChanged) {
                     existingData.setServerConnection(server);
                     affiliationManager.setAffiliation(existingData);
                 }
+            } else {
+                // Create new affiliation entry
+                AffiliationData newData = new AffiliationData(
+                    uid, affiliation, markedBy, server
+                );
+                if (notes != null && !notes.isEmpty()) {
+                    newData.setNotes(notes);
+                }
+
+                affiliationManager.setAffiliation(newData);
+
+                Log.d(TAG, "New affiliation received for " + uid + ": " + affiliation +
+                      " (marked by " + markedBy + ")");
             }
 
         } catch (Exception e) {
@@ -133,6 +137,11 @@ public class CotAffiliationListener implements CommsLogger {
         }
     }
 
+    private static long staleMillis(CotEvent event) {
+        CoordinatedTime stale = event.getStale();
+        return stale != null ? stale.getMilliseconds() : 0;
+    }
+
     @Override
     public void logSend(CotEvent event, String destination) {
         // We can track outgoing affiliation updates here if needed
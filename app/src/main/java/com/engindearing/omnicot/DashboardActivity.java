@@ -1,6 +1,9 @@
 package com.engindearing.omnicot;
 
+import android.app.AlertDialog;
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.View;
 import android.widget.Button;
 import android.widget.ImageButton;
@@ -11,22 +14,38 @@ import android.widget.Toast;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.atakmap.android.maps.MapGroup;
 import com.atakmap.android.maps.MapView;
-import com.atakmap.android.maps.Shape;
+import com.atakmap.coremap.filesystem.FileSystemUtils;
 import com.atakmap.coremap.log.Log;
 import com.engindearing.omnicot.remoteid.BluetoothDeviceDialog;
 import com.engindearing.omnicot.remoteid.BluetoothManager;
+import com.engindearing.omnicot.remoteid.FrameReplayer;
+import com.engindearing.omnicot.remoteid.IngestRing;
+import com.engindearing.omnicot.remoteid.PipelineLatency;
 import com.engindearing.omnicot.remoteid.RemoteIdParser;
+import com.engindearing.omnicot.remoteid.SensorStats;
 
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DashboardActivity {
 
     private static final String TAG = DashboardActivity.class.getSimpleName();
 
+    // Detection counter refreshes are batched to at most one per interval
+    private static final long DETECTION_UI_REFRESH_MS = 250;
+
+    // Frame captures, under the ATAK root so they can be pulled off the device
+    private static final String CAPTURE_DIR = "tools/omnicot/captures";
+    private static final String CAPTURE_SUFFIX = ".ocfr";
+
     private final Context context;
     private final MapView mapView;
     private final View dashboardView;
@@ -55,11 +74,23 @@ public class DashboardActivity {
 
     // Bluetooth Manager
     private BluetoothManager bluetoothManager;
+    // Capture being played back into the ingest path, if any
+    private FrameReplayer replayer;
+
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean detectionRefreshPending = new AtomicBoolean(false);
+    private final Runnable detectionRefresh = () -> {
+        detectionRefreshPending.set(false);
+        txtDronesDetected.setText(String.valueOf(dronesDetectedCount.get()));
+    };
+    private final AOIAlertRuleStore.Listener alertRuleListener =
+            (uid, rule) -> uiHandler.post(this::updateStats);
 
     // Activity tracking
     private static int cotModifiedCount = 0;
-    private static int dronesDetectedCount = 0;
-    private static List<String> recentActivities = new ArrayList<>();
+    // Updated from the Bluetooth ingest worker
+    private static final AtomicInteger dronesDetectedCount = new AtomicInteger();
+    private static final List<String> recentActivities = new ArrayList<>();
 
     public DashboardActivity(Context context, MapView mapView, View dashboardView, OmniCOTDropDownReceiver receiver) {
         this.context = context;
@@ -68,6 +99,7 @@ public class DashboardActivity {
         this.receiver = receiver;
 
         initializeUI();
+        receiver.getAlertRuleStore().addListener(alertRuleListener);
         updateStats();
     }
 
@@ -142,7 +174,7 @@ public class DashboardActivity {
             @Override
             public void onClick(View v) {
                 HapticFeedbackHelper.performMediumClick(v);
-                Toast.makeText(context, "Settings - Coming Soon", Toast.LENGTH_SHORT).show();
+                showCaptureOptions();
             }
         });
 
@@ -193,44 +225,20 @@ public class DashboardActivity {
         txtCOTModified.setText(String.valueOf(cotModifiedCount));
 
         // Drones detected count
-        txtDronesDetected.setText(String.valueOf(dronesDetectedCount));
+        txtDronesDetected.setText(String.valueOf(dronesDetectedCount.get()));
 
         Log.d(TAG, "Dashboard stats updated - AOIs: " + aoiCount + ", Alerts: " + alertCount +
-                ", COT: " + cotModifiedCount + ", Drones: " + dronesDetectedCount);
+                ", COT: " + cotModifiedCount + ", Drones: " + dronesDetectedCount.get());
     }
 
     private int getAOICount() {
-        try {
-            // Get the Drawing Objects group where shapes are stored
-            MapGroup drawingGroup = mapView.getRootGroup().findMapGroup("Drawing Objects");
-            if (drawingGroup == null) {
-                Log.d(TAG, "Drawing Objects group not found");
-                return 0;
-            }
-
-            int count = 0;
-            Collection<com.atakmap.android.maps.MapItem> items = drawingGroup.deepFindItems("type", "shape");
-            if (items != null) {
-                for (com.atakmap.android.maps.MapItem item : items) {
-                    if (item instanceof Shape) {
-                        count++;
-                        Log.d(TAG, "Found AOI: " + item.getTitle());
-                    }
-                }
-            }
-
-            Log.d(TAG, "Total AOIs found: " + count);
-            return count;
-        } catch (Exception e) {
-            Log.e(TAG, "Error counting AOIs", e);
-            return 0;
-        }
+        // Kept current from map events, so this never walks the drawing group
+        return receiver.getAOIRegistry().getCount();
     }
 
     private int getActiveAlertCount() {
-        // Count AOIs with alerts enabled
-        // This would need to track which AOIs have alerts configured
-        return 0; // Placeholder
+        // Maintained by the store as rules change
+        return receiver.getAlertRuleStore().getActiveCount();
     }
 
     public static void incrementCOTModified() {
@@ -239,9 +247,11 @@ public class DashboardActivity {
     }
 
     public static void addActivity(String activity) {
-        recentActivities.add(0, activity);
-        if (recentActivities.size() > 10) {
-            recentActivities.remove(recentActivities.size() - 1);
+        synchronized (recentActivities) {
+            recentActivities.add(0, activity);
+            if (recentActivities.size() > 10) {
+                recentActivities.remove(recentActivities.size() - 1);
+            }
         }
     }
 
@@ -266,11 +276,13 @@ public class DashboardActivity {
 
     private void onViewHistoryClick() {
         StringBuilder history = new StringBuilder("Recent Activity:\n\n");
-        if (recentActivities.isEmpty()) {
-            history.append("No recent activity");
-        } else {
-            for (int i = 0; i < Math.min(5, recentActivities.size()); i++) {
-                history.append("• ").append(recentActivities.get(i)).append("\n");
+        synchronized (recentActivities) {
+            if (recentActivities.isEmpty()) {
+                history.append("No recent activity");
+            } else {
+                for (int i = 0; i < Math.min(5, recentActivities.size()); i++) {
+                    history.append("• ").append(recentActivities.get(i)).append("\n");
+                }
             }
         }
         Toast.makeText(context, history.toString(), Toast.LENGTH_LONG).show();
@@ -283,7 +295,8 @@ public class DashboardActivity {
                 "• AOI Management - Manage areas of interest\n" +
                 "• Create Alert - Set up geofence alerts\n" +
                 "• View History - See recent activities\n" +
-                "• Remote ID Detection - Connect to gyb_detect device\n\n" +
+                "• Remote ID Detection - Connect to gyb_detect device\n" +
+                "• Settings - Capture gyb_detect frames or replay a capture\n\n" +
                 "Stats show active AOIs, alerts, modified COT markers, and detected drones.";
 
         Toast.makeText(context, helpText, Toast.LENGTH_LONG).show();
@@ -324,9 +337,9 @@ public class DashboardActivity {
 
             @Override
             public void onConnected(String deviceName) {
-                txtBluetoothStatus.setText("Bluetooth: Connected");
-                txtBluetoothDevice.setText(deviceName);
-                btnBluetoothConnect.setEnabled(false);
+                showConnectedSensors();
+                // Further gyb_detect units can be added alongside this one
+                btnBluetoothConnect.setEnabled(true);
                 btnBluetoothDisconnect.setEnabled(true);
                 addActivity("Connected to " + deviceName);
                 Toast.makeText(context, "Connected to " + deviceName, Toast.LENGTH_SHORT).show();
@@ -342,11 +355,22 @@ public class DashboardActivity {
                 addActivity("Bluetooth disconnected");
             }
 
+            @Override
+            public void onSensorDisconnected(String deviceName, int remaining) {
+                showConnectedSensors();
+                addActivity("Disconnected from " + deviceName + ", " + remaining + " still connected");
+            }
+
             @Override
             public void onError(String error) {
-                txtBluetoothStatus.setText("Bluetooth: Error");
+                if (bluetoothManager.isConnected()) {
+                    // Another sensor is still feeding detections
+                    showConnectedSensors();
+                } else {
+                    txtBluetoothStatus.setText("Bluetooth: Error");
+                }
                 btnBluetoothConnect.setEnabled(true);
-                btnBluetoothDisconnect.setEnabled(false);
+                btnBluetoothDisconnect.setEnabled(bluetoothManager.isConnected());
                 Toast.makeText(context, "Bluetooth error: " + error, Toast.LENGTH_SHORT).show();
                 Log.e(TAG, "Bluetooth error: " + error);
             }
@@ -360,6 +384,17 @@ public class DashboardActivity {
         }
     }
 
+    private void showConnectedSensors() {
+        int count = bluetoothManager.getConnectedSensorCount();
+        txtBluetoothStatus.setText(count > 1
+                ? "Bluetooth: Connected (" + count + " sensors)"
+                : "Bluetooth: Connected");
+        String names = bluetoothManager.getConnectedDeviceName();
+        if (names != null) {
+            txtBluetoothDevice.setText(names);
+        }
+    }
+
     private void onBluetoothConnectClick() {
         if (!bluetoothManager.isBluetoothAvailable()) {
             Toast.makeText(context, "Please enable Bluetooth first", Toast.LENGTH_SHORT).show();
@@ -384,18 +419,125 @@ public class DashboardActivity {
 
     private void onBluetoothRefreshClick() {
         if (bluetoothManager.isConnected()) {
-            Toast.makeText(context, "Already connected", Toast.LENGTH_SHORT).show();
+            // Show per-sensor health instead of reconnecting
+            long now = System.currentTimeMillis();
+            StringBuilder summary = new StringBuilder();
+            for (SensorStats stats : bluetoothManager.getSensorStats()) {
+                if (summary.length() > 0) {
+                    summary.append('\n');
+                }
+                summary.append(stats.getName()).append(": ")
+                        .append(stats.getHealth(now)).append(", ")
+                        .append(String.format(Locale.US, "%.1f", stats.getFrameRate(now))).append(" frames/s, ")
+                        .append(stats.getDetectionCount()).append(" detections");
+            }
+            IngestRing<?> queue = bluetoothManager.getIngestQueue();
+            summary.append("\nIngest queue: ").append(queue.getDepth()).append('/').append(queue.getCapacity())
+                    .append(", peak ").append(queue.getHighWaterMark())
+                    .append(", dropped ").append(queue.getDroppedCount());
+            String latency = PipelineLatency.getInstance().dump();
+            Log.i(TAG, "Pipeline latency since frame complete:\n" + latency);
+            summary.append("\nLatency since frame:\n").append(latency);
+            Toast.makeText(context, summary.toString(), Toast.LENGTH_LONG).show();
         } else {
             onBluetoothConnectClick();
         }
     }
 
+    // ========== Capture and Replay ==========
+
+    private void showCaptureOptions() {
+        final boolean capturing = bluetoothManager.isCapturing();
+        final boolean replaying = replayer != null && replayer.isRunning();
+        String[] options = {
+                capturing ? "Stop capture" : "Start capture",
+                replaying ? "Stop replay" : "Replay latest capture"
+        };
+        new AlertDialog.Builder(mapView.getContext())
+                .setTitle("Frame Capture")
+                .setItems(options, (d, which) -> {
+                    if (which == 0) {
+                        if (capturing) {
+                            stopCapture();
+                        } else {
+                            startCapture();
+                        }
+                    } else if (replaying) {
+                        stopReplay();
+                    } else {
+                        replayLatestCapture();
+                    }
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void startCapture() {
+        File dir = FileSystemUtils.getItem(CAPTURE_DIR);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Toast.makeText(context, "Cannot create " + dir, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        String name = "capture-" + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date())
+                + CAPTURE_SUFFIX;
+        File file = new File(dir, name);
+        try {
+            bluetoothManager.startCapture(file);
+            addActivity("Capturing frames to " + name);
+            Toast.makeText(context, "Capturing to " + file, Toast.LENGTH_SHORT).show();
+        } catch (IOException e) {
+            Log.e(TAG, "Could not start capture to " + file, e);
+            Toast.makeText(context, "Capture failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private void stopCapture() {
+        bluetoothManager.stopCapture();
+        addActivity("Frame capture stopped");
+        Toast.makeText(context, "Capture stopped", Toast.LENGTH_SHORT).show();
+    }
+
+    private void replayLatestCapture() {
+        File latest = null;
+        File[] files = FileSystemUtils.getItem(CAPTURE_DIR).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(CAPTURE_SUFFIX)
+                        && (latest == null || file.lastModified() > latest.lastModified())) {
+                    latest = file;
+                }
+            }
+        }
+        if (latest == null) {
+            Toast.makeText(context, "No captures in " + CAPTURE_DIR, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        // Real time, so markers move as they did when it was recorded
+        replayer = bluetoothManager.replay(latest, FrameReplayer.REAL_TIME);
+        addActivity("Replaying " + latest.getName());
+        Toast.makeText(context, "Replaying " + latest.getName(), Toast.LENGTH_SHORT).show();
+    }
+
+    private void stopReplay() {
+        if (replayer != null) {
+            replayer.stop();
+            addActivity("Replay stopped after " + replayer.getFramesReplayed() + " frames");
+            replayer = null;
+        }
+    }
+
+    /**
+     * Called on the Bluetooth ingest worker, not the UI thread
+     */
     private void handleDroneDetection(com.engindearing.omnicot.remoteid.RemoteIdData data) {
         Log.d(TAG, "Drone detected: " + data.toString());
 
-        // Increment counter
-        dronesDetectedCount++;
-        updateStats();
+        // Increment counter; the text view is refreshed on the UI thread at most
+        // once per DETECTION_UI_REFRESH_MS however fast detections arrive
+        dronesDetectedCount.incrementAndGet();
+        if (detectionRefreshPending.compareAndSet(false, true)) {
+            uiHandler.postDelayed(detectionRefresh, DETECTION_UI_REFRESH_MS);
+        }
 
         // Add to activity log
         String activity = "Drone detected: " + data.getUniqueId() +
@@ -414,10 +556,13 @@ public class DashboardActivity {
     }
 
     public static void incrementDronesDetected() {
-        dronesDetectedCount++;
+        dronesDetectedCount.incrementAndGet();
     }
 
     public void dispose() {
+        uiHandler.removeCallbacks(detectionRefresh);
+        stopReplay();
+        receiver.getAlertRuleStore().removeListener(alertRuleListener);
         if (bluetoothManager != null) {
             bluetoothManager.shutdown();
         }
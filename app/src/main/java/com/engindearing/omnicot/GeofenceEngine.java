@@ -0,0 +1,579 @@
+package com.engindearing.omnicot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Breach detection for Remote ID tracks against armed AOIs.
+ * ATAK's GeoFenceComponent only filters by affiliation, so drones can't be
+ * targeted by UAS type or altitude; this engine tests every drone and operator
+ * position against the fences itself and reports entries and exits.
+ *
+ * <p>Evaluation is incremental. Fences are indexed by bounds on a grid, and
+ * the grid cells each fence's edges pass through are marked as boundary cells.
+ * A track is only re-tested against fence geometry when it moves to another
+ * cell, is in a boundary cell, or is held inside a fence by the hysteresis
+ * margin; otherwise it can't have crossed an edge. Altitude bands are
+ * re-checked on every update since they are cheap.
+ *
+ * <p>To keep a track hovering on an edge from flapping, leaving a fence takes
+ * {@link #setHorizontalHysteresisM horizontal} or
+ * {@link #setVerticalHysteresisM vertical} margin beyond it; entering is
+ * immediate. A track first seen inside a fence counts as an entry.
+ *
+ * <p>Thread-safe. Listeners are called on the thread that reported the
+ * position, after the engine's lock is released.
+ */
+public class GeofenceEngine {
+
+    public enum Trigger { ENTRY, EXIT, BOTH }
+
+    public enum BreachType { ENTRY, EXIT }
+
+    public static final double DEFAULT_HORIZONTAL_HYSTERESIS_M = 15;
+    public static final double DEFAULT_VERTICAL_HYSTERESIS_M = 5;
+
+    /** Tracks not heard from for this long are forgotten */
+    public static final long TRACK_TIMEOUT_MS = 5 * 60 * 1000;
+
+    private static final long NO_CELL = Long.MIN_VALUE;
+
+    private static final GeofenceEngine INSTANCE = new GeofenceEngine();
+
+    /**
+     * One armed AOI: its outline plus what should trigger it
+     */
+    public static class Fence {
+        private final String id;
+        private final String name;
+        private final double[] lats;
+        private final double[] lons;
+        // Compiled once; an outline change builds a new Fence
+        private final CompiledPolygon polygon;
+        private Trigger trigger = Trigger.BOTH;
+        private double floorM = Double.NaN;
+        private double ceilingM = Double.NaN;
+        private int[] uasTypes;
+        private long expiresAtMs;
+        // Set by the engine
+        private long[] boundaryCells = new long[0];
+
+        /**
+         * @param lats outline latitudes; the ring is closed implicitly
+         * @param lons outline longitudes, same length as {@code lats}
+         */
+        public Fence(String id, String name, double[] lats, double[] lons) {
+            if (lats.length != lons.length || lats.length < 3) {
+                throw new IllegalArgumentException("Fence " + id + " needs at least 3 points");
+            }
+            this.id = id;
+            this.name = name;
+            this.lats = lats.clone();
+            this.lons = lons.clone();
+            this.polygon = new CompiledPolygon(this.lats, this.lons);
+        }
+
+        public String getId() { return id; }
+        public String getName() { return name; }
+        public int getVertexCount() { return lats.length; }
+
+        public Trigger getTrigger() { return trigger; }
+        public void setTrigger(Trigger trigger) { this.trigger = trigger; }
+
+        /** Lowest height above ground that counts as inside, or NaN for none */
+        public double getFloorM() { return floorM; }
+        public void setFloorM(double floorM) { this.floorM = floorM; }
+
+        /** Highest height above ground that counts as inside, or NaN for none */
+        public double getCeilingM() { return ceilingM; }
+        public void setCeilingM(double ceilingM) { this.ceilingM = ceilingM; }
+
+        /** UAS types (0-15) this fence applies to, or null for all */
+        public int[] getUasTypes() { return uasTypes; }
+        public void setUasTypes(int[] uasTypes) {
+            this.uasTypes = uasTypes != null && uasTypes.length > 0 ? uasTypes.clone() : null;
+        }
+
+        /** When the fence stops alerting, or 0 for never */
+        public long getExpiresAtMs() { return expiresAtMs; }
+        public void setExpiresAtMs(long expiresAtMs) { this.expiresAtMs = expiresAtMs; }
+
+        boolean appliesTo(int uasType) {
+            if (uasTypes == null) {
+                return true;
+            }
+            for (int type : uasTypes) {
+                if (type == uasType) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean isExpired(long nowMs) {
+            return expiresAtMs > 0 && nowMs >= expiresAtMs;
+        }
+
+        boolean triggersOn(BreachType type) {
+            return trigger == Trigger.BOTH
+                    || (trigger == Trigger.ENTRY && type == BreachType.ENTRY)
+                    || (trigger == Trigger.EXIT && type == BreachType.EXIT);
+        }
+
+        boolean containsHorizontal(double lat, double lon) {
+            return polygon.contains(lat, lon);
+        }
+
+        double distanceToEdgeM(double lat, double lon) {
+            return polygon.distanceToEdge(lat, lon);
+        }
+    }
+
+    /**
+     * A track entering or leaving a fence
+     */
+    public static class Breach {
+        private final Fence fence;
+        private final String trackId;
+        private final BreachType type;
+        private final double lat;
+        private final double lon;
+        private final double hagM;
+        private final long timeMs;
+
+        Breach(Fence fence, String trackId, BreachType type, double lat, double lon, double hagM, long timeMs) {
+            this.fence = fence;
+            this.trackId = trackId;
+            this.type = type;
+            this.lat = lat;
+            this.lon = lon;
+            this.hagM = hagM;
+            this.timeMs = timeMs;
+        }
+
+        public Fence getFence() { return fence; }
+        public String getTrackId() { return trackId; }
+        public BreachType getType() { return type; }
+        public double getLat() { return lat; }
+        public double getLon() { return lon; }
+        public double getHagM() { return hagM; }
+        public long getTimeMs() { return timeMs; }
+
+        @Override
+        public String toString() {
+            return trackId + " " + type + " " + fence.getName() + " at " + lat + "," + lon +
+                    (Double.isNaN(hagM) ? "" : " " + Math.round(hagM) + "m AGL");
+        }
+    }
+
+    public interface Listener {
+        void onBreach(Breach breach);
+    }
+
+    private static final class FenceState {
+        boolean horizontal;
+        boolean band;
+        boolean inside;
+        int seen;
+    }
+
+    private static final class Track {
+        long cell = NO_CELL;
+        long lastUpdateMs;
+        // Outside some fence but within its hysteresis margin, which may
+        // reach into cells no edge passes through
+        boolean inMargin;
+        final Map<String, FenceState> states = new HashMap<>(4);
+    }
+
+    private final double cellDegrees;
+    private final AOISpatialIndex<Fence> index;
+    private final Map<String, Fence> fences = new HashMap<>();
+    // Number of fences with an edge through each cell
+    private final Map<Long, Integer> boundaryCells = new HashMap<>();
+    private final Map<String, Track> tracks = new HashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final List<Fence> candidates = new ArrayList<>();
+
+    private double horizontalHysteresisM = DEFAULT_HORIZONTAL_HYSTERESIS_M;
+    private double verticalHysteresisM = DEFAULT_VERTICAL_HYSTERESIS_M;
+    private int retestStamp = 0;
+    private long lastSweepMs = 0;
+
+    private long updates = 0;
+    private long retests = 0;
+
+    public GeofenceEngine() {
+        this(AOISpatialIndex.DEFAULT_CELL_DEGREES);
+    }
+
+    public GeofenceEngine(double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+        this.index = new AOISpatialIndex<>(cellDegrees);
+    }
+
+    public static GeofenceEngine getInstance() {
+        return INSTANCE;
+    }
+
+    public void addListener(Listener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public synchronized void setHorizontalHysteresisM(double meters) {
+        this.horizontalHysteresisM = meters;
+    }
+
+    public synchronized void setVerticalHysteresisM(double meters) {
+        this.verticalHysteresisM = meters;
+    }
+
+    /**
+     * Arm a fence, or replace the one with the same ID. Tracks inside the old
+     * outline keep their state, so replacing a fence doesn't re-alert.
+     */
+    public synchronized void putFence(Fence fence) {
+        Fence previous = fences.put(fence.getId(), fence);
+        if (previous != null) {
+            unmarkBoundary(previous);
+        }
+        double south = Double.MAX_VALUE, north = -Double.MAX_VALUE;
+        double west = Double.MAX_VALUE, east = -Double.MAX_VALUE;
+        for (int i = 0; i < fence.lats.length; i++) {
+            south = Math.min(south, fence.lats[i]);
+            north = Math.max(north, fence.lats[i]);
+            west = Math.min(west, fence.lons[i]);
+            east = Math.max(east, fence.lons[i]);
+        }
+        index.put(fence.getId(), fence, south, west, north, east);
+        markBoundary(fence);
+        invalidateTracks();
+    }
+
+    /**
+     * Disarm a fence. Tracks inside it get no exit.
+     */
+    public synchronized boolean removeFence(String id) {
+        Fence fence = fences.remove(id);
+        if (fence == null) {
+            return false;
+        }
+        index.remove(id);
+        unmarkBoundary(fence);
+        return true;
+    }
+
+    /**
+     * Replace an armed fence's outline, keeping its trigger settings. An
+     * unchanged outline leaves the fence as it is, so callers can pass every
+     * shape edit through without recompiling on renames or style changes.
+     *
+     * @return false if no fence has this ID
+     */
+    public synchronized boolean updateGeometry(String id, double[] lats, double[] lons) {
+        Fence old = fences.get(id);
+        if (old == null) {
+            return false;
+        }
+        if (Arrays.equals(old.lats, lats) && Arrays.equals(old.lons, lons)) {
+            return true;
+        }
+        Fence fence = new Fence(id, old.name, lats, lons);
+        fence.trigger = old.trigger;
+        fence.floorM = old.floorM;
+        fence.ceilingM = old.ceilingM;
+        fence.uasTypes = old.uasTypes;
+        fence.expiresAtMs = old.expiresAtMs;
+        putFence(fence);
+        return true;
+    }
+
+    public synchronized Fence getFence(String id) {
+        return fences.get(id);
+    }
+
+    public synchronized List<Fence> getFences() {
+        return new ArrayList<>(fences.values());
+    }
+
+    public synchronized int getFenceCount() {
+        return fences.size();
+    }
+
+    public synchronized int getTrackCount() {
+        return tracks.size();
+    }
+
+    /** Position updates received */
+    public synchronized long getUpdateCount() {
+        return updates;
+    }
+
+    /** Updates that had to be tested against fence geometry */
+    public synchronized long getRetestCount() {
+        return retests;
+    }
+
+    public synchronized void clear() {
+        fences.clear();
+        index.clear();
+        boundaryCells.clear();
+        tracks.clear();
+    }
+
+    /**
+     * Test a track's new position against the fences
+     *
+     * @param trackId e.g. the drone's or operator's CoT UID
+     * @param hagM    height above ground, or NaN if unknown (altitude bands
+     *                then don't apply)
+     * @param uasType Remote ID UAS type, for fences limited to some types
+     * @return breaches reported to listeners, usually none
+     */
+    public List<Breach> updateTrack(String trackId, double lat, double lon, double hagM,
+                                    int uasType, long nowMs) {
+        List<Breach> breaches = null;
+        synchronized (this) {
+            updates++;
+            if (nowMs - lastSweepMs > TRACK_TIMEOUT_MS / 4) {
+                expireTracks(nowMs);
+            }
+            Track track = tracks.get(trackId);
+            if (track == null) {
+                track = new Track();
+                tracks.put(trackId, track);
+            }
+            track.lastUpdateMs = nowMs;
+
+            long cell = cellKey(lat, lon);
+            if (cell != track.cell || track.inMargin || boundaryCells.containsKey(cell)) {
+                retests++;
+                retestHorizontal(track, lat, lon, uasType);
+            }
+            track.cell = cell;
+
+            Iterator<Map.Entry<String, FenceState>> it = track.states.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, FenceState> entry = it.next();
+                Fence fence = fences.get(entry.getKey());
+                if (fence == null || fence.isExpired(nowMs) || !fence.appliesTo(uasType)) {
+                    it.remove();
+                    continue;
+                }
+                FenceState state = entry.getValue();
+                state.band = inBand(fence, hagM, state.band);
+                boolean inside = state.horizontal && state.band;
+                if (inside != state.inside) {
+                    state.inside = inside;
+                    BreachType type = inside ? BreachType.ENTRY : BreachType.EXIT;
+                    if (fence.triggersOn(type)) {
+                        if (breaches == null) {
+                            breaches = new ArrayList<>(2);
+                        }
+                        breaches.add(new Breach(fence, trackId, type, lat, lon, hagM, nowMs));
+                    }
+                }
+                if (!state.horizontal && !state.inside) {
+                    it.remove();
+                }
+            }
+        }
+
+        if (breaches == null) {
+            return Collections.emptyList();
+        }
+        for (Breach breach : breaches) {
+            for (Listener listener : listeners) {
+                listener.onBreach(breach);
+            }
+        }
+        return breaches;
+    }
+
+    /**
+     * Forget a track, e.g. when its drone is no longer heard. No exits are
+     * reported.
+     */
+    public synchronized void removeTrack(String trackId) {
+        tracks.remove(trackId);
+    }
+
+    /**
+     * Forget tracks not updated for {@link #TRACK_TIMEOUT_MS}
+     */
+    public synchronized int expireTracks(long nowMs) {
+        lastSweepMs = nowMs;
+        int removed = 0;
+        Iterator<Track> it = tracks.values().iterator();
+        while (it.hasNext()) {
+            if (nowMs - it.next().lastUpdateMs > TRACK_TIMEOUT_MS) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private void retestHorizontal(Track track, double lat, double lon, int uasType) {
+        int stamp = ++retestStamp;
+        track.inMargin = false;
+        candidates.clear();
+        index.queryPoint(lat, lon, candidates);
+        for (int i = 0; i < candidates.size(); i++) {
+            Fence fence = candidates.get(i);
+            if (!fence.appliesTo(uasType)) {
+                continue;
+            }
+            boolean raw = fence.containsHorizontal(lat, lon);
+            FenceState state = track.states.get(fence.getId());
+            if (state == null) {
+                if (!raw) {
+                    continue;
+                }
+                state = new FenceState();
+                track.states.put(fence.getId(), state);
+            }
+            state.horizontal = raw || (state.horizontal && fence.distanceToEdgeM(lat, lon) < horizontalHysteresisM);
+            state.seen = stamp;
+            if (state.horizontal && !raw) {
+                track.inMargin = true;
+            }
+        }
+        candidates.clear();
+
+        // Fences the track was in whose bounds no longer contain it
+        for (Map.Entry<String, FenceState> entry : track.states.entrySet()) {
+            FenceState state = entry.getValue();
+            if (state.seen != stamp && state.horizontal) {
+                Fence fence = fences.get(entry.getKey());
+                state.horizontal = fence != null && fence.distanceToEdgeM(lat, lon) < horizontalHysteresisM;
+                if (state.horizontal) {
+                    track.inMargin = true;
+                }
+            }
+        }
+    }
+
+    private boolean inBand(Fence fence, double hagM, boolean wasInBand) {
+        if (Double.isNaN(hagM)) {
+            return true;
+        }
+        boolean hasFloor = !Double.isNaN(fence.floorM);
+        boolean hasCeiling = !Double.isNaN(fence.ceilingM);
+        boolean inside = (!hasFloor || hagM >= fence.floorM) && (!hasCeiling || hagM <= fence.ceilingM);
+        if (inside || !wasInBand) {
+            return inside;
+        }
+        return (!hasFloor || hagM >= fence.floorM - verticalHysteresisM)
+                && (!hasCeiling || hagM <= fence.ceilingM + verticalHysteresisM);
+    }
+
+    private void invalidateTracks() {
+        for (Track track : tracks.values()) {
+            track.cell = NO_CELL;
+        }
+    }
+
+    private void markBoundary(Fence fence) {
+        Set<Long> cells = new HashSet<>();
+        for (int i = 0, j = fence.lats.length - 1; i < fence.lats.length; j = i++) {
+            rasterizeEdge(fence.lats[j], fence.lons[j], fence.lats[i], fence.lons[i], cells);
+        }
+        long[] marked = new long[cells.size()];
+        int n = 0;
+        for (Long cell : cells) {
+            marked[n++] = cell;
+            Integer count = boundaryCells.get(cell);
+            boundaryCells.put(cell, count == null ? 1 : count + 1);
+        }
+        fence.boundaryCells = marked;
+    }
+
+    private void unmarkBoundary(Fence fence) {
+        for (long cell : fence.boundaryCells) {
+            Integer count = boundaryCells.get(cell);
+            if (count == null || count <= 1) {
+                boundaryCells.remove(cell);
+            } else {
+                boundaryCells.put(cell, count - 1);
+            }
+        }
+        fence.boundaryCells = new long[0];
+    }
+
+    /**
+     * Add every grid cell the segment passes through. Walks cell borders in
+     * order of crossing; where it passes exactly through a corner both
+     * neighbouring cells are added to stay conservative.
+     */
+    void rasterizeEdge(double lat0, double lon0, double lat1, double lon1, Set<Long> out) {
+        double x0 = (lon0 + 180) / cellDegrees;
+        double y0 = (lat0 + 90) / cellDegrees;
+        double x1 = (lon1 + 180) / cellDegrees;
+        double y1 = (lat1 + 90) / cellDegrees;
+        int cx = (int) Math.floor(x0);
+        int cy = (int) Math.floor(y0);
+        int ex = (int) Math.floor(x1);
+        int ey = (int) Math.floor(y1);
+        out.add(key(cy, cx));
+
+        int stepX = Integer.signum(ex - cx);
+        int stepY = Integer.signum(ey - cy);
+        double dx = Math.abs(x1 - x0);
+        double dy = Math.abs(y1 - y0);
+        double tDeltaX = stepX != 0 ? 1 / dx : Double.MAX_VALUE;
+        double tDeltaY = stepY != 0 ? 1 / dy : Double.MAX_VALUE;
+        double tMaxX = stepX > 0 ? (cx + 1 - x0) / dx : stepX < 0 ? (x0 - cx) / dx : Double.MAX_VALUE;
+        double tMaxY = stepY > 0 ? (cy + 1 - y0) / dy : stepY < 0 ? (y0 - cy) / dy : Double.MAX_VALUE;
+
+        int steps = Math.abs(ex - cx) + Math.abs(ey - cy);
+        while ((cx != ex || cy != ey) && steps-- > 0) {
+            if (tMaxX < tMaxY) {
+                cx += stepX;
+                tMaxX += tDeltaX;
+            } else if (tMaxY < tMaxX) {
+                cy += stepY;
+                tMaxY += tDeltaY;
+            } else {
+                out.add(key(cy, cx + stepX));
+                out.add(key(cy + stepY, cx));
+                cx += stepX;
+                cy += stepY;
+                tMaxX += tDeltaX;
+                tMaxY += tDeltaY;
+                steps--;
+            }
+            out.add(key(cy, cx));
+        }
+        out.add(key(ey, ex));
+    }
+
+    long cellKey(double lat, double lon) {
+        return key((int) Math.floor((lat + 90) / cellDegrees), (int) Math.floor((lon + 180) / cellDegrees));
+    }
+
+    private static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "GeofenceEngine{fences=" + fences.size() + ", tracks=" + tracks.size() +
+                ", boundaryCells=" + boundaryCells.size() + ", updates=" + updates +
+                ", retests=" + retests + "}";
+    }
+}
@@ -0,0 +1,197 @@
+package com.engindearing.omnicot;
+
+import android.widget.Toast;
+
+import com.atakmap.android.maps.MapView;
+import com.atakmap.android.maps.Shape;
+import com.atakmap.coremap.log.Log;
+import com.atakmap.coremap.maps.coords.GeoBounds;
+import com.atakmap.coremap.maps.coords.GeoPoint;
+import com.engindearing.omnicot.remoteid.RemoteIdData;
+import com.engindearing.omnicot.remoteid.RemoteIdToCotConverter;
+
+/**
+ * Connects the {@link GeofenceEngine} to the map and the Remote ID pipeline:
+ * arms a fence for every AOI with an active alert rule, keeps fences in step
+ * with their AOI shapes, feeds the engine drone and operator positions, and
+ * shows breaches to the user.
+ */
+public class GeofenceMonitor implements AOIRegistry.Listener, AOIAlertRuleStore.Listener,
+        GeofenceEngine.Listener {
+
+    private static final String TAG = "GeofenceMonitor";
+
+    // ASTM F3411 "height unknown"
+    private static final float INVALID_HEIGHT = -1000f;
+
+    private final MapView mapView;
+    private final AOIRegistry aoiRegistry;
+    private final AOIAlertRuleStore alertRules;
+    private final GeofenceEngine engine;
+
+    public GeofenceMonitor(MapView mapView, AOIRegistry aoiRegistry, AOIAlertRuleStore alertRules,
+                           GeofenceEngine engine) {
+        this.mapView = mapView;
+        this.aoiRegistry = aoiRegistry;
+        this.alertRules = alertRules;
+        this.engine = engine;
+    }
+
+    public void start() {
+        aoiRegistry.addListener(this);
+        alertRules.addListener(this);
+        engine.addListener(this);
+        for (AOIAlertRule rule : alertRules.getRules()) {
+            Shape shape = aoiRegistry.getShape(rule.getUid());
+            if (shape != null) {
+                arm(shape, rule);
+            }
+        }
+    }
+
+    public void stop() {
+        aoiRegistry.removeListener(this);
+        alertRules.removeListener(this);
+        engine.removeListener(this);
+        engine.clear();
+    }
+
+    /**
+     * Test a fused detection's drone and operator positions against the fences.
+     * Called on the fusion flush thread.
+     */
+    public void track(RemoteIdData data) {
+        if (engine.getFenceCount() == 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        String uniqueId = data.getUniqueId();
+        if (data.isValidLocation()) {
+            double hag = data.getUasHag() <= INVALID_HEIGHT ? Double.NaN : data.getUasHag();
+            engine.updateTrack("DRONE-" + uniqueId, data.getUasLat(), data.getUasLon(), hag,
+                    data.getUasType(), now);
+        }
+        if (RemoteIdToCotConverter.isValidOperatorLocation(data)) {
+            // Operators are on the ground; altitude bands don't apply
+            engine.updateTrack("RID-OP-" + uniqueId, data.getOpLat(), data.getOpLon(), Double.NaN,
+                    data.getUasType(), now);
+        }
+    }
+
+    @Override
+    public void onAOIAdded(Shape shape) {
+        AOIAlertRule rule = alertRules.getRule(shape.getUID());
+        if (rule != null) {
+            arm(shape, rule);
+        }
+    }
+
+    @Override
+    public void onAOIRemoved(Shape shape, boolean deleted) {
+        engine.removeFence(shape.getUID());
+        if (deleted) {
+            // The AOI is gone, so is its alert. Otherwise keep the rule so the
+            // fence is re-armed if the shape comes back.
+            alertRules.removeRule(shape.getUID());
+        }
+    }
+
+    @Override
+    public void onAOIChanged(Shape shape) {
+        if (engine.getFence(shape.getUID()) == null) {
+            return;
+        }
+        double[][] outline = outlineOf(shape);
+        if (outline == null) {
+            engine.removeFence(shape.getUID());
+            Log.w(TAG, "Disarmed " + shape.getTitle() + ": outline no longer usable");
+            return;
+        }
+        engine.updateGeometry(shape.getUID(), outline[0], outline[1]);
+    }
+
+    @Override
+    public void onAlertRuleChanged(String uid, AOIAlertRule rule) {
+        Shape shape = aoiRegistry.getShape(uid);
+        if (shape == null) {
+            engine.removeFence(uid);
+        } else {
+            arm(shape, rule);
+        }
+    }
+
+    @Override
+    public void onBreach(GeofenceEngine.Breach breach) {
+        final String trackType = breach.getTrackId().startsWith("RID-OP-") ? "Operator" : "Drone";
+        final String message = trackType + " " + breach.getTrackId() + " " +
+                (breach.getType() == GeofenceEngine.BreachType.ENTRY ? "entered" : "left") +
+                " AOI " + breach.getFence().getName();
+        Log.i(TAG, "Breach: " + breach);
+        mapView.post(new Runnable() {
+            @Override
+            public void run() {
+                DashboardActivity.addActivity("ALERT: " + message);
+                Toast.makeText(mapView.getContext(), "ALERT: " + message, Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
+    /**
+     * Arm the AOI's fence from its rule, or disarm it if the rule is removed,
+     * disabled or expired
+     */
+    private void arm(Shape shape, AOIAlertRule rule) {
+        if (rule == null || !rule.isActive(System.currentTimeMillis())) {
+            engine.removeFence(shape.getUID());
+            return;
+        }
+        double[][] outline = outlineOf(shape);
+        if (outline == null) {
+            Log.w(TAG, "No outline for " + shape.getTitle() + "; drone alerts unavailable");
+            return;
+        }
+        GeofenceEngine.Fence fence = new GeofenceEngine.Fence(shape.getUID(), shape.getTitle(),
+                outline[0], outline[1]);
+        fence.setTrigger(triggerOf(rule.getTriggerType()));
+        fence.setFloorM(rule.getFloorM());
+        fence.setCeilingM(rule.getCeilingM());
+        fence.setUasTypes(rule.getUasTypes());
+        fence.setExpiresAtMs(rule.getExpiresAtMs());
+        engine.putFence(fence);
+        Log.d(TAG, "Armed " + shape.getTitle() + ": " + rule);
+    }
+
+    private static GeofenceEngine.Trigger triggerOf(String triggerType) {
+        if (AOIAlertRule.TRIGGER_ENTRY.equals(triggerType)) {
+            return GeofenceEngine.Trigger.ENTRY;
+        } else if (AOIAlertRule.TRIGGER_EXIT.equals(triggerType)) {
+            return GeofenceEngine.Trigger.EXIT;
+        }
+        return GeofenceEngine.Trigger.BOTH;
+    }
+
+    /**
+     * Latitudes and longitudes of the shape's outline, falling back to its
+     * bounds for shapes with fewer than three points
+     */
+    private static double[][] outlineOf(Shape shape) {
+        GeoPoint[] points = shape.getPoints();
+        if (points != null && points.length >= 3) {
+            double[] lats = new double[points.length];
+            double[] lons = new double[points.length];
+            for (int i = 0; i < points.length; i++) {
+                lats[i] = points[i].getLatitude();
+                lons[i] = points[i].getLongitude();
+            }
+            return new double[][]{lats, lons};
+        }
+        GeoBounds bounds = shape.getBounds(null);
+        if (bounds == null || bounds.crossesIDL()) {
+            return null;
+        }
+        return new double[][]{
+                {bounds.getSouth(), bounds.getSouth(), bounds.getNorth(), bounds.getNorth()},
+                {bounds.getWest(), bounds.getEast(), bounds.getEast(), bounds.getWest()}
+        };
+    }
+}
@@ -0,0 +1,137 @@
+package com.engindearing.omnicot;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded in-memory table of implicit UNKNOWN affiliations.
+ * Every CoT UID ATAK sees gets a default UNKNOWN entry so lookups have
+ * something to return, but most of those tracks (drones, sensor feeds, our
+ * own DRONE- and RID-OP- events) are transient and nobody ever classifies
+ * them. Keeping them here instead of in the persisted store stops the store
+ * from growing with every UID seen during an exercise.
+ *
+ * <p>Each entry expires a grace period after its CoT goes stale; receiving the
+ * track again pushes the expiry out. {@link #sweep} removes expired entries,
+ * and inserting into a full table evicts the entries closest to expiry.
+ */
+public class ImplicitAffiliationTable {
+
+    public static final int DEFAULT_CAPACITY = 5000;
+    public static final long DEFAULT_GRACE_MS = 5 * 60 * 1000;
+
+    /** Fraction of the table evicted at once when it fills up */
+    private static final int EVICT_DIVISOR = 10;
+
+    private final ConcurrentHashMap<String, AffiliationData> entries = new ConcurrentHashMap<>();
+    private final int capacity;
+    private final long graceMs;
+
+    public ImplicitAffiliationTable() {
+        this(DEFAULT_CAPACITY, DEFAULT_GRACE_MS);
+    }
+
+    public ImplicitAffiliationTable(int capacity, long graceMs) {
+        this.capacity = capacity;
+        this.graceMs = graceMs;
+    }
+
+    public AffiliationData get(String uid) {
+        return entries.get(uid);
+    }
+
+    /**
+     * Record that a track without an explicit affiliation was received.
+     * Creates an UNKNOWN entry for a new UID, otherwise just extends the
+     * existing entry's expiry.
+     *
+     * @param staleAtMs stale time of the received CoT
+     * @return the entry for the UID
+     */
+    public AffiliationData touch(String uid, String server, long staleAtMs, long nowMs) {
+        AffiliationData data = entries.get(uid);
+        if (data == null) {
+            if (entries.size() >= capacity) {
+                evict(nowMs);
+            }
+            AffiliationData created = new AffiliationData(uid, AffiliationData.Affiliation.UNKNOWN, "System", server);
+            created.setImplicit(true);
+            data = entries.putIfAbsent(uid, created);
+            if (data == null) {
+                data = created;
+            }
+        }
+        extend(data, staleAtMs, nowMs);
+        return data;
+    }
+
+    /**
+     * Extend an entry's expiry without a lookup
+     */
+    public void extend(AffiliationData data, long staleAtMs, long nowMs) {
+        data.setExpiresAtMs(Math.max(staleAtMs, nowMs) + graceMs);
+    }
+
+    public AffiliationData remove(String uid) {
+        return entries.remove(uid);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Iterable<AffiliationData> values() {
+        return entries.values();
+    }
+
+    /**
+     * Remove entries whose CoT went stale more than the grace period ago
+     *
+     * @return number of entries removed
+     */
+    public int sweep(long nowMs) {
+        int removed = 0;
+        Iterator<AffiliationData> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().getExpiresAtMs() <= nowMs) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Make room in a full table: drop expired entries, and if that isn't
+     * enough, the tenth of the table closest to expiry.
+     */
+    private void evict(long nowMs) {
+        if (sweep(nowMs) > 0 && entries.size() < capacity) {
+            return;
+        }
+        long[] expiries = new long[entries.size()];
+        int n = 0;
+        for (AffiliationData data : entries.values()) {
+            if (n == expiries.length) {
+                break;
+            }
+            expiries[n++] = data.getExpiresAtMs();
+        }
+        if (n == 0) {
+            return;
+        }
+        Arrays.sort(expiries, 0, n);
+        long cutoff = expiries[Math.min(n - 1, Math.max(0, n / EVICT_DIVISOR - 1))];
+        Iterator<AffiliationData> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().getExpiresAtMs() <= cutoff) {
+                it.remove();
+            }
+        }
+    }
+}
@@ -19,12 +19,10 @@ import com.atakmap.android.dropdown.DropDownReceiver;
 import com.atakmap.android.ipc.AtakBroadcast;
 import com.atakmap.android.maps.MapEvent;
 import com.atakmap.android.maps.MapEventDispatcher;
-import com.atakmap.android.maps.MapGroup;
 import com.atakmap.android.maps.MapItem;
 import com.atakmap.android.maps.MapView;
 import com.atakmap.android.maps.Marker;
 import com.atakmap.android.maps.PointMapItem;
-import com.atakmap.android.maps.Shape;
 import com.atakmap.comms.CotDispatcher;
 import com.atakmap.coremap.cot.event.CotEvent;
 import com.atakmap.coremap.cot.event.CotDetail;
@@ -32,11 +30,16 @@ import com.atakmap.coremap.cot.event.CotPoint;
 import com.atakmap.coremap.log.Log;
 import com.atakmap.coremap.maps.coords.GeoPoint;
 import com.atakmap.coremap.maps.time.CoordinatedTime;
+import com.engindearing.omnicot.remoteid.DetectionCoalescer;
+import com.engindearing.omnicot.remoteid.DetectionFusion;
+import com.engindearing.omnicot.remoteid.DispatchLane;
+import com.engindearing.omnicot.remoteid.DroneTrackStore;
+import com.engindearing.omnicot.remoteid.PipelineLatency;
 import com.engindearing.omnicot.remoteid.RemoteIdData;
 import com.engindearing.omnicot.remoteid.RemoteIdToCotConverter;
+import com.engindearing.omnicot.remoteid.TrackPredictor;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import java.util.Stack;
 
@@ -74,8 +77,41 @@ public class OmniCOTDropDownReceiver extends DropDownReceiver implements DropDow
 
     // State
     private MapItem selectedCotItem;
-    private CotDispatcher cotDispatcher;
+    // Read and lazily re-initialized from the Bluetooth ingest worker
+    private volatile CotDispatcher cotDispatcher;
+    // Recent fixes of every drone heard, recorded before any rate limiting
+    private final DroneTrackStore droneTrackStore = new DroneTrackStore();
+
+    // Merges copies of one broadcast heard by several sensors or radios
+    private final DetectionFusion detectionFusion = new DetectionFusion(this::handleFusedDetection);
+
+    // Dead-reckons drone markers on the local map between Remote ID frames
+    private final TrackPredictor trackPredictor = new TrackPredictor(this::renderPredictedDrone);
+
+    // Rate-limits each drone's updates before they are converted and dispatched
+    private final DetectionCoalescer detectionCoalescer =
+            new DetectionCoalescer(this::dispatchRemoteIdDetection);
+
+    // Outbound lanes: local render gets every event immediately; federation is
+    // batched and rate-limited so a slow uplink never delays the local map
+    private static final int LOCAL_LANE_CAPACITY = 256;
+    private static final int FEDERATION_LANE_CAPACITY = 64;
+    private static final long FEDERATION_INTERVAL_MS = 2000;
+    private static final int FEDERATION_MAX_BATCH = 32;
+    private final DispatchLane<CotEvent> localLane = new DispatchLane<>(
+            "omnicot-local", LOCAL_LANE_CAPACITY, 0, LOCAL_LANE_CAPACITY, null,
+            event -> cotDispatcher.dispatch(event));
+    private final DispatchLane<CotEvent> federationLane = new DispatchLane<>(
+            "omnicot-federation", FEDERATION_LANE_CAPACITY, FEDERATION_INTERVAL_MS,
+            FEDERATION_MAX_BATCH, CotEvent::getUID,
+            event -> com.atakmap.android.cot.CotMapComponent.getExternalDispatcher().dispatch(event));
     private AffiliationManager affiliationManager;
+    // AOI shapes on the map, indexed by bounds and kept current from map events
+    private final AOIRegistry aoiRegistry;
+    // Alert configuration per AOI, persisted across restarts
+    private final AOIAlertRuleStore alertRuleStore;
+    // Tests drone and operator positions against armed AOIs
+    private final GeofenceMonitor geofenceMonitor;
     private boolean isSelectingCot = false;
     private boolean showingDashboard = true;
     private List<MapItem> recentCOTItems = new ArrayList<>();
@@ -114,6 +150,22 @@ public class OmniCOTDropDownReceiver extends DropDownReceiver implements DropDow
             Log.e(TAG, "Failed to initialize AffiliationManager");
         }
 
+        aoiRegistry = new AOIRegistry(mapView);
+        aoiRegistry.start();
+        alertRuleStore = AOIAlertRuleStore.getInstance(pluginContext);
+        geofenceMonitor = new GeofenceMonitor(mapView, aoiRegistry, alertRuleStore,
+                GeofenceEngine.getInstance());
+        geofenceMonitor.start();
+
+        PipelineLatency latency = PipelineLatency.getInstance();
+        localLane.setLatencyHistogram(latency.getHistogram(PipelineLatency.Stage.LOCAL_DISPATCHED));
+        federationLane.setLatencyHistogram(latency.getHistogram(PipelineLatency.Stage.EXTERNAL_DISPATCHED));
+        localLane.start();
+        federationLane.start();
+        detectionCoalescer.start();
+        trackPredictor.start();
+        detectionFusion.start();
+
         // Initialize dashboard
         dashboardActivity = new DashboardActivity(pluginContext, mapView, templateView, this);
 
@@ -154,9 +206,10 @@ public class OmniCOTDropDownReceiver extends DropDownReceiver implements DropDow
         setupSpinners();
 
         // Setup RecyclerView
-        aoiAdapter = new AOIAdapter(pluginContext, mapView, new ArrayList<>());
+        aoiAdapter = new AOIAdapter(pluginContext, mapView, aoiRegistry, alertRuleStore);
         aoiRecyclerView.setLayoutManager(new LinearLayoutManager(pluginContext));
         aoiRecyclerView.setAdapter(aoiAdapter);
+        aoiAdapter.start();
 
         // Setup button listeners
         setupButtonListeners();
@@ -266,8 +319,11 @@ public class OmniCOTDropDownReceiver extends DropDownReceiver implements DropDow
         closeDropDown();
         showDropDown(managementView, HALF_WIDTH, FULL_HEIGHT, FULL_WIDTH, HALF_HEIGHT, false, this);
         setupBackButton();
-        // Automatically refresh the AOI list when opening
-        refreshAOIList();
+        // The list follows map and rule changes on its own; this only catches
+        // alert statuses that have gone stale while the screen was hidden
+        if (aoiAdapter != null) {
+            aoiAdapter.scheduleUpdate();
+        }
         Log.d(TAG, "Switched to AOI Management view");
     }
 
@@ -498,36 +554,35 @@ public class OmniCOTDropDownReceiver extends DropDownReceiver implements DropDow
                                   "\nMarked by: " + localCallsign);
     }
 
+    /**
+     * Re-read the drawing group in case map events were missed. Only shapes
+     * that actually changed are rebound in the list.
+     */
     private void refreshAOIList() {
-        List<AOIItem> aoiItems = getAOIsFromMap();
-        aoiAdapter.updateData(aoiItems);
-        Toast.makeText(pluginContext, "Found " + aoiItems.size() + " AOIs", Toast.LENGTH_SHORT).show();
-        Log.d(TAG, "Refreshed AOI list: " + aoiItems.size() + " items");
-    }
-
-    private List<AOIItem> getAOIsFromMap() {
-        List<AOIItem> aoiItems = new ArrayList<>();
-
-        // Get the Drawing Objects group where shapes are stored
-        MapGroup drawingGroup = mapView.getRootGroup().findMapGroup("Drawing Objects");
-        if (drawingGroup != null) {
-            Collection<MapItem> items = drawingGroup.getItems();
-            for (MapItem item : items) {
-                if (item instanceof Shape) {
-                    AOIItem aoiItem = new AOIItem((Shape) item);
-                    aoiItems.add(aoiItem);
-                    Log.d(TAG, "Found AOI: " + item.getTitle() + " (" + item.getClass().getSimpleName() + ")");
-                }
-            }
-        }
+        aoiRegistry.rescan();
+        aoiAdapter.scheduleUpdate();
+        Toast.makeText(pluginContext, "Found " + aoiRegistry.getCount() + " AOIs", Toast.LENGTH_SHORT).show();
+        Log.d(TAG, "Refreshed AOI list: " + aoiRegistry.getCount() + " items");
+    }
+
+    /**
+     * AOI shapes on the map and their spatial index
+     */
+    public AOIRegistry getAOIRegistry() {
+        return aoiRegistry;
+    }
 
-        return aoiItems;
+    /**
+     * Saved alert rules for AOIs
+     */
+    public AOIAlertRuleStore getAlertRuleStore() {
+        return alertRuleStore;
     }
 
     private void createNewAOI() {
         Toast.makeText(pluginContext, "Use ATAK's drawing tools to create shapes", Toast.LENGTH_LONG).show();
         // Note: ATAK has built-in drawing tools accessible from the main toolbar
-        // We just need to detect and list them, which is done by refreshAOIList()
+        // New shapes show up in the AOI list through AOIRegistry map events
     }
 
     @Override
@@ -573,9 +628,65 @@ public class OmniCOTDropDownReceiver extends DropDownReceiver implements DropDow
     }
 
     /**
-     * Handle Remote ID drone detection from gyb_detect device
+     * Handle a detection from the gyb_detect. Called on the Bluetooth ingest
+     * worker so conversion and dispatch never block the UI thread. Copies of
+     * the same broadcast are merged by the {@link DetectionFusion} first, then
+     * the {@link DetectionCoalescer} rate-limits repeated broadcasts from the
+     * same drone before they reach the dispatchers.
      */
     public void handleRemoteIdDetection(RemoteIdData data) {
+        detectionFusion.submit(data);
+    }
+
+    /**
+     * Handle one fused detection. Called on the fusion flush thread.
+     */
+    private void handleFusedDetection(RemoteIdData data) {
+        droneTrackStore.record(data);
+        trackPredictor.update(data);
+        geofenceMonitor.track(data);
+        detectionCoalescer.submit(data);
+    }
+
+    /**
+     * Merges duplicate receptions; see {@link DetectionFusion#setWindowMs}
+     */
+    public DetectionFusion getDetectionFusion() {
+        return detectionFusion;
+    }
+
+    /**
+     * Smooths drone markers between frames; see {@link TrackPredictor#setRenderRateHz}
+     */
+    public TrackPredictor getTrackPredictor() {
+        return trackPredictor;
+    }
+
+    /**
+     * Position history of recently heard drones
+     */
+    public DroneTrackStore getDroneTrackStore() {
+        return droneTrackStore;
+    }
+
+    /**
+     * Outbound lane that renders detections on the local map
+     */
+    public DispatchLane<CotEvent> getLocalLane() {
+        return localLane;
+    }
+
+    /**
+     * Outbound lane that forwards detections to TAK servers and team members
+     */
+    public DispatchLane<CotEvent> getFederationLane() {
+        return federationLane;
+    }
+
+    /**
+     * Convert a coalesced detection to CoT and dispatch it
+     */
+    private void dispatchRemoteIdDetection(RemoteIdData data) {
         try {
             // Check if cotDispatcher is available
             if (cotDispatcher == null) {
@@ -592,21 +703,25 @@ public class OmniCOTDropDownReceiver extends DropDownReceiver implements DropDow
 
             // Convert Remote ID data to CoT event(s): a drone marker (when the aircraft GPS is
             // valid) and/or an operator/pilot marker (when the operator location is valid).
-            List<CotEvent> cotEvents = RemoteIdToCotConverter.convertToCotEvents(data);
+            // The drone is drawn at the filter's estimate for now, which also restarts
+            // the predictor's clock for it.
+            double[] estimate = new double[3];
+            List<CotEvent> cotEvents = trackPredictor.renderFrame(data, System.currentTimeMillis(), estimate)
+                    ? RemoteIdToCotConverter.convertToCotEvents(data, estimate[0], estimate[1], estimate[2])
+                    : RemoteIdToCotConverter.convertToCotEvents(data);
+            data.setConvertedNanos(System.nanoTime());
+            PipelineLatency.getInstance().record(PipelineLatency.Stage.CONVERTED, data.getFrameNanos());
 
             if (cotEvents != null && !cotEvents.isEmpty()) {
                 boolean droneDispatched = false;
                 for (CotEvent cotEvent : cotEvents) {
                     // Render on the local map (internal dispatcher).
-                    cotDispatcher.dispatch(cotEvent);
+                    localLane.offer(cotEvent, data.getFrameNanos());
                     // Also forward to connected TAK servers / team members.
-                    try {
-                        com.atakmap.android.cot.CotMapComponent.getExternalDispatcher()
-                                .dispatch(cotEvent);
-                    } catch (Exception fe) {
-                        Log.w(TAG, "External forward failed (non-fatal)", fe);
+                    if (!federationLane.offer(cotEvent, data.getFrameNanos())) {
+                        Log.w(TAG, "Federation lane full, dropped oldest: " + federationLane);
                     }
-                    Log.d(TAG, "Dispatched CoT event: " + cotEvent.getUID() +
+                    Log.d(TAG, "Queued CoT event: " + cotEvent.getUID() +
                             " type=" + cotEvent.getType());
                     if (!droneDispatched && cotEvent.getUID() != null
                             && !cotEvent.getUID().startsWith("RID-OP-")) {
@@ -623,7 +738,7 @@ public class OmniCOTDropDownReceiver extends DropDownReceiver implements DropDow
                     DashboardActivity.addActivity("Drone " + data.getUniqueId() +
                             " - GPS not acquired, pilot location displayed");
                 }
-            } else {
+            } else if (!data.isValidLocation() && !RemoteIdToCotConverter.isValidOperatorLocation(data)) {
                 Log.w(TAG, "No valid CoT events from Remote ID data (no drone or operator fix)");
                 Log.w(TAG, "RemoteIdData: " + data.toString());
                 DashboardActivity.addActivity("WARNING: Drone detected but no usable location");
@@ -636,6 +751,20 @@ public class OmniCOTDropDownReceiver extends DropDownReceiver implements DropDow
         }
     }
 
+    /**
+     * Move a drone's marker to its predicted position. Local map only;
+     * federation peers get real detections.
+     */
+    private void renderPredictedDrone(RemoteIdData latest, double lat, double lon, double hae) {
+        if (cotDispatcher == null) {
+            return;
+        }
+        CotEvent cotEvent = RemoteIdToCotConverter.convertPredictedDroneEvent(latest, lat, lon, hae);
+        if (cotEvent != null) {
+            localLane.offer(cotEvent);
+        }
+    }
+
     @Override
     public boolean onBackButtonPressed() {
         if (!DASHBOARD.equals(currentScreen)) {
@@ -647,6 +776,19 @@ public class OmniCOTDropDownReceiver extends DropDownReceiver implements DropDow
 
     @Override
     protected void disposeImpl() {
+        if (aoiAdapter != null) {
+            aoiAdapter.stop();
+        }
+        geofenceMonitor.stop();
+        aoiRegistry.stop();
+        detectionFusion.stop();
+        trackPredictor.stop();
+        detectionCoalescer.stop();
+        droneTrackStore.clear();
+        localLane.stop();
+        federationLane.stop();
+        Log.i(TAG, "Pipeline latency since frame complete:\n" + PipelineLatency.getInstance().dump());
+
         // Clean up dashboard
         if (dashboardActivity != null) {
             dashboardActivity.dispose();
@@ -104,6 +104,12 @@ public class OmniCOTMapComponent extends DropDownMapComponent {
         // Unregister radial menu components
         unregisterRadialMenuComponents();
 
+        // Write out any affiliation changes still waiting to be persisted
+        AffiliationManager affiliationManager = AffiliationManager.getInstance(context);
+        if (affiliationManager != null) {
+            affiliationManager.flush();
+        }
+
         Log.d(TAG, "OmniCOT MapComponent destroyed");
     }
 
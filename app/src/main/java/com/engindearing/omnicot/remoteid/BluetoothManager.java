@@ -3,7 +3,6 @@ package com.engindearing.omnicot.remoteid;
 import android.Manifest;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothSocket;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
@@ -16,37 +15,53 @@ import android.util.Log;
 
 import androidx.core.app.ActivityCompat;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.InterruptedIOException;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
- * Manages Bluetooth connection to the gyb_detect device.
- * Handles device discovery, connection, and data reception.
+ * Manages Bluetooth connections to gyb_detect devices.
+ * Handles device discovery, connection, and data reception. Several units can
+ * be connected at once, each over its own {@link SensorLink}. Frames are
+ * parsed on the link's reader thread and detections go through a bounded
+ * {@link IngestRing} to one ingest worker. Frames can be captured with
+ * {@link #startCapture} and played back into the same path with
+ * {@link #replay}.
  */
-public class BluetoothManager {
+public class BluetoothManager implements FrameSink {
 
     private static final String TAG = "BluetoothManager";
     private static final String DEVICE_NAME_PREFIX = "gyb_detect";
     private static final UUID SPP_UUID = UUID.fromString("00001101-0000-1000-8000-00805f9b34fb");
 
+    // Detections waiting for the ingest worker. When full the overflow
+    // policy decides what goes, so a stalled pipeline can't grow memory.
+    private static final int INGEST_QUEUE_CAPACITY = 256;
+
+    // A Bluetooth classic piconet has at most seven active peripherals
+    public static final int MAX_SENSOR_LINKS = 7;
+
     private final Context context;
     private final Handler mainHandler;
+    private final IngestRing<RemoteIdData> ingestQueue;
+    private final Thread ingestWorker;
     private BluetoothAdapter bluetoothAdapter;
-    private BluetoothSocket socket;
-    private BluetoothDevice connectedDevice;
-    private Thread readerThread;
-    private volatile boolean isConnected = false;
-    private volatile boolean shouldRun = false;
 
-    private List<DataListener> dataListeners = new ArrayList<>();
+    // One link per connected gyb_detect, keyed by sensor ID (Bluetooth address)
+    private final Map<String, SensorLink> links = new ConcurrentHashMap<>();
+    // Stats for frames fed in by a replay rather than a live link
+    private final Map<String, SensorStats> replaySensors = new ConcurrentHashMap<>();
+    private volatile FrameRecorder recorder;
+
+    // Detection listeners are invoked from the ingest worker, so this must be safe to iterate concurrently
+    private final List<DataListener> dataListeners = new CopyOnWriteArrayList<>();
     private List<ConnectionListener> connectionListeners = new ArrayList<>();
     private List<DiscoveryListener> discoveryListeners = new ArrayList<>();
 
@@ -55,7 +70,10 @@ public class BluetoothManager {
     private List<BluetoothDevice> discoveredDevices = new ArrayList<>();
 
     /**
-     * Listener for received data
+     * Listener for received data.
+     * {@link #onRemoteIdData} is called on the ingest worker thread so that
+     * conversion and dispatch stay off the UI thread; device info and battery
+     * callbacks are called on the main thread.
      */
     public interface DataListener {
         void onDeviceInfo(RemoteIdParser.DeviceInfo info);
@@ -69,7 +87,10 @@ public class BluetoothManager {
     public interface ConnectionListener {
         void onConnecting(String deviceName);
         void onConnected(String deviceName);
+        /** The last connected device went away */
         void onDisconnected();
+        /** One device went away while others are still connected */
+        void onSensorDisconnected(String deviceName, int remaining);
         void onError(String error);
     }
 
@@ -89,6 +110,29 @@ public class BluetoothManager {
         this.context = context;
         this.mainHandler = new Handler(Looper.getMainLooper());
         this.bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+
+        // A newer detection of the same drone supersedes a queued one
+        this.ingestQueue = new IngestRing<>(INGEST_QUEUE_CAPACITY,
+                IngestRing.OverflowPolicy.DROP_OLDEST_PER_KEY, RemoteIdData::getUniqueId);
+        // Single worker keeps detections in arrival order
+        this.ingestWorker = new Thread(this::ingestLoop, "omnicot-ingest");
+        this.ingestWorker.start();
+    }
+
+    /**
+     * What to do when detections arrive faster than they are processed.
+     * {@link IngestRing.OverflowPolicy#BLOCK} stalls the link readers, and so
+     * the Bluetooth links, until the worker catches up.
+     */
+    public void setIngestOverflowPolicy(IngestRing.OverflowPolicy policy) {
+        ingestQueue.setPolicy(policy);
+    }
+
+    /**
+     * Queue between the link readers and the ingest worker, for its counters
+     */
+    public IngestRing<RemoteIdData> getIngestQueue() {
+        return ingestQueue;
     }
 
     /**
@@ -374,14 +418,11 @@ public class BluetoothManager {
     }
 
     /**
-     * Connect to a specific device
+     * Connect to a device. Each gyb_detect gets its own link; connecting to
+     * further devices adds links alongside the existing ones, up to
+     * {@link #MAX_SENSOR_LINKS}.
      */
     public void connect(BluetoothDevice device) {
-        if (isConnected) {
-            Log.w(TAG, "Already connected, disconnect first");
-            return;
-        }
-
         // Check permissions
         if (ActivityCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_CONNECT)
                 != PackageManager.PERMISSION_GRANTED) {
@@ -390,30 +431,23 @@ public class BluetoothManager {
         }
 
         String deviceName = device.getName();
-        notifyConnecting(deviceName);
-
-        new Thread(() -> {
-            try {
-                Log.d(TAG, "Connecting to " + deviceName);
-                socket = device.createRfcommSocketToServiceRecord(SPP_UUID);
-                socket.connect();
-
-                connectedDevice = device;
-                isConnected = true;
-                shouldRun = true;
-
-                Log.i(TAG, "Connected to " + deviceName);
-                notifyConnected(deviceName);
-
-                // Start reading data
-                startReading();
-
-            } catch (IOException e) {
-                Log.e(TAG, "Failed to connect to " + deviceName, e);
-                notifyError("Connection failed: " + e.getMessage());
-                cleanup();
+        SensorLink link;
+        synchronized (links) {
+            SensorLink existing = links.get(device.getAddress());
+            if (existing != null && !existing.isClosed()) {
+                Log.w(TAG, "Already connected to " + existing.getName());
+                return;
+            }
+            if (existing == null && links.size() >= MAX_SENSOR_LINKS) {
+                notifyError("Already connected to " + MAX_SENSOR_LINKS + " sensors");
+                return;
             }
-        }).start();
+            link = new SensorLink(device, deviceName, SPP_UUID, linkCallback);
+            links.put(link.getSensorId(), link);
+        }
+
+        notifyConnecting(deviceName);
+        link.open();
     }
 
     /**
@@ -429,245 +463,293 @@ public class BluetoothManager {
     }
 
     /**
-     * Disconnect from the current device
+     * Connect to every paired gyb_detect device
+     */
+    public void connectToAllDevices() {
+        List<BluetoothDevice> devices = findGybDevices();
+        if (devices.isEmpty()) {
+            notifyError("No paired gyb_detect devices found");
+            return;
+        }
+        for (BluetoothDevice device : devices) {
+            connect(device);
+        }
+    }
+
+    /**
+     * Disconnect from all devices
      */
     public void disconnect() {
-        shouldRun = false;
-        cleanup();
+        List<SensorLink> closing;
+        synchronized (links) {
+            closing = new ArrayList<>(links.values());
+            links.clear();
+        }
+        for (SensorLink link : closing) {
+            link.close();
+        }
         notifyDisconnected();
     }
 
     /**
-     * Check if currently connected
+     * Disconnect from one device
+     *
+     * @param sensorId the device's Bluetooth address
+     */
+    public void disconnect(String sensorId) {
+        SensorLink link;
+        int remaining;
+        synchronized (links) {
+            link = links.remove(sensorId);
+            remaining = links.size();
+        }
+        if (link == null) {
+            return;
+        }
+        link.close();
+        if (remaining == 0) {
+            notifyDisconnected();
+        } else {
+            notifySensorDisconnected(link.getName(), remaining);
+        }
+    }
+
+    /**
+     * Check if connected to at least one device
      */
     public boolean isConnected() {
-        return isConnected && socket != null && socket.isConnected();
+        for (SensorLink link : links.values()) {
+            if (link.isConnected()) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
-     * Get the connected device name
+     * Get the connected device names, comma separated, or null if none
      */
     public String getConnectedDeviceName() {
-        if (connectedDevice != null && ActivityCompat.checkSelfPermission(context,
-                Manifest.permission.BLUETOOTH_CONNECT) == PackageManager.PERMISSION_GRANTED) {
-            return connectedDevice.getName();
+        StringBuilder names = new StringBuilder();
+        for (SensorLink link : links.values()) {
+            if (link.isConnected()) {
+                if (names.length() > 0) {
+                    names.append(", ");
+                }
+                names.append(link.getName());
+            }
+        }
+        return names.length() > 0 ? names.toString() : null;
+    }
+
+    public int getConnectedSensorCount() {
+        int count = 0;
+        for (SensorLink link : links.values()) {
+            if (link.isConnected()) {
+                count++;
+            }
         }
-        return null;
+        return count;
     }
 
     /**
-     * Start reading data from the device
+     * Health and throughput of each current link and replay source
      */
-    private void startReading() {
-        if (socket == null) {
-            Log.w(TAG, "Cannot start reading - socket is null");
-            return;
+    public List<SensorStats> getSensorStats() {
+        List<SensorStats> stats = new ArrayList<>();
+        for (SensorLink link : links.values()) {
+            stats.add(link.getStats());
         }
+        stats.addAll(replaySensors.values());
+        return stats;
+    }
 
-        if (!socket.isConnected()) {
-            Log.w(TAG, "Cannot start reading - socket is not connected");
-            return;
+    /**
+     * Handles events from every link. Frames from all links funnel into the
+     * one ingest worker, so detections stay serialized whatever their source.
+     */
+    private final SensorLink.Callback linkCallback = new SensorLink.Callback() {
+        @Override
+        public void onLinkConnected(SensorLink link) {
+            notifyConnected(link.getName());
         }
 
-        readerThread = new Thread(() -> {
-            try {
-                // Double-check socket is still valid when thread starts
-                if (socket == null || !socket.isConnected()) {
-                    Log.w(TAG, "Socket closed before reader thread started");
-                    return;
-                }
+        @Override
+        public void onLinkFrame(SensorLink link, ByteBuffer frame) {
+            FrameRecorder capture = recorder;
+            if (capture != null) {
+                capture.onFrame(link.getSensorId(), frame);
+            }
+            processJsonData(link.getStats(), frame);
+        }
 
-                InputStream inputStream;
-                try {
-                    inputStream = socket.getInputStream();
-                } catch (IOException e) {
-                    // Socket was closed before we could get the stream
-                    if (e.getMessage() != null && e.getMessage().contains("Socket is closed")) {
-                        Log.w(TAG, "Socket was closed before starting read - ignoring");
-                        return; // Exit gracefully without notifying as error
-                    } else {
-                        throw e; // Re-throw other IOExceptions
-                    }
+        @Override
+        public void onLinkClosed(SensorLink link, IOException error) {
+            int remaining;
+            synchronized (links) {
+                // Already gone if closed through disconnect()
+                if (!links.remove(link.getSensorId(), link)) {
+                    return;
                 }
+                remaining = links.size();
+            }
+            Log.d(TAG, "Link to " + link.getName() + " closed: " + link.getStats());
+            if (error != null) {
+                notifyError("Connection lost to " + link.getName() + ": " + error.getMessage());
+            }
+            if (remaining == 0) {
+                notifyDisconnected();
+            } else {
+                notifySensorDisconnected(link.getName(), remaining);
+            }
+        }
+    };
 
-                // Use larger buffer size (8KB) for better performance with burst traffic
-                BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream), 8192);
-                StringBuilder jsonBuffer = new StringBuilder();
-                int braceCount = 0;
-                boolean inJson = false;
-
-                Log.d(TAG, "Started reading data with buffered array reads");
-
-                // Use char array for more efficient reading
-                char[] buffer = new char[1024];
-
-                while (shouldRun && isConnected) {
-                    try {
-                        // Check if data is available before blocking read
-                        if (!reader.ready()) {
-                            Thread.sleep(10); // Small sleep to prevent busy-wait
-                            continue;
-                        }
-
-                        int numRead = reader.read(buffer, 0, buffer.length);
-                        if (numRead == -1) {
-                            Log.w(TAG, "End of stream reached");
-                            break;
-                        }
-
-                        Log.d(TAG, "Read " + numRead + " characters from stream");
-
-                        // Process buffer content
-                        for (int i = 0; i < numRead; i++) {
-                            char c = buffer[i];
-
-                            // JSON parsing state machine
-                            if (c == '{') {
-                                if (!inJson) {
-                                    inJson = true;
-                                    jsonBuffer.setLength(0);
-                                }
-                                braceCount++;
-                                jsonBuffer.append(c);
-                            } else if (c == '}') {
-                                if (inJson) {
-                                    jsonBuffer.append(c);
-                                    braceCount--;
-
-                                    if (braceCount == 0) {
-                                        // Complete JSON object received
-                                        String jsonString = jsonBuffer.toString();
-                                        Log.d(TAG, "Received complete JSON: " + jsonString.substring(0, Math.min(100, jsonString.length())) + (jsonString.length() > 100 ? "..." : ""));
-                                        try {
-                                            processJsonData(jsonString);
-                                        } catch (Exception e) {
-                                            Log.e(TAG, "Error processing JSON data: " + jsonString, e);
-                                            e.printStackTrace();
-                                            // Don't break the read loop - continue reading
-                                        }
-                                        inJson = false;
-                                        jsonBuffer.setLength(0);
-                                    }
-                                }
-                            } else if (inJson) {
-                                jsonBuffer.append(c);
-                            }
-                        }
-
-                    } catch (InterruptedIOException | InterruptedException e) {
-                        // Thread was interrupted - normal shutdown
-                        Log.d(TAG, "Reader thread interrupted, shutting down");
-                        break;
-                    } catch (IOException e) {
-                        // IOException on read - connection problem
-                        if (shouldRun) {
-                            Log.e(TAG, "IOException while reading data", e);
-                            mainHandler.post(() -> notifyError("Connection lost: " + e.getMessage()));
-                        }
-                        break;
-                    } catch (Exception e) {
-                        // Unexpected exception - log but don't break connection
-                        Log.e(TAG, "Unexpected error in read loop", e);
-                        e.printStackTrace();
-                        // Continue reading - don't break the connection for non-IO errors
-                    }
+    /**
+     * Feed a frame into the ingest path as if a link had read it. Used by
+     * {@link FrameReplayer}; frames are not captured.
+     */
+    @Override
+    public void onFrame(String sensorId, ByteBuffer frame) {
+        SensorLink link = sensorId != null ? links.get(sensorId) : null;
+        long now = System.currentTimeMillis();
+        SensorStats stats;
+        if (link != null) {
+            stats = link.getStats();
+        } else {
+            String id = sensorId != null ? sensorId : "replay";
+            stats = replaySensors.get(id);
+            if (stats == null) {
+                stats = new SensorStats(id, "replay " + id);
+                stats.markConnected(now);
+                SensorStats existing = replaySensors.putIfAbsent(id, stats);
+                if (existing != null) {
+                    stats = existing;
                 }
+            }
+        }
+        stats.recordFrame(frame.remaining(), now);
+        processJsonData(stats, frame);
+    }
 
-                Log.d(TAG, "Read loop exited");
+    /**
+     * Start capturing every frame read from the live links to {@code file},
+     * replacing any capture in progress
+     */
+    public void startCapture(File file) throws IOException {
+        FrameRecorder previous;
+        synchronized (this) {
+            previous = recorder;
+            recorder = new FrameRecorder(file);
+        }
+        if (previous != null) {
+            previous.close();
+        }
+        Log.i(TAG, "Capturing frames to " + file);
+    }
 
+    /**
+     * Stop the capture in progress, if any
+     */
+    public void stopCapture() {
+        FrameRecorder previous;
+        synchronized (this) {
+            previous = recorder;
+            recorder = null;
+        }
+        if (previous != null) {
+            try {
+                previous.close();
             } catch (IOException e) {
-                if (shouldRun) {
-                    Log.e(TAG, "Error initializing stream reader", e);
-                    mainHandler.post(() -> notifyError("Connection lost: " + e.getMessage()));
-                }
-            } finally {
-                // Only cleanup if we're still the owner of the connection
-                if (isConnected) {
-                    Log.d(TAG, "Read thread ending, calling cleanup");
-                    cleanup();
-                    mainHandler.post(() -> notifyDisconnected());
-                } else {
-                    Log.d(TAG, "Read thread ending, already disconnected");
-                }
+                Log.e(TAG, "Error closing capture " + previous.getFile(), e);
             }
-        });
-        readerThread.start();
+        }
+    }
+
+    public boolean isCapturing() {
+        return recorder != null;
     }
 
     /**
-     * Process received JSON data
+     * Play a capture back through the ingest path on a background thread
+     *
+     * @param speed playback speed multiplier, or
+     *              {@link FrameReplayer#AS_FAST_AS_POSSIBLE}
+     * @return the running replayer, for {@link FrameReplayer#stop()}
      */
-    private void processJsonData(String jsonString) {
-        Object result = RemoteIdParser.parseMessage(jsonString);
+    public FrameReplayer replay(File file, double speed) {
+        FrameReplayer replayer = new FrameReplayer(file, this, speed);
+        replayer.start();
+        return replayer;
+    }
+
+    /**
+     * Process a received JSON frame. Runs on the link's reader thread as soon
+     * as the frame is complete, which is when its latency clock starts. The
+     * buffer is only valid during this call, so it is parsed here; detections
+     * are queued for the ingest worker, and device info and battery updates
+     * (which touch views) are posted to the main thread.
+     */
+    private void processJsonData(SensorStats sensor, ByteBuffer frame) {
+        long frameNanos = System.nanoTime();
+        Object result = RemoteIdParser.parseMessage(frame);
 
         if (result == null) {
+            sensor.recordUnparsed();
             return;
         }
 
-        // Notify listeners on main thread
-        mainHandler.post(() -> {
-            if (result instanceof RemoteIdParser.DeviceInfo) {
+        if (result instanceof RemoteIdParser.DeviceInfo) {
+            mainHandler.post(() -> {
                 for (DataListener listener : dataListeners) {
                     listener.onDeviceInfo((RemoteIdParser.DeviceInfo) result);
                 }
-            } else if (result instanceof RemoteIdParser.BatteryStatus) {
+            });
+        } else if (result instanceof RemoteIdParser.BatteryStatus) {
+            mainHandler.post(() -> {
                 for (DataListener listener : dataListeners) {
                     listener.onBatteryStatus((RemoteIdParser.BatteryStatus) result);
                 }
-            } else if (result instanceof RemoteIdData) {
-                RemoteIdData data = (RemoteIdData) result;
-                if (data.isValidLocation()) {
-                    for (DataListener listener : dataListeners) {
-                        listener.onRemoteIdData(data);
-                    }
-                } else {
-                    Log.w(TAG, "Ignoring detection with invalid location - Drone: " + data.getUniqueId() +
-                            " Lat: " + data.getUasLat() + ", Lon: " + data.getUasLon());
-                    mainHandler.post(() -> notifyError("Drone detected but has invalid GPS coordinates (0.0, 0.0). Configure ESP32 spoofer with valid location."));
+            });
+        } else if (result instanceof RemoteIdData) {
+            RemoteIdData data = (RemoteIdData) result;
+            data.setSensorId(sensor.getSensorId());
+            data.setFrameNanos(frameNanos);
+            data.setParsedNanos(System.nanoTime());
+            PipelineLatency.getInstance().record(PipelineLatency.Stage.PARSED, frameNanos);
+            sensor.recordDetection();
+            if (data.isValidLocation()) {
+                if (!ingestQueue.offer(data)) {
+                    Log.d(TAG, "Ingest queue full, dropped a detection: " + ingestQueue);
                 }
+            } else {
+                Log.w(TAG, "Ignoring detection with invalid location - Drone: " + data.getUniqueId() +
+                        " Lat: " + data.getUasLat() + ", Lon: " + data.getUasLon());
+                notifyError("Drone detected but has invalid GPS coordinates (0.0, 0.0). Configure ESP32 spoofer with valid location.");
             }
-        });
+        }
     }
 
     /**
-     * Clean up resources
+     * Ingest worker: hands queued detections to the listeners, on this thread
+     * so conversion and dispatch stay off both the readers and the UI
      */
-    private synchronized void cleanup() {
-        // Prevent double cleanup
-        if (!isConnected && socket == null) {
-            Log.d(TAG, "cleanup() called but already cleaned up, skipping");
-            return;
-        }
-
-        Log.d(TAG, "Starting cleanup");
-        isConnected = false;
-        shouldRun = false;
-
-        // Wait for reader thread to finish
-        if (readerThread != null) {
-            readerThread.interrupt();
-            try {
-                readerThread.join(2000); // Wait up to 2 seconds
-                Log.d(TAG, "Reader thread joined successfully");
-            } catch (InterruptedException e) {
-                Log.w(TAG, "Interrupted while waiting for reader thread to finish");
-            }
-            readerThread = null;
-        }
-
-        // Now safe to close socket
-        if (socket != null) {
-            try {
-                socket.close();
-                Log.d(TAG, "Socket closed successfully");
-            } catch (IOException e) {
-                Log.e(TAG, "Error closing socket", e);
+    private void ingestLoop() {
+        try {
+            RemoteIdData data;
+            while ((data = ingestQueue.take()) != null) {
+                PipelineLatency.getInstance().record(PipelineLatency.Stage.DEQUEUED, data.getFrameNanos());
+                for (DataListener listener : dataListeners) {
+                    try {
+                        listener.onRemoteIdData(data);
+                    } catch (Exception e) {
+                        Log.e(TAG, "Error in detection listener", e);
+                    }
+                }
             }
-            socket = null;
+        } catch (InterruptedException e) {
+            Log.d(TAG, "Ingest worker interrupted");
         }
-
-        connectedDevice = null;
-        Log.d(TAG, "Cleanup completed");
     }
 
     /**
@@ -697,6 +779,14 @@ public class BluetoothManager {
         });
     }
 
+    private void notifySensorDisconnected(String deviceName, int remaining) {
+        mainHandler.post(() -> {
+            for (ConnectionListener listener : connectionListeners) {
+                listener.onSensorDisconnected(deviceName, remaining);
+            }
+        });
+    }
+
     private void notifyError(String error) {
         mainHandler.post(() -> {
             for (ConnectionListener listener : connectionListeners) {
@@ -778,6 +868,11 @@ public class BluetoothManager {
             discoveryReceiver = null;
         }
 
+        stopCapture();
+        ingestQueue.close();
+        ingestQueue.clear();
+        ingestWorker.interrupt();
+
         dataListeners.clear();
         connectionListeners.clear();
         discoveryListeners.clear();
@@ -0,0 +1,231 @@
+package com.engindearing.omnicot.remoteid;
+
+import android.util.Log;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-drone rate limiter that sits in front of CoT conversion.
+ * gyb_detect reports every Remote ID broadcast it hears, often several per
+ * second per aircraft across WiFi Beacon, NaN and BT. Detections are keyed by
+ * {@link RemoteIdData#getUniqueId()}; only the newest state per drone is kept
+ * and it is emitted at most once per {@code minIntervalMs}. A detection that
+ * moves the drone more than {@code positionJumpMeters}, changes its altitude
+ * by more than {@code altitudeJumpMeters} or changes {@code opStatus} is
+ * emitted immediately.
+ *
+ * <p>Detections held back by the rate limit are delivered by a background
+ * flush once their interval expires, so the map always ends up showing the
+ * latest state.
+ */
+public class DetectionCoalescer {
+
+    private static final String TAG = "DetectionCoalescer";
+
+    public static final long DEFAULT_MIN_INTERVAL_MS = 1000;
+    public static final double DEFAULT_POSITION_JUMP_METERS = 50.0;
+    public static final double DEFAULT_ALTITUDE_JUMP_METERS = 15.0;
+
+    /** Tracks not heard from for this long are forgotten */
+    private static final long TRACK_EXPIRY_MS = 5 * 60 * 1000;
+
+    private static final double METERS_PER_DEGREE = 111_320.0;
+
+    /**
+     * Receives coalesced detections. Called from the thread that submitted the
+     * detection or from the flush thread, never concurrently for the same drone.
+     */
+    public interface Emitter {
+        void emit(RemoteIdData data);
+    }
+
+    private static final class Track {
+        boolean emittedOnce;
+        boolean evicted;
+        long lastEmitMs;
+        long lastSeenMs;
+        double lat;
+        double lon;
+        float hae;
+        int opStatus;
+        RemoteIdData pending;
+    }
+
+    private final Emitter emitter;
+    private final Map<String, Track> tracks = new ConcurrentHashMap<>();
+
+    private volatile long minIntervalMs = DEFAULT_MIN_INTERVAL_MS;
+    private volatile double positionJumpMeters = DEFAULT_POSITION_JUMP_METERS;
+    private volatile double altitudeJumpMeters = DEFAULT_ALTITUDE_JUMP_METERS;
+
+    private ScheduledExecutorService flushExecutor;
+    private ScheduledFuture<?> flushTask;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong emitted = new AtomicLong();
+
+    public DetectionCoalescer(Emitter emitter) {
+        this.emitter = emitter;
+    }
+
+    public void setMinIntervalMs(long minIntervalMs) {
+        this.minIntervalMs = minIntervalMs;
+    }
+
+    public long getMinIntervalMs() {
+        return minIntervalMs;
+    }
+
+    public void setPositionJumpMeters(double positionJumpMeters) {
+        this.positionJumpMeters = positionJumpMeters;
+    }
+
+    public void setAltitudeJumpMeters(double altitudeJumpMeters) {
+        this.altitudeJumpMeters = altitudeJumpMeters;
+    }
+
+    /**
+     * Start the background flush of held-back detections
+     */
+    public synchronized void start() {
+        if (flushExecutor != null) {
+            return;
+        }
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(
+                r -> new Thread(r, "omnicot-coalescer"));
+        // Check a few times per interval so trailing updates are not delayed much
+        long period = Math.max(50, minIntervalMs / 4);
+        flushTask = flushExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                flushDue(now());
+            } catch (Exception e) {
+                Log.e(TAG, "Error flushing coalesced detections", e);
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the background flush and forget all tracks
+     */
+    public synchronized void stop() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        if (flushExecutor != null) {
+            flushExecutor.shutdownNow();
+            flushExecutor = null;
+        }
+        tracks.clear();
+    }
+
+    /**
+     * Submit a detection using the current time
+     */
+    public void submit(RemoteIdData data) {
+        offer(data, now());
+    }
+
+    /**
+     * Submit a detection observed at {@code nowMs}.
+     *
+     * @return true if it was emitted immediately, false if it is being held back
+     */
+    public boolean offer(RemoteIdData data, long nowMs) {
+        String uid = data.getUniqueId();
+        received.incrementAndGet();
+        while (true) {
+            Track track = tracks.computeIfAbsent(uid, k -> new Track());
+            synchronized (track) {
+                if (track.evicted) {
+                    continue; // lost a race with flushDue(); pick up the replacement
+                }
+                track.lastSeenMs = nowMs;
+                if (!track.emittedOnce || nowMs - track.lastEmitMs >= minIntervalMs
+                        || isSignificantChange(track, data)) {
+                    emit(track, data, nowMs);
+                    return true;
+                }
+                track.pending = data;
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Emit held-back detections whose interval has expired and forget drones
+     * that have gone quiet.
+     *
+     * @return number of detections emitted
+     */
+    public int flushDue(long nowMs) {
+        int count = 0;
+        Iterator<Map.Entry<String, Track>> it = tracks.entrySet().iterator();
+        while (it.hasNext()) {
+            Track track = it.next().getValue();
+            synchronized (track) {
+                if (track.pending != null && nowMs - track.lastEmitMs >= minIntervalMs) {
+                    emit(track, track.pending, nowMs);
+                    count++;
+                } else if (track.pending == null && nowMs - track.lastSeenMs > TRACK_EXPIRY_MS) {
+                    track.evicted = true;
+                    it.remove();
+                }
+            }
+        }
+        return count;
+    }
+
+    public int getTrackCount() {
+        return tracks.size();
+    }
+
+    public long getReceivedCount() {
+        return received.get();
+    }
+
+    public long getEmittedCount() {
+        return emitted.get();
+    }
+
+    private boolean isSignificantChange(Track track, RemoteIdData data) {
+        if (data.getOpStatus() != track.opStatus) {
+            return true;
+        }
+        if (Math.abs(data.getUasHae() - track.hae) > altitudeJumpMeters) {
+            return true;
+        }
+        // Equirectangular approximation is plenty at these distances
+        double dLat = (data.getUasLat() - track.lat) * METERS_PER_DEGREE;
+        double dLon = (data.getUasLon() - track.lon) * METERS_PER_DEGREE
+                * Math.cos(Math.toRadians(track.lat));
+        return dLat * dLat + dLon * dLon > positionJumpMeters * positionJumpMeters;
+    }
+
+    private void emit(Track track, RemoteIdData data, long nowMs) {
+        track.emittedOnce = true;
+        track.lastEmitMs = nowMs;
+        track.lat = data.getUasLat();
+        track.lon = data.getUasLon();
+        track.hae = data.getUasHae();
+        track.opStatus = data.getOpStatus();
+        track.pending = null;
+        emitted.incrementAndGet();
+        try {
+            emitter.emit(data);
+        } catch (Exception e) {
+            Log.e(TAG, "Error emitting detection for " + data.getUniqueId(), e);
+        }
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+}
@@ -0,0 +1,237 @@
+package com.engindearing.omnicot.remoteid;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Merges copies of the same broadcast heard on several paths.
+ * One aircraft is often picked up by several gyb_detect units, or by one unit
+ * over WiFi Beacon, WiFi NaN and Bluetooth, within a few milliseconds.
+ * Detections are keyed by {@link RemoteIdData#getUniqueId()} and
+ * {@link RemoteIdData#getSessionId()}; the first one opens a window of
+ * {@code windowMs} and everything arriving for the same key inside it is
+ * folded in. When the window closes a single detection is emitted: the report
+ * with the best (smallest) {@code uasHorizontalError}, with the strongest RSSI
+ * and the RSSI of every path attached as
+ * {@link RemoteIdData#getReceptionPaths()}.
+ *
+ * <p>This adds up to one window of latency to every detection, so the window
+ * should stay short.
+ */
+public class DetectionFusion {
+
+    private static final String TAG = "DetectionFusion";
+
+    public static final long DEFAULT_WINDOW_MS = 150;
+
+    /**
+     * Receives fused detections, on the flush thread
+     */
+    public interface Emitter {
+        void emit(RemoteIdData data);
+    }
+
+    private static final class Window {
+        final long openedMs;
+        final List<RemoteIdData.ReceptionPath> paths = new ArrayList<>(4);
+        RemoteIdData best;
+        int bestRssi = Integer.MIN_VALUE;
+        boolean closed;
+
+        Window(long openedMs) {
+            this.openedMs = openedMs;
+        }
+    }
+
+    private final Emitter emitter;
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    private volatile long windowMs = DEFAULT_WINDOW_MS;
+
+    private ScheduledExecutorService flushExecutor;
+    private ScheduledFuture<?> flushTask;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong emitted = new AtomicLong();
+
+    public DetectionFusion(Emitter emitter) {
+        this.emitter = emitter;
+    }
+
+    public void setWindowMs(long windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    public long getWindowMs() {
+        return windowMs;
+    }
+
+    /**
+     * Start the background flush of closed windows
+     */
+    public synchronized void start() {
+        if (flushExecutor != null) {
+            return;
+        }
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(
+                r -> new Thread(r, "omnicot-fusion"));
+        // Check several times per window so fused detections are not held long past it
+        long period = Math.max(10, windowMs / 3);
+        flushTask = flushExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                flushDue(now());
+            } catch (Exception e) {
+                Log.e(TAG, "Error flushing fused detections", e);
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the background flush and drop open windows
+     */
+    public synchronized void stop() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        if (flushExecutor != null) {
+            flushExecutor.shutdownNow();
+            flushExecutor = null;
+        }
+        windows.clear();
+    }
+
+    /**
+     * Submit a detection using the current time
+     */
+    public void submit(RemoteIdData data) {
+        offer(data, now());
+    }
+
+    /**
+     * Fold a detection observed at {@code nowMs} into its window, opening one
+     * if needed.
+     */
+    public void offer(RemoteIdData data, long nowMs) {
+        String key = data.getUniqueId() + '#' + data.getSessionId();
+        received.incrementAndGet();
+        while (true) {
+            Window window = windows.get(key);
+            if (window == null) {
+                window = new Window(nowMs);
+                Window existing = windows.putIfAbsent(key, window);
+                if (existing != null) {
+                    window = existing;
+                }
+            }
+            synchronized (window) {
+                if (window.closed) {
+                    continue; // lost a race with flushDue(); open a new window
+                }
+                merge(window, data);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Emit the fused detection of every window open for at least
+     * {@code windowMs}
+     *
+     * @return number of detections emitted
+     */
+    public int flushDue(long nowMs) {
+        long window = windowMs;
+        int count = 0;
+        Iterator<Window> it = windows.values().iterator();
+        while (it.hasNext()) {
+            Window w = it.next();
+            RemoteIdData fused;
+            synchronized (w) {
+                if (nowMs - w.openedMs < window) {
+                    continue;
+                }
+                w.closed = true;
+                it.remove();
+                fused = w.best;
+                fused.setRssi(w.bestRssi);
+                fused.setReceptionPaths(w.paths);
+            }
+            emitted.incrementAndGet();
+            count++;
+            try {
+                emitter.emit(fused);
+            } catch (Exception e) {
+                Log.e(TAG, "Error emitting fused detection for " + fused.getUniqueId(), e);
+            }
+        }
+        return count;
+    }
+
+    public int getOpenWindowCount() {
+        return windows.size();
+    }
+
+    public long getReceivedCount() {
+        return received.get();
+    }
+
+    public long getEmittedCount() {
+        return emitted.get();
+    }
+
+    private static void merge(Window window, RemoteIdData data) {
+        // One entry per sensor and radio; a repeat on the same path updates its RSSI
+        List<RemoteIdData.ReceptionPath> paths = window.paths;
+        RemoteIdData.ReceptionPath path =
+                new RemoteIdData.ReceptionPath(data.getSensorId(), data.getRecvMethod(), data.getRssi());
+        int i = 0;
+        for (; i < paths.size(); i++) {
+            if (paths.get(i).samePath(data.getSensorId(), data.getRecvMethod())) {
+                paths.set(i, path);
+                break;
+            }
+        }
+        if (i == paths.size()) {
+            paths.add(path);
+        }
+
+        window.bestRssi = Math.max(window.bestRssi, data.getRssi());
+        if (window.best == null || isMoreAccurate(data, window.best)) {
+            window.best = data;
+        }
+    }
+
+    /**
+     * Whether {@code candidate} has a better position than {@code current}.
+     * An unreported accuracy (zero or less) ranks below any reported one; on a
+     * tie the newer report wins.
+     */
+    static boolean isMoreAccurate(RemoteIdData candidate, RemoteIdData current) {
+        float c = candidate.getUasHorizontalError();
+        float b = current.getUasHorizontalError();
+        boolean cKnown = c > 0;
+        boolean bKnown = b > 0;
+        if (cKnown != bKnown) {
+            return cKnown;
+        }
+        if (cKnown && c != b) {
+            return c < b;
+        }
+        return candidate.getTimestamp() >= current.getTimestamp();
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+}
@@ -0,0 +1,268 @@
+package com.engindearing.omnicot.remoteid;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded outbound queue drained by its own thread.
+ * Detections leave the plugin on two lanes: local map rendering, which should
+ * see every update as soon as possible, and TAK federation, which goes over
+ * constrained radios and must not slow the local map down. Each lane has its
+ * own capacity (max events in flight), send interval and batch size.
+ *
+ * <p>When the queue is full the oldest event is dropped. A lane built with a
+ * {@link KeyExtractor} keeps at most one queued event per key: a newer event
+ * replaces the queued one in place, so a slow lane sends each track's latest
+ * state rather than a backlog of stale positions.
+ *
+ * <p>Events offered with an origin time report, once sent, the time since
+ * then to the lane's {@link LatencyHistogram}, if it has one.
+ *
+ * @param <T> event type
+ */
+public class DispatchLane<T> {
+
+    private static final String TAG = "DispatchLane";
+
+    /** Delivers events to their destination. Called on the lane thread. */
+    public interface Sink<T> {
+        void send(T event);
+    }
+
+    /** Identifies events that supersede each other, e.g. by CoT UID */
+    public interface KeyExtractor<T> {
+        Object keyOf(T event);
+    }
+
+    private static final class Queued<T> {
+        T event;
+        long originNanos;
+
+        Queued(T event, long originNanos) {
+            this.event = event;
+            this.originNanos = originNanos;
+        }
+    }
+
+    private final String name;
+    private final Sink<T> sink;
+    private final KeyExtractor<T> keyExtractor;
+    private volatile LatencyHistogram latencyHistogram;
+
+    private volatile int capacity;
+    private volatile long intervalMs;
+    private volatile int maxBatch;
+
+    // Insertion order is send order; re-putting a key keeps its position
+    private final LinkedHashMap<Object, Queued<T>> queue = new LinkedHashMap<>();
+    private Thread worker;
+    private boolean running = false;
+
+    private long offered = 0;
+    private long sent = 0;
+    private long failed = 0;
+    private long dropped = 0;
+    private long superseded = 0;
+
+    /**
+     * @param name         lane name, also used for the thread name
+     * @param capacity     max events held before the oldest is dropped
+     * @param intervalMs   minimum time between batches; 0 sends as soon as events arrive
+     * @param maxBatch     max events sent per batch
+     * @param keyExtractor key for replacing queued events, or null to queue every event
+     * @param sink         destination
+     */
+    public DispatchLane(String name, int capacity, long intervalMs, int maxBatch,
+                        KeyExtractor<T> keyExtractor, Sink<T> sink) {
+        this.name = name;
+        this.capacity = capacity;
+        this.intervalMs = intervalMs;
+        this.maxBatch = maxBatch;
+        this.keyExtractor = keyExtractor;
+        this.sink = sink;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::drainLoop, name);
+        worker.start();
+    }
+
+    /**
+     * Stop the lane thread. Queued events are discarded.
+     */
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            queue.clear();
+            thread = worker;
+            worker = null;
+            notifyAll();
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Queue an event. Never blocks.
+     *
+     * @return false if an older event had to be dropped to make room
+     */
+    public boolean offer(T event) {
+        return offer(event, 0);
+    }
+
+    /**
+     * Queue an event whose latency is measured from {@code originNanos} on
+     * the {@link System#nanoTime()} clock; 0 if it isn't measured. Never blocks.
+     *
+     * @return false if an older event had to be dropped to make room
+     */
+    public synchronized boolean offer(T event, long originNanos) {
+        offered++;
+        Object key = keyExtractor != null ? keyExtractor.keyOf(event) : null;
+        if (key == null) {
+            key = new Object();
+        }
+
+        boolean accepted = true;
+        Queued<T> queued = queue.get(key);
+        if (queued != null) {
+            queued.event = event;
+            queued.originNanos = originNanos;
+            superseded++;
+        } else {
+            queue.put(key, new Queued<>(event, originNanos));
+            while (queue.size() > capacity) {
+                Iterator<Queued<T>> it = queue.values().iterator();
+                it.next();
+                it.remove();
+                dropped++;
+                accepted = false;
+            }
+        }
+        notifyAll();
+        return accepted;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void setIntervalMs(long intervalMs) {
+        this.intervalMs = intervalMs;
+    }
+
+    public void setMaxBatch(int maxBatch) {
+        this.maxBatch = maxBatch;
+    }
+
+    /**
+     * Histogram that receives the origin-to-send latency of each event, or
+     * null to stop measuring
+     */
+    public void setLatencyHistogram(LatencyHistogram latencyHistogram) {
+        this.latencyHistogram = latencyHistogram;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized int getDepth() {
+        return queue.size();
+    }
+
+    public synchronized long getOfferedCount() {
+        return offered;
+    }
+
+    /**
+     * Events the sink accepted; events it threw on are counted as failed
+     */
+    public synchronized long getSentCount() {
+        return sent;
+    }
+
+    public synchronized long getFailedCount() {
+        return failed;
+    }
+
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    public synchronized long getSupersededCount() {
+        return superseded;
+    }
+
+    private void drainLoop() {
+        List<Queued<T>> batch = new ArrayList<>();
+        long nextSendNanos = System.nanoTime();
+        try {
+            while (true) {
+                synchronized (this) {
+                    while (running && queue.isEmpty()) {
+                        wait();
+                    }
+                    // Hold the batch back until the interval has passed; events
+                    // arriving meanwhile replace or join it
+                    long waitMs;
+                    while (running && (waitMs = TimeUnit.NANOSECONDS.toMillis(nextSendNanos - System.nanoTime())) > 0) {
+                        wait(waitMs);
+                    }
+                    if (!running) {
+                        return;
+                    }
+                    Iterator<Map.Entry<Object, Queued<T>>> it = queue.entrySet().iterator();
+                    int limit = Math.max(1, maxBatch);
+                    while (it.hasNext() && batch.size() < limit) {
+                        batch.add(it.next().getValue());
+                        it.remove();
+                    }
+                }
+
+                LatencyHistogram histogram = latencyHistogram;
+                int batchSent = 0;
+                int batchFailed = 0;
+                for (Queued<T> queued : batch) {
+                    try {
+                        sink.send(queued.event);
+                        batchSent++;
+                        if (histogram != null && queued.originNanos != 0) {
+                            histogram.recordSince(queued.originNanos);
+                        }
+                    } catch (Exception e) {
+                        batchFailed++;
+                        Log.w(TAG, name + ": send failed", e);
+                    }
+                }
+                synchronized (this) {
+                    sent += batchSent;
+                    failed += batchFailed;
+                }
+                batch.clear();
+                nextSendNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(intervalMs);
+            }
+        } catch (InterruptedException e) {
+            Log.d(TAG, name + ": stopped");
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return name + "{depth=" + queue.size() + ", sent=" + sent + ", failed=" + failed +
+                ", dropped=" + dropped + ", superseded=" + superseded + "}";
+    }
+}
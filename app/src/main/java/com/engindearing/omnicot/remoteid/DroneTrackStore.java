@@ -0,0 +1,283 @@
+package com.engindearing.omnicot.remoteid;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recent position history for every drone heard, keyed by
+ * {@link RemoteIdData#getUniqueId()}.
+ * Each track keeps a fixed-size ring buffer of fixes in primitive parallel
+ * arrays, so recording a fix is O(1) and allocates nothing once the track
+ * exists. Tracks not updated for a while are evicted; if the store is full
+ * the least recently updated track makes room for a new one.
+ *
+ * <p>Basis for trails, analytics and replay.
+ */
+public class DroneTrackStore {
+
+    public static final int DEFAULT_HISTORY_SIZE = 256;
+    public static final int DEFAULT_MAX_TRACKS = 512;
+    public static final long DEFAULT_INACTIVE_MS = 10 * 60 * 1000;
+
+    /** Minimum time between opportunistic inactive-track sweeps */
+    private static final long SWEEP_INTERVAL_MS = 30 * 1000;
+
+    /**
+     * Receives fixes from a windowed query, oldest first
+     */
+    public interface FixVisitor {
+        void visit(long timeMs, double lat, double lon, float hae, float speed, float heading);
+    }
+
+    /**
+     * History of one drone. All methods are thread-safe.
+     */
+    public static final class Track {
+        private final String uid;
+        private final int capacity;
+        private final long[] time;
+        private final double[] lat;
+        private final double[] lon;
+        private final float[] hae;
+        private final float[] speed;
+        private final float[] heading;
+
+        // Index the next fix is written to, and number of valid fixes
+        private int head = 0;
+        private int size = 0;
+        private volatile long lastUpdateMs;
+
+        Track(String uid, int capacity) {
+            this.uid = uid;
+            this.capacity = capacity;
+            this.time = new long[capacity];
+            this.lat = new double[capacity];
+            this.lon = new double[capacity];
+            this.hae = new float[capacity];
+            this.speed = new float[capacity];
+            this.heading = new float[capacity];
+        }
+
+        public String getUid() {
+            return uid;
+        }
+
+        public long getLastUpdateMs() {
+            return lastUpdateMs;
+        }
+
+        public synchronized int size() {
+            return size;
+        }
+
+        /**
+         * Append a fix, overwriting the oldest once the buffer is full. Fix
+         * times are kept non-decreasing so windowed queries can binary search;
+         * a fix older than the newest one is recorded at the newest time.
+         */
+        public synchronized void append(long timeMs, double lat, double lon, float hae, float speed, float heading) {
+            if (size > 0) {
+                timeMs = Math.max(timeMs, time[physical(size - 1)]);
+            }
+            this.time[head] = timeMs;
+            this.lat[head] = lat;
+            this.lon[head] = lon;
+            this.hae[head] = hae;
+            this.speed[head] = speed;
+            this.heading[head] = heading;
+            head = (head + 1) % capacity;
+            if (size < capacity) {
+                size++;
+            }
+            lastUpdateMs = timeMs;
+        }
+
+        /** Time of the i-th retained fix, 0 being the oldest */
+        public synchronized long getTime(int i) {
+            return time[checked(i)];
+        }
+
+        public synchronized double getLat(int i) {
+            return lat[checked(i)];
+        }
+
+        public synchronized double getLon(int i) {
+            return lon[checked(i)];
+        }
+
+        public synchronized float getHae(int i) {
+            return hae[checked(i)];
+        }
+
+        public synchronized float getSpeed(int i) {
+            return speed[checked(i)];
+        }
+
+        public synchronized float getHeading(int i) {
+            return heading[checked(i)];
+        }
+
+        /**
+         * Visit the fixes with {@code fromMs <= time <= toMs}, oldest first
+         *
+         * @return number of fixes visited
+         */
+        public synchronized int forEachInWindow(long fromMs, long toMs, FixVisitor visitor) {
+            int i = firstAtOrAfter(fromMs);
+            int count = 0;
+            for (; i < size; i++) {
+                int p = physical(i);
+                if (time[p] > toMs) {
+                    break;
+                }
+                visitor.visit(time[p], lat[p], lon[p], hae[p], speed[p], heading[p]);
+                count++;
+            }
+            return count;
+        }
+
+        /**
+         * Number of fixes with {@code fromMs <= time <= toMs}
+         */
+        public synchronized int countInWindow(long fromMs, long toMs) {
+            return firstAfter(toMs) - firstAtOrAfter(fromMs);
+        }
+
+        private int firstAtOrAfter(long t) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (time[physical(mid)] < t) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private int firstAfter(long t) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (time[physical(mid)] <= t) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /** Array index of the i-th retained fix */
+        private int physical(int i) {
+            int p = head - size + i;
+            return p < 0 ? p + capacity : p;
+        }
+
+        private int checked(int i) {
+            if (i < 0 || i >= size) {
+                throw new IndexOutOfBoundsException("fix " + i + " of " + size);
+            }
+            return physical(i);
+        }
+    }
+
+    private final ConcurrentHashMap<String, Track> tracks = new ConcurrentHashMap<>();
+    private final int historySize;
+    private final int maxTracks;
+    private final long inactiveMs;
+    private volatile long lastSweepMs = 0;
+
+    public DroneTrackStore() {
+        this(DEFAULT_HISTORY_SIZE, DEFAULT_MAX_TRACKS, DEFAULT_INACTIVE_MS);
+    }
+
+    public DroneTrackStore(int historySize, int maxTracks, long inactiveMs) {
+        this.historySize = historySize;
+        this.maxTracks = maxTracks;
+        this.inactiveMs = inactiveMs;
+    }
+
+    /**
+     * Record a detection's drone position. Detections without a valid drone
+     * location are ignored.
+     *
+     * @return the drone's track, or null if nothing was recorded
+     */
+    public Track record(RemoteIdData data) {
+        if (!data.isValidLocation()) {
+            return null;
+        }
+        return record(data.getUniqueId(), data.getTimestamp(), data.getUasLat(), data.getUasLon(),
+                data.getUasHae(), data.getUasHSpeed(), data.getUasHeading());
+    }
+
+    public Track record(String uid, long timeMs, double lat, double lon, float hae, float speed, float heading) {
+        if (timeMs - lastSweepMs >= SWEEP_INTERVAL_MS) {
+            lastSweepMs = timeMs;
+            evictInactive(timeMs);
+        }
+
+        Track track = tracks.get(uid);
+        if (track == null) {
+            if (tracks.size() >= maxTracks) {
+                evictLeastRecent();
+            }
+            track = new Track(uid, historySize);
+            Track existing = tracks.putIfAbsent(uid, track);
+            if (existing != null) {
+                track = existing;
+            }
+        }
+        track.append(timeMs, lat, lon, hae, speed, heading);
+        return track;
+    }
+
+    public Track get(String uid) {
+        return tracks.get(uid);
+    }
+
+    public Iterable<Track> getTracks() {
+        return tracks.values();
+    }
+
+    public int getTrackCount() {
+        return tracks.size();
+    }
+
+    /**
+     * Remove tracks not updated within the inactivity timeout
+     *
+     * @return number of tracks removed
+     */
+    public int evictInactive(long nowMs) {
+        int removed = 0;
+        Iterator<Track> it = tracks.values().iterator();
+        while (it.hasNext()) {
+            if (nowMs - it.next().getLastUpdateMs() > inactiveMs) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public void clear() {
+        tracks.clear();
+    }
+
+    private void evictLeastRecent() {
+        Track oldest = null;
+        for (Track track : tracks.values()) {
+            if (oldest == null || track.getLastUpdateMs() < oldest.getLastUpdateMs()) {
+                oldest = track;
+            }
+        }
+        if (oldest != null) {
+            tracks.remove(oldest.getUid(), oldest);
+        }
+    }
+}
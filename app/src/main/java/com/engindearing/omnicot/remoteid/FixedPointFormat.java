@@ -0,0 +1,133 @@
+package com.engindearing.omnicot.remoteid;
+
+import java.util.Locale;
+
+/**
+ * Fast fixed-point number formatting for CoT attributes and remarks.
+ * Replaces {@code String.format("%.1f", x)}, which parses a format string on
+ * every call and follows the default locale (a German-locale device would
+ * write "12,5" into the CoT). Output always uses '.' as the decimal
+ * separator. Rounding is half-up on the binary value.
+ *
+ * <p>{@link #append} writes straight into a StringBuilder without allocating;
+ * {@link #format} allocates only the returned String.
+ */
+public final class FixedPointFormat {
+
+    private static final int MAX_DECIMALS = 9;
+    private static final long[] POW10 = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L,
+            1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+    // Largest scaled value that fits a long with room to spare
+    private static final double MAX_SCALED = 1e18;
+    private static final int BUFFER_SIZE = 32;
+
+    private static final ThreadLocal<char[]> BUFFER = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[BUFFER_SIZE];
+        }
+    };
+
+    private FixedPointFormat() {
+    }
+
+    /**
+     * Format {@code value} with exactly {@code decimals} digits after the point
+     */
+    public static String format(double value, int decimals) {
+        char[] buf = BUFFER.get();
+        int start = write(buf, value, decimals);
+        if (start < 0) {
+            return fallback(value, decimals);
+        }
+        return new String(buf, start, BUFFER_SIZE - start);
+    }
+
+    /**
+     * Append {@code value} with exactly {@code decimals} digits after the point
+     */
+    public static StringBuilder append(StringBuilder sb, double value, int decimals) {
+        char[] buf = BUFFER.get();
+        int start = write(buf, value, decimals);
+        if (start < 0) {
+            return sb.append(fallback(value, decimals));
+        }
+        return sb.append(buf, start, BUFFER_SIZE - start);
+    }
+
+    /** Returned by {@link #quantize} for values that need the slow path */
+    public static final long NOT_QUANTIZED = Long.MIN_VALUE;
+
+    /**
+     * The value as it would be formatted, as a long: two values quantize to the
+     * same result exactly when {@link #format} renders them identically. Lets
+     * callers check whether a formatted field changed without formatting it.
+     *
+     * @return the quantized value, or {@link #NOT_QUANTIZED} for NaN, infinite
+     *         or very large values, which never compare equal
+     */
+    public static long quantize(double value, int decimals) {
+        if (decimals < 0 || decimals > MAX_DECIMALS || Double.isNaN(value) || Double.isInfinite(value)) {
+            return NOT_QUANTIZED;
+        }
+        double scaled = Math.floor(Math.abs(value) * POW10[decimals] + 0.5);
+        if (scaled >= MAX_SCALED) {
+            return NOT_QUANTIZED;
+        }
+        // Negative values (including those that round to "-0.0") map below zero
+        return value < 0 ? -(long) scaled - 1 : (long) scaled;
+    }
+
+    /**
+     * Write digits right-aligned into {@code buf}.
+     *
+     * @return index of the first char, or -1 if the value needs the slow path
+     */
+    private static int write(char[] buf, double value, int decimals) {
+        if (decimals < 0) {
+            throw new IllegalArgumentException("decimals must be >= 0: " + decimals);
+        }
+        if (decimals > MAX_DECIMALS || Double.isNaN(value) || Double.isInfinite(value)) {
+            return -1;
+        }
+        boolean negative = value < 0;
+        double scaledDouble = Math.floor(Math.abs(value) * POW10[decimals] + 0.5);
+        if (scaledDouble >= MAX_SCALED) {
+            return -1;
+        }
+        long scaled = (long) scaledDouble;
+        if (scaled == 0) {
+            // Match the sign String.format gives small negatives, e.g. "-0.0"
+            negative = negative && value != 0;
+        }
+
+        int pos = BUFFER_SIZE;
+        for (int i = 0; i < decimals; i++) {
+            buf[--pos] = (char) ('0' + (int) (scaled % 10));
+            scaled /= 10;
+        }
+        if (decimals > 0) {
+            buf[--pos] = '.';
+        }
+        do {
+            buf[--pos] = (char) ('0' + (int) (scaled % 10));
+            scaled /= 10;
+        } while (scaled != 0);
+        if (negative) {
+            buf[--pos] = '-';
+        }
+        return pos;
+    }
+
+    private static String fallback(double value, int decimals) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "Infinity" : "-Infinity";
+        }
+        return String.format(Locale.US, "%." + decimals + "f", value);
+    }
+}
@@ -0,0 +1,139 @@
+package com.engindearing.omnicot.remoteid;
+
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Captures raw gyb_detect frames to a compact binary file for
+ * {@link FrameReplayer}.
+ *
+ * <p>File layout: a 16 byte header (magic, version, wall-clock start time in
+ * ms) followed by tagged records. A sensor record ({@code 1, varint index,
+ * UTF id}) is written the first time a sensor is seen; a frame record
+ * ({@code 2, varint delta, varint sensor index, varint length, bytes}) carries
+ * the microseconds since the previous frame on the monotonic clock, so replay
+ * timing is unaffected by wall-clock changes.
+ *
+ * <p>Thread-safe; frames from several links are interleaved in arrival order.
+ * A write failure is logged once and ends the capture.
+ */
+public class FrameRecorder implements FrameSink, Closeable {
+
+    private static final String TAG = "FrameRecorder";
+
+    static final int MAGIC = 0x4F434652; // "OCFR"
+    static final int VERSION = 1;
+    static final byte TAG_SENSOR = 1;
+    static final byte TAG_FRAME = 2;
+
+    private final File file;
+    private final DataOutputStream out;
+    private final Map<String, Integer> sensorIndexes = new HashMap<>();
+    private long lastFrameNanos;
+    private long frameCount = 0;
+    private long byteCount = 0;
+    private boolean closed = false;
+
+    public FrameRecorder(File file) throws IOException {
+        this.file = file;
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(System.currentTimeMillis());
+        lastFrameNanos = System.nanoTime();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void onFrame(String sensorId, ByteBuffer frame) {
+        record(sensorId, frame, System.nanoTime());
+    }
+
+    /**
+     * Record a frame seen at {@code nanos} on the {@link System#nanoTime()}
+     * clock
+     */
+    public synchronized void record(String sensorId, ByteBuffer frame, long nanos) {
+        if (closed) {
+            return;
+        }
+        try {
+            String id = sensorId != null ? sensorId : "";
+            Integer index = sensorIndexes.get(id);
+            if (index == null) {
+                index = sensorIndexes.size();
+                sensorIndexes.put(id, index);
+                out.writeByte(TAG_SENSOR);
+                writeVarint(out, index);
+                out.writeUTF(id);
+            }
+
+            long deltaMicros = Math.max(0, (nanos - lastFrameNanos) / 1000);
+            lastFrameNanos = Math.max(lastFrameNanos, nanos);
+            int length = frame.remaining();
+            out.writeByte(TAG_FRAME);
+            writeVarint(out, deltaMicros);
+            writeVarint(out, index);
+            writeVarint(out, length);
+            if (frame.hasArray()) {
+                out.write(frame.array(), frame.arrayOffset() + frame.position(), length);
+            } else {
+                ByteBuffer copy = frame.duplicate();
+                for (int i = 0; i < length; i++) {
+                    out.write(copy.get());
+                }
+            }
+            frameCount++;
+            byteCount += length;
+        } catch (IOException e) {
+            Log.e(TAG, "Capture to " + file + " failed, stopping", e);
+            closeQuietly();
+        }
+    }
+
+    public synchronized long getFrameCount() {
+        return frameCount;
+    }
+
+    public synchronized long getByteCount() {
+        return byteCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        out.close();
+        Log.d(TAG, "Captured " + frameCount + " frames (" + byteCount + " bytes) to " + file);
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            Log.w(TAG, "Error closing capture " + file, e);
+        }
+    }
+
+    static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
@@ -0,0 +1,209 @@
+package com.engindearing.omnicot.remoteid;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a {@link FrameRecorder} capture back into a {@link FrameSink}.
+ * With a speed of 1 frames are delivered with their recorded spacing; a speed
+ * of N plays N times faster, and {@link #AS_FAST_AS_POSSIBLE} ignores timing
+ * altogether. Feeding a {@link BluetoothManager} reproduces a busy airfield
+ * without hardware.
+ *
+ * <p>Frames are delivered on the thread calling {@link #run()}, or on the
+ * "omnicot-replay" thread after {@link #start()}. The buffer passed to the
+ * sink is reused for the next frame.
+ */
+public class FrameReplayer {
+
+    private static final String TAG = "FrameReplayer";
+
+    public static final double REAL_TIME = 1.0;
+    public static final double AS_FAST_AS_POSSIBLE = 0;
+
+    private static final int MAX_FRAME_SIZE = 1 << 20;
+
+    private final File file;
+    private final FrameSink sink;
+    private final double speed;
+
+    private volatile boolean stopped = false;
+    private volatile long framesReplayed = 0;
+    private Thread thread;
+
+    /**
+     * @param speed playback speed multiplier, or {@link #AS_FAST_AS_POSSIBLE}
+     */
+    public FrameReplayer(File file, FrameSink sink, double speed) {
+        if (speed < 0 || Double.isNaN(speed)) {
+            throw new IllegalArgumentException("Invalid replay speed: " + speed);
+        }
+        this.file = file;
+        this.sink = sink;
+        this.speed = speed;
+    }
+
+    /**
+     * Replay on a background thread
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(() -> {
+            try {
+                long count = run();
+                Log.i(TAG, "Replayed " + count + " frames from " + file);
+            } catch (IOException e) {
+                Log.e(TAG, "Replay of " + file + " failed", e);
+            }
+        }, "omnicot-replay");
+        thread.start();
+    }
+
+    /**
+     * Stop replaying after the current frame
+     */
+    public void stop() {
+        stopped = true;
+        Thread t;
+        synchronized (this) {
+            t = thread;
+        }
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    /**
+     * Wait for a replay started with {@link #start()} to finish
+     */
+    public void join() throws InterruptedException {
+        Thread t;
+        synchronized (this) {
+            t = thread;
+        }
+        if (t != null) {
+            t.join();
+        }
+    }
+
+    /**
+     * Whether a replay started with {@link #start()} is still going
+     */
+    public synchronized boolean isRunning() {
+        return thread != null && thread.isAlive();
+    }
+
+    public long getFramesReplayed() {
+        return framesReplayed;
+    }
+
+    /**
+     * Replay the whole capture on the calling thread
+     *
+     * @return number of frames delivered
+     */
+    public long run() throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            if (in.readInt() != FrameRecorder.MAGIC) {
+                throw new IOException("Not a frame capture: " + file);
+            }
+            int version = in.readInt();
+            if (version != FrameRecorder.VERSION) {
+                throw new IOException("Unsupported capture version " + version + ": " + file);
+            }
+            in.readLong(); // wall-clock start, informational
+
+            List<String> sensors = new ArrayList<>();
+            byte[] buffer = new byte[4096];
+            ByteBuffer frame = ByteBuffer.wrap(buffer);
+            // Timing is relative to the first frame, so idle time before it is skipped
+            long startNanos = 0;
+            long firstMicros = -1;
+            long captureMicros = 0;
+            long count = 0;
+
+            while (!stopped) {
+                int tag = in.read();
+                if (tag == -1) {
+                    break;
+                }
+                if (tag == FrameRecorder.TAG_SENSOR) {
+                    int index = (int) readVarint(in);
+                    String id = in.readUTF();
+                    while (sensors.size() <= index) {
+                        sensors.add(null);
+                    }
+                    sensors.set(index, id.isEmpty() ? null : id);
+                    continue;
+                }
+                if (tag != FrameRecorder.TAG_FRAME) {
+                    throw new IOException("Corrupt capture, unknown record " + tag + ": " + file);
+                }
+
+                captureMicros += readVarint(in);
+                int index = (int) readVarint(in);
+                int length = (int) readVarint(in);
+                if (length < 0 || length > MAX_FRAME_SIZE || index >= sensors.size()) {
+                    throw new IOException("Corrupt capture, bad frame record: " + file);
+                }
+                if (buffer.length < length) {
+                    buffer = new byte[Math.max(length, buffer.length * 2)];
+                    frame = ByteBuffer.wrap(buffer);
+                }
+                try {
+                    in.readFully(buffer, 0, length);
+                } catch (EOFException e) {
+                    Log.w(TAG, "Capture ends mid-frame, stopping: " + file);
+                    break;
+                }
+
+                if (firstMicros < 0) {
+                    firstMicros = captureMicros;
+                    startNanos = System.nanoTime();
+                }
+                if (speed != AS_FAST_AS_POSSIBLE) {
+                    waitUntil(startNanos + (long) ((captureMicros - firstMicros) * 1000 / speed));
+                    if (stopped) {
+                        break;
+                    }
+                }
+                frame.limit(length).position(0);
+                sink.onFrame(sensors.get(index), frame);
+                framesReplayed = ++count;
+            }
+            return count;
+        }
+    }
+
+    private void waitUntil(long deadlineNanos) {
+        long remaining;
+        while (!stopped && (remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,18 @@
+package com.engindearing.omnicot.remoteid;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Destination for raw gyb_detect JSON frames, before any parsing.
+ * Implemented by {@link BluetoothManager} (the live ingest path) and
+ * {@link FrameRecorder}; fed by sensor links and by {@link FrameReplayer}.
+ */
+public interface FrameSink {
+
+    /**
+     * Accept one frame. The buffer is only valid during the call.
+     *
+     * @param sensorId the gyb_detect unit the frame came from
+     */
+    void onFrame(String sensorId, ByteBuffer frame);
+}
@@ -0,0 +1,222 @@
+package com.engindearing.omnicot.remoteid;
+
+/**
+ * Bounded ring buffer between the link reader threads and the ingest worker.
+ * Readers {@link #offer} parsed detections and workers {@link #take} them in
+ * arrival order; the ring never holds more than its capacity, so a stalled
+ * worker costs dropped detections rather than memory.
+ *
+ * <p>What happens when the ring is full is set by the {@link OverflowPolicy}.
+ * Any number of threads may offer and take; with one consumer, detections
+ * come out in the order they went in.
+ *
+ * @param <T> item type
+ */
+public class IngestRing<T> {
+
+    public enum OverflowPolicy {
+        /**
+         * Drop the oldest queued item with the same key as the new one, which
+         * it supersedes; if there is none, drop the oldest item overall
+         */
+        DROP_OLDEST_PER_KEY,
+        /** Drop the new item */
+        DROP_NEWEST,
+        /** Block the producer until there is room */
+        BLOCK
+    }
+
+    /** Identifies items that supersede each other, e.g. by drone UID */
+    public interface KeyExtractor<T> {
+        Object keyOf(T item);
+    }
+
+    private final Object[] items;
+    private final KeyExtractor<T> keyExtractor;
+    private volatile OverflowPolicy policy;
+
+    // Guarded by this
+    private int head = 0;
+    private int size = 0;
+    private boolean closed = false;
+    private long enqueued = 0;
+    private long dropped = 0;
+    private int highWaterMark = 0;
+
+    /**
+     * @param keyExtractor key for {@link OverflowPolicy#DROP_OLDEST_PER_KEY},
+     *                     or null to always drop the oldest item
+     */
+    public IngestRing(int capacity, OverflowPolicy policy, KeyExtractor<T> keyExtractor) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.items = new Object[capacity];
+        this.policy = policy;
+        this.keyExtractor = keyExtractor;
+    }
+
+    public synchronized void setPolicy(OverflowPolicy policy) {
+        this.policy = policy;
+        // Release producers blocked under the old policy
+        notifyAll();
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Add an item, applying the overflow policy if the ring is full. Under
+     * {@link OverflowPolicy#BLOCK} this waits for room; an interrupted wait
+     * gives up on the item and keeps the thread's interrupt status.
+     *
+     * @return false if this item or an older one was dropped, or the ring is closed
+     */
+    public synchronized boolean offer(T item) {
+        if (closed) {
+            return false;
+        }
+        boolean accepted = true;
+        if (size == items.length) {
+            switch (policy) {
+                case DROP_NEWEST:
+                    dropped++;
+                    return false;
+                case BLOCK:
+                    try {
+                        while (size == items.length && !closed && policy == OverflowPolicy.BLOCK) {
+                            wait();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        dropped++;
+                        return false;
+                    }
+                    if (closed) {
+                        return false;
+                    }
+                    if (size == items.length) {
+                        // Policy changed while waiting
+                        return offer(item);
+                    }
+                    break;
+                case DROP_OLDEST_PER_KEY:
+                default:
+                    removeAt(indexOfOldest(keyExtractor != null ? keyExtractor.keyOf(item) : null));
+                    dropped++;
+                    accepted = false;
+                    break;
+            }
+        }
+
+        items[(head + size) % items.length] = item;
+        size++;
+        enqueued++;
+        if (size > highWaterMark) {
+            highWaterMark = size;
+        }
+        notifyAll();
+        return accepted;
+    }
+
+    /**
+     * Remove the oldest item, waiting for one if the ring is empty
+     *
+     * @return the item, or null once the ring is closed and drained
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized T take() throws InterruptedException {
+        while (size == 0) {
+            if (closed) {
+                return null;
+            }
+            wait();
+        }
+        T item = (T) items[head];
+        items[head] = null;
+        head = (head + 1) % items.length;
+        size--;
+        notifyAll();
+        return item;
+    }
+
+    /**
+     * Stop accepting items and wake every waiting producer and consumer.
+     * Consumers still drain what is queued.
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * Discard everything queued
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < size; i++) {
+            items[(head + i) % items.length] = null;
+        }
+        head = 0;
+        size = 0;
+        notifyAll();
+    }
+
+    public int getCapacity() {
+        return items.length;
+    }
+
+    public synchronized int getDepth() {
+        return size;
+    }
+
+    public synchronized long getEnqueuedCount() {
+        return enqueued;
+    }
+
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    /**
+     * Deepest the ring has been since it was created
+     */
+    public synchronized int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * Offset from head of the oldest item with {@code key}, or of the head
+     * itself if none matches
+     */
+    @SuppressWarnings("unchecked")
+    private int indexOfOldest(Object key) {
+        if (key != null) {
+            for (int i = 0; i < size; i++) {
+                if (key.equals(keyExtractor.keyOf((T) items[(head + i) % items.length]))) {
+                    return i;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Remove the item at {@code offset} from head, shifting the older items
+     * up by one so order is kept
+     */
+    private void removeAt(int offset) {
+        for (int i = offset; i > 0; i--) {
+            items[(head + i) % items.length] = items[(head + i - 1) % items.length];
+        }
+        items[head] = null;
+        head = (head + 1) % items.length;
+        size--;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "IngestRing{depth=" + size + "/" + items.length + ", policy=" + policy +
+                ", enqueued=" + enqueued + ", dropped=" + dropped + ", highWater=" + highWaterMark + "}";
+    }
+}
@@ -0,0 +1,163 @@
+package com.engindearing.omnicot.remoteid;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Splits a byte stream into complete top-level JSON objects.
+ * Works directly on a {@link ByteBuffer}: frames that arrive whole are handed
+ * out as views over the caller's buffer, and only frames split across reads are
+ * copied into an internal buffer. Braces inside string literals (including
+ * escaped quotes) do not affect framing.
+ *
+ * <p>Not thread-safe; use one framer per stream.
+ */
+public class JsonFramer {
+
+    /** Frames larger than this are assumed to be garbage and dropped */
+    public static final int DEFAULT_MAX_FRAME_SIZE = 64 * 1024;
+
+    /**
+     * Receives each complete frame. The buffer's position..limit covers exactly
+     * one {@code {...}} object. It is only valid for the duration of the call;
+     * copy the bytes if they are needed afterwards.
+     */
+    public interface FrameHandler {
+        void onFrame(ByteBuffer frame);
+    }
+
+    private final int maxFrameSize;
+
+    // Parser state, carried across feed() calls
+    private boolean inFrame = false;
+    private boolean inString = false;
+    private boolean escaped = false;
+    private int depth = 0;
+
+    // Bytes of a frame that started in an earlier feed() call
+    private byte[] partial = new byte[1024];
+    private int partialLength = 0;
+    private ByteBuffer partialView = ByteBuffer.wrap(partial);
+
+    private long framesEmitted = 0;
+    private long framesDropped = 0;
+
+    public JsonFramer() {
+        this(DEFAULT_MAX_FRAME_SIZE);
+    }
+
+    public JsonFramer(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    /**
+     * Consume all bytes between the input's position and limit, invoking the
+     * handler once per completed frame. On return the input's position equals
+     * its limit.
+     */
+    public void feed(ByteBuffer input, FrameHandler handler) {
+        final int limit = input.limit();
+        int frameStart = inFrame ? input.position() : -1;
+        ByteBuffer view = null;
+
+        for (int i = input.position(); i < limit; i++) {
+            byte b = input.get(i);
+
+            if (!inFrame) {
+                // Skip anything between frames (newlines, noise)
+                if (b == '{') {
+                    inFrame = true;
+                    depth = 1;
+                    frameStart = i;
+                }
+                continue;
+            }
+
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (b == '\\') {
+                    escaped = true;
+                } else if (b == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+
+            if (b == '"') {
+                inString = true;
+            } else if (b == '{') {
+                depth++;
+            } else if (b == '}' && --depth == 0) {
+                inFrame = false;
+                if (partialLength > 0) {
+                    // Frame started in an earlier read; finish it in the side buffer
+                    if (appendPartial(input, frameStart, i + 1)) {
+                        partialView.limit(partialLength).position(0);
+                        emit(partialView, handler);
+                    }
+                    partialLength = 0;
+                } else {
+                    if (view == null) {
+                        view = input.duplicate();
+                    }
+                    view.limit(i + 1).position(frameStart);
+                    emit(view, handler);
+                }
+                frameStart = -1;
+            }
+        }
+
+        if (inFrame && frameStart >= 0) {
+            // Frame continues in the next read; keep what we have so far
+            appendPartial(input, frameStart, limit);
+        }
+
+        input.position(limit);
+    }
+
+    /**
+     * Discard any partially received frame, e.g. after reconnecting
+     */
+    public void reset() {
+        inFrame = false;
+        inString = false;
+        escaped = false;
+        depth = 0;
+        partialLength = 0;
+    }
+
+    public long getFramesEmitted() {
+        return framesEmitted;
+    }
+
+    public long getFramesDropped() {
+        return framesDropped;
+    }
+
+    private void emit(ByteBuffer frame, FrameHandler handler) {
+        framesEmitted++;
+        handler.onFrame(frame);
+    }
+
+    private boolean appendPartial(ByteBuffer input, int from, int to) {
+        int length = to - from;
+        if (partialLength + length > maxFrameSize) {
+            // Oversized or corrupt frame - drop it and resync on the next '{'
+            framesDropped++;
+            reset();
+            return false;
+        }
+        if (partialLength + length > partial.length) {
+            int newSize = Math.min(maxFrameSize, Math.max(partial.length * 2, partialLength + length));
+            byte[] grown = new byte[newSize];
+            System.arraycopy(partial, 0, grown, 0, partialLength);
+            partial = grown;
+            partialView = ByteBuffer.wrap(partial);
+        }
+        ByteBuffer src = input.duplicate();
+        src.limit(to).position(from);
+        src.get(partial, partialLength, length);
+        partialLength += length;
+        return true;
+    }
+}
@@ -0,0 +1,166 @@
+package com.engindearing.omnicot.remoteid;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the style of
+ * HdrHistogram. Values below 64 ns get a bucket each; above that every power of
+ * two is split into 32 linear sub-buckets, so a reported percentile is within
+ * about 3% of the true value. Values above {@link #MAX_TRACKABLE_NANOS} are
+ * clamped.
+ *
+ * <p>{@link #record(long)} is a handful of atomic increments and never
+ * allocates, so it can be called from any thread on the hot path. Snapshots
+ * read the buckets without stopping writers and may be off by the few values
+ * recorded while they were taken.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /** About 68 seconds; anything slower is recorded as this */
+    public static final long MAX_TRACKABLE_NANOS = (1L << 36) - 1;
+
+    private static final int BUCKET_COUNT = bucketIndex(MAX_TRACKABLE_NANOS) + 1;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Record one latency. Negative values are recorded as zero.
+     */
+    public void record(long nanos) {
+        long value = nanos < 0 ? 0 : Math.min(nanos, MAX_TRACKABLE_NANOS);
+        counts.incrementAndGet(bucketIndex(value));
+        totalCount.incrementAndGet();
+        totalNanos.addAndGet(value);
+        long max;
+        while (value > (max = maxNanos.get())) {
+            if (maxNanos.compareAndSet(max, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Record the time elapsed since {@code startNanos} on the
+     * {@link System#nanoTime()} clock
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        long max = maxNanos.get();
+        long mean = count > 0 ? totalNanos.get() / count : 0;
+        return new Snapshot(name, count, mean, max,
+                valueAt(copy, count, 0.50, max),
+                valueAt(copy, count, 0.95, max),
+                valueAt(copy, count, 0.99, max));
+    }
+
+    /**
+     * Upper bound of the bucket holding the given quantile, capped at the
+     * largest value seen
+     */
+    private static long valueAt(long[] buckets, long count, double quantile, long max) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(highestEquivalentValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    static int bucketIndex(long value) {
+        int msb = 63 - Long.numberOfLeadingZeros(value | 1);
+        int shift = Math.max(0, msb - SUB_BUCKET_BITS);
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    static long highestEquivalentValue(int index) {
+        int shift = Math.max(0, (index >> SUB_BUCKET_BITS) - 1);
+        long mantissa = index - ((long) shift << SUB_BUCKET_BITS);
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * Percentiles of a histogram at one point in time, in nanoseconds
+     */
+    public static class Snapshot {
+        private final String name;
+        private final long count;
+        private final long mean;
+        private final long max;
+        private final long p50;
+        private final long p95;
+        private final long p99;
+
+        Snapshot(String name, long count, long mean, long max, long p50, long p95, long p99) {
+            this.name = name;
+            this.count = count;
+            this.mean = mean;
+            this.max = max;
+            this.p50 = p50;
+            this.p95 = p95;
+            this.p99 = p99;
+        }
+
+        public String getName() { return name; }
+        public long getCount() { return count; }
+        public long getMeanNanos() { return mean; }
+        public long getMaxNanos() { return max; }
+        public long getP50Nanos() { return p50; }
+        public long getP95Nanos() { return p95; }
+        public long getP99Nanos() { return p99; }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: n=%d p50=%.1fms p95=%.1fms p99=%.1fms max=%.1fms",
+                    name, count, millis(p50), millis(p95), millis(p99), millis(max));
+        }
+
+        private static double millis(long nanos) {
+            return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+}
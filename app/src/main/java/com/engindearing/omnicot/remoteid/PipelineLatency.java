@@ -0,0 +1,100 @@
+package com.engindearing.omnicot.remoteid;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Where the time goes between a gyb_detect frame and the drone marker
+ * moving. Every detection carries the monotonic time its frame was complete
+ * ({@link RemoteIdData#getFrameNanos()}); each later stage records the time
+ * elapsed since then, so a stage's percentiles are cumulative and the gap
+ * between consecutive stages is the cost of that step.
+ *
+ * <p>One instance is shared by the Bluetooth ingest path, the receiver and its
+ * dispatch lanes. Recording never allocates.
+ */
+public class PipelineLatency {
+
+    public enum Stage {
+        /** Parsed on the link's reader thread, before it is queued */
+        PARSED("parsed"),
+        /** Taken off the ingest queue by the ingest worker; the gap from PARSED is time queued */
+        DEQUEUED("dequeued"),
+        /** Converted to CoT, after fusion and coalescing */
+        CONVERTED("converted"),
+        /** Handed to the local map by the local lane */
+        LOCAL_DISPATCHED("local"),
+        /** Handed to TAK servers by the federation lane */
+        EXTERNAL_DISPATCHED("external");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final PipelineLatency INSTANCE = new PipelineLatency();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+
+    public PipelineLatency() {
+        for (Stage stage : Stage.values()) {
+            histograms[stage.ordinal()] = new LatencyHistogram(stage.getLabel());
+        }
+    }
+
+    public static PipelineLatency getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Record that a detection whose frame was complete at {@code frameNanos}
+     * reached {@code stage} now. Detections without a frame time, such as
+     * predicted positions, are ignored.
+     */
+    public void record(Stage stage, long frameNanos) {
+        if (frameNanos != 0) {
+            histograms[stage.ordinal()].recordSince(frameNanos);
+        }
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    /**
+     * Percentiles of every stage, in pipeline order
+     */
+    public List<LatencyHistogram.Snapshot> snapshot() {
+        List<LatencyHistogram.Snapshot> snapshots = new ArrayList<>(histograms.length);
+        for (LatencyHistogram histogram : histograms) {
+            snapshots.add(histogram.snapshot());
+        }
+        return snapshots;
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * One line per stage, for logs and the dashboard
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        for (LatencyHistogram.Snapshot snapshot : snapshot()) {
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            sb.append(snapshot);
+        }
+        return sb.toString();
+    }
+}
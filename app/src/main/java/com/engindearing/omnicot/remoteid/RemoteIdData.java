@@ -1,11 +1,39 @@
 package com.engindearing.omnicot.remoteid;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Data model representing a Remote ID detection from the gyb_detect device.
  * Corresponds to the JSON format sent by the ESP32 device.
  */
 public class RemoteIdData {
 
+    /**
+     * One receiver/radio pair that heard a fused detection
+     */
+    public static final class ReceptionPath {
+        private final String sensorId;
+        private final int recvMethod;
+        private final int rssi;
+
+        public ReceptionPath(String sensorId, int recvMethod, int rssi) {
+            this.sensorId = sensorId;
+            this.recvMethod = recvMethod;
+            this.rssi = rssi;
+        }
+
+        public String getSensorId() { return sensorId; }
+        public int getRecvMethod() { return recvMethod; }
+        public int getRssi() { return rssi; }
+
+        /** Whether this path is the given sensor and radio */
+        public boolean samePath(String sensorId, int recvMethod) {
+            return this.recvMethod == recvMethod
+                    && (this.sensorId == null ? sensorId == null : this.sensorId.equals(sensorId));
+        }
+    }
+
     // Device identification
     private String uasId;           // MAC address of the drone
     private String remoteId;        // Operator ID
@@ -18,6 +46,13 @@ public class RemoteIdData {
     private int rssi;               // Signal strength
     private int recvMethod;         // 1=WiFi Beacon, 2=WiFi NaN, 16=Bluetooth
     private long timestamp;         // Detection timestamp
+    private String sensorId;        // gyb_detect unit that heard it (its Bluetooth address)
+    private List<ReceptionPath> receptionPaths = Collections.emptyList(); // Set by DetectionFusion
+
+    // Pipeline timing on the System.nanoTime() clock; 0 when not measured
+    private long frameNanos;        // Frame read completely from the link
+    private long parsedNanos;       // Parsed on the link's reader thread
+    private long convertedNanos;    // Converted to CoT
 
     // Drone type and status
     private int uasType;            // UAV type (0-15)
@@ -80,6 +115,31 @@ public class RemoteIdData {
     public long getTimestamp() { return timestamp; }
     public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
 
+    public String getSensorId() { return sensorId; }
+    public void setSensorId(String sensorId) { this.sensorId = sensorId; }
+
+    /**
+     * Monotonic time the frame carrying this detection was complete; see
+     * {@link PipelineLatency}
+     */
+    public long getFrameNanos() { return frameNanos; }
+    public void setFrameNanos(long frameNanos) { this.frameNanos = frameNanos; }
+
+    public long getParsedNanos() { return parsedNanos; }
+    public void setParsedNanos(long parsedNanos) { this.parsedNanos = parsedNanos; }
+
+    public long getConvertedNanos() { return convertedNanos; }
+    public void setConvertedNanos(long convertedNanos) { this.convertedNanos = convertedNanos; }
+
+    /**
+     * Every path this detection was heard on, when it is the product of
+     * {@link DetectionFusion}; otherwise empty.
+     */
+    public List<ReceptionPath> getReceptionPaths() { return receptionPaths; }
+    public void setReceptionPaths(List<ReceptionPath> receptionPaths) {
+        this.receptionPaths = receptionPaths != null ? receptionPaths : Collections.<ReceptionPath>emptyList();
+    }
+
     public int getUasType() { return uasType; }
     public void setUasType(int uasType) { this.uasType = uasType; }
 
@@ -198,6 +258,7 @@ public class RemoteIdData {
                 ", speed=" + uasHSpeed +
                 ", recvMethod=" + getRecvMethodString() +
                 ", rssi=" + rssi +
+                ", sensor=" + sensorId +
                 '}';
     }
 }
@@ -4,6 +4,9 @@ import android.util.Log;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 /**
  * Parser for JSON data received from the gyb_detect device.
  * Handles device info, battery status, and drone detection messages.
@@ -12,6 +15,15 @@ public class RemoteIdParser {
 
     private static final String TAG = "RemoteIdParser";
 
+    // Streaming parser for detection frames, one per thread (it keeps scratch state)
+    private static final ThreadLocal<RemoteIdStreamParser> STREAM_PARSER =
+            new ThreadLocal<RemoteIdStreamParser>() {
+                @Override
+                protected RemoteIdStreamParser initialValue() {
+                    return new RemoteIdStreamParser();
+                }
+            };
+
     /**
      * Device information from gyb_detect
      */
@@ -74,6 +86,31 @@ public class RemoteIdParser {
         }
     }
 
+    /**
+     * Parses a complete JSON frame as handed out by {@link JsonFramer}.
+     * Reads the bytes between the buffer's position and limit without
+     * changing either. Detection frames are parsed straight from the bytes by
+     * {@link RemoteIdStreamParser}; everything else goes through org.json.
+     */
+    public static Object parseMessage(ByteBuffer frame) {
+        RemoteIdData data = STREAM_PARSER.get().parse(frame);
+        if (data != null) {
+            return data;
+        }
+        return parseMessage(decodeFrame(frame));
+    }
+
+    /**
+     * Decode a frame's UTF-8 bytes, e.g. for logging
+     */
+    public static String decodeFrame(ByteBuffer frame) {
+        if (frame.hasArray()) {
+            return new String(frame.array(), frame.arrayOffset() + frame.position(),
+                    frame.remaining(), StandardCharsets.UTF_8);
+        }
+        return StandardCharsets.UTF_8.decode(frame.duplicate()).toString();
+    }
+
     /**
      * Parses device information JSON
      */
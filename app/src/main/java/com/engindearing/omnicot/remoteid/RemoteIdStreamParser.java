@@ -0,0 +1,707 @@
+package com.engindearing.omnicot.remoteid;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Single-pass parser that fills a {@link RemoteIdData} straight from the bytes
+ * of a gyb_detect detection frame, without building an org.json tree.
+ *
+ * <p>Keys are matched against a precomputed perfect hash table on their raw
+ * bytes and dispatched to setters by field id; numbers are converted from the
+ * digits in place. The only allocations on the fast path are the
+ * RemoteIdData itself and the String values it holds.
+ *
+ * <p>The result always matches {@link RemoteIdParser#parseRemoteIdData}. Any
+ * frame whose meaning could differ between the two paths - device info or
+ * battery messages, non-strict JSON, duplicate keys, values of an unexpected
+ * type - makes {@link #parse} return {@code null} so the caller can use the
+ * org.json path instead.
+ *
+ * <p>Not thread-safe; {@link RemoteIdParser} keeps one instance per thread.
+ */
+public final class RemoteIdStreamParser {
+
+    // Field ids
+    private static final int F_UAS_ID = 0;
+    private static final int F_REMOTE_ID = 1;
+    private static final int F_SERIAL_NUMBER = 2;
+    private static final int F_CAA_REG_ID = 3;
+    private static final int F_DESCRIPTION = 4;
+    private static final int F_OP_ID = 5;
+    private static final int F_UTM_ID = 6;
+    private static final int F_RSSI = 7;
+    private static final int F_RECV_METHOD = 8;
+    private static final int F_UAS_TYPE = 9;
+    private static final int F_SESSION_ID = 10;
+    private static final int F_OP_STATUS = 11;
+    private static final int F_OP_LOCATION_TYPE = 12;
+    private static final int F_UAS_LAT = 13;
+    private static final int F_UAS_LON = 14;
+    private static final int F_OP_LAT = 15;
+    private static final int F_OP_LON = 16;
+    private static final int F_UAS_HEADING = 17;
+    private static final int F_UAS_H_SPEED = 18;
+    private static final int F_UAS_H_SPEED_ERROR = 19;
+    private static final int F_UAS_V_SPEED = 20;
+    private static final int F_UAS_V_SPEED_ERROR = 21;
+    private static final int F_UAS_HAE = 22;
+    private static final int F_UAS_HAG = 23;
+    private static final int F_UAS_HAT = 24;
+    private static final int F_UAS_HORIZONTAL_ERROR = 25;
+    private static final int F_UAS_VERTICAL_ERROR = 26;
+    private static final int F_UAS_BARO_PRESSURE = 27;
+    private static final int F_UAS_BARO_PRESSURE_ACC = 28;
+    private static final int F_OP_HAE = 29;
+    // Keys that mark a non-detection message
+    private static final int F_MANUFACTURER = 30;
+    private static final int F_BATTERY_LEVEL = 31;
+
+    private static final String[] FIELD_NAMES = {
+            "uasId", "remoteId", "serialNumber", "caaRegId", "description", "opId", "utmId",
+            "rssi", "recvMethod", "uasType", "sessionId", "opStatus", "opLocationType",
+            "uasLat", "uasLon", "opLat", "opLon",
+            "uasHeading", "uasHSpeed", "uasHSpeedError", "uasVSpeed", "uasVSpeedError",
+            "uasHae", "uasHag", "uasHat", "uasHorizontalError", "uasVerticalError",
+            "uasBaroPressure", "uasBaroPressureAcc", "opHae",
+            "manufacturer", "batteryLevel"
+    };
+
+    // Value kinds, by field id range (anything else is a double or float field)
+    private static boolean isStringField(int id) { return id <= F_UTM_ID; }
+    private static boolean isIntField(int id) { return id >= F_RSSI && id <= F_OP_LOCATION_TYPE; }
+    private static boolean isFloatField(int id) { return id >= F_UAS_HEADING && id <= F_OP_HAE; }
+
+    // Perfect hash over FIELD_NAMES: slot = hash & tableMask, no collisions
+    private static final byte[][] TABLE_KEYS;
+    private static final int[] TABLE_IDS;
+    private static final int TABLE_MASK;
+
+    static {
+        int size = 64;
+        int[] ids = null;
+        while (ids == null) {
+            ids = new int[size];
+            Arrays.fill(ids, -1);
+            for (int id = 0; id < FIELD_NAMES.length; id++) {
+                int slot = hash(FIELD_NAMES[id]) & (size - 1);
+                if (ids[slot] != -1) {
+                    ids = null;
+                    size <<= 1;
+                    break;
+                }
+                ids[slot] = id;
+            }
+        }
+        TABLE_IDS = ids;
+        TABLE_MASK = size - 1;
+        TABLE_KEYS = new byte[size][];
+        for (int slot = 0; slot < size; slot++) {
+            if (ids[slot] != -1) {
+                TABLE_KEYS[slot] = FIELD_NAMES[ids[slot]].getBytes(StandardCharsets.US_ASCII);
+            }
+        }
+    }
+
+    private static int hash(String key) {
+        int h = 0;
+        for (int i = 0; i < key.length(); i++) {
+            h = 31 * h + key.charAt(i);
+        }
+        return h;
+    }
+
+    private static final double[] DOUBLE_POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final float[] FLOAT_POW10 = {
+            1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+    private static final long MAX_EXACT_DOUBLE_MANTISSA = 1L << 53;
+    private static final long MAX_EXACT_FLOAT_MANTISSA = 1L << 24;
+
+    /** Thrown internally to abandon the fast path; never escapes parse() */
+    private static final class Bail extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        Bail() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final Bail BAIL = new Bail();
+
+    // Current frame
+    private ByteBuffer buf;
+    private int pos;
+    private int limit;
+
+    // Last scanned string token: raw bytes [strStart, strEnd), escapes present?
+    private int strStart;
+    private int strEnd;
+    private boolean strEscaped;
+
+    // Last scanned number token
+    private boolean numNegative;
+    private long numMantissa;
+    private int numExponent;
+    private boolean numIntegral;
+    private boolean numExact;       // mantissa held all significant digits
+    private int numStart;
+    private int numEnd;
+
+    private final StringBuilder scratch = new StringBuilder(64);
+
+    /**
+     * Parse a detection frame. The buffer's position and limit are not changed.
+     *
+     * @return the detection, or {@code null} if the frame must go through the
+     *         org.json path instead (not a detection message, or any construct
+     *         this parser does not handle identically)
+     */
+    public RemoteIdData parse(ByteBuffer frame) {
+        buf = frame;
+        pos = frame.position();
+        limit = frame.limit();
+        try {
+            return parseObject();
+        } catch (Bail e) {
+            return null;
+        } finally {
+            buf = null;
+        }
+    }
+
+    private RemoteIdData parseObject() throws Bail {
+        RemoteIdData data = new RemoteIdData();
+        // Same defaults as RemoteIdParser.parseRemoteIdData for absent keys
+        data.setUasId("");
+        data.setRemoteId("");
+        data.setSerialNumber("");
+        data.setCaaRegId("");
+        data.setDescription("");
+        data.setOpId("");
+        data.setUtmId("");
+
+        int seen = 0;
+
+        skipWhitespace();
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            throw BAIL; // empty object is not a detection
+        }
+
+        while (true) {
+            skipWhitespace();
+            expect('"');
+            scanString();
+            if (strEscaped) {
+                throw BAIL;
+            }
+            int field = lookupField(strStart, strEnd);
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+
+            if (field < 0) {
+                skipValue(0);
+            } else {
+                int bit = 1 << field;
+                if ((seen & bit) != 0) {
+                    throw BAIL; // duplicate key handling differs between org.json builds
+                }
+                seen |= bit;
+                readField(field, data);
+            }
+
+            skipWhitespace();
+            byte b = next();
+            if (b == '}') {
+                break;
+            }
+            if (b != ',') {
+                throw BAIL;
+            }
+        }
+
+        skipWhitespace();
+        if (pos != limit) {
+            throw BAIL;
+        }
+
+        if ((seen & ((1 << F_MANUFACTURER) | (1 << F_BATTERY_LEVEL))) != 0) {
+            throw BAIL; // device info / battery status
+        }
+        if ((seen & ((1 << F_UAS_ID) | (1 << F_REMOTE_ID))) == 0) {
+            throw BAIL; // unknown message type
+        }
+        return data;
+    }
+
+    private void readField(int field, RemoteIdData data) throws Bail {
+        byte b = peek();
+
+        if (field == F_MANUFACTURER || field == F_BATTERY_LEVEL) {
+            skipValue(0);
+            return;
+        }
+
+        if (isStringField(field)) {
+            // optString: only plain string values are handled here
+            if (b != '"') {
+                throw BAIL;
+            }
+            pos++;
+            scanString();
+            setString(field, data, decodeString());
+            return;
+        }
+
+        if (isIntField(field)) {
+            setInt(field, data, readIntValue(b));
+            return;
+        }
+
+        // Double / float fields: optString() then parse, 0 on failure
+        if (b == '"') {
+            pos++;
+            scanString();
+            if (strEscaped) {
+                throw BAIL;
+            }
+            if (strStart == strEnd) {
+                return; // empty string -> 0
+            }
+            int savedPos = pos;
+            pos = strStart;
+            boolean isNumber = tryScanNumber(strEnd) && pos == strEnd;
+            pos = savedPos;
+            if (isFloatField(field)) {
+                setFloat(field, data, isNumber ? toFloat(true) : parseFloatSlow(strStart, strEnd));
+            } else {
+                setDouble(field, data, isNumber ? toDouble(true) : parseDoubleSlow(strStart, strEnd));
+            }
+        } else if (b == '-' || (b >= '0' && b <= '9')) {
+            if (!tryScanNumber(limit)) {
+                throw BAIL;
+            }
+            if (isFloatField(field)) {
+                setFloat(field, data, toFloat(false));
+            } else {
+                setDouble(field, data, toDouble(false));
+            }
+        } else if (b == 'n' || b == 't' || b == 'f') {
+            // null / true / false do not parse as numbers -> 0
+            skipLiteral();
+        } else {
+            throw BAIL;
+        }
+    }
+
+    private int readIntValue(byte b) throws Bail {
+        // optInt: int literals and small decimals truncate the same way in every org.json
+        if (b != '-' && (b < '0' || b > '9')) {
+            throw BAIL;
+        }
+        if (!tryScanNumber(limit)) {
+            throw BAIL;
+        }
+        if (numIntegral && numExact && numMantissa <= Integer.MAX_VALUE) {
+            return (int) (numNegative ? -numMantissa : numMantissa);
+        }
+        double d = toDouble(false);
+        if (Math.abs(d) >= Integer.MAX_VALUE) {
+            throw BAIL;
+        }
+        return (int) d;
+    }
+
+    // ---------------------------------------------------------------- tokens
+
+    private byte peek() throws Bail {
+        if (pos >= limit) {
+            throw BAIL;
+        }
+        return buf.get(pos);
+    }
+
+    private byte next() throws Bail {
+        if (pos >= limit) {
+            throw BAIL;
+        }
+        return buf.get(pos++);
+    }
+
+    private void expect(char c) throws Bail {
+        if (next() != c) {
+            throw BAIL;
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < limit) {
+            byte b = buf.get(pos);
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    /**
+     * Scan a string body; pos is just past the opening quote. Leaves pos just
+     * past the closing quote and records the raw span.
+     */
+    private void scanString() throws Bail {
+        strStart = pos;
+        strEscaped = false;
+        while (true) {
+            byte b = next();
+            if (b == '"') {
+                strEnd = pos - 1;
+                return;
+            }
+            if (b == '\\') {
+                strEscaped = true;
+                byte e = next();
+                if (e == 'u') {
+                    for (int i = 0; i < 4; i++) {
+                        if (Character.digit(next(), 16) < 0) {
+                            throw BAIL;
+                        }
+                    }
+                } else if (e != '"' && e != '\\' && e != '/' && e != 'b'
+                        && e != 'f' && e != 'n' && e != 'r' && e != 't') {
+                    throw BAIL;
+                }
+            } else if (b >= 0 && b < 0x20) {
+                throw BAIL; // raw control characters are not strict JSON
+            }
+        }
+    }
+
+    private String decodeString() {
+        String raw = decodeUtf8(strStart, strEnd);
+        if (!strEscaped) {
+            return raw;
+        }
+        StringBuilder sb = scratch;
+        sb.setLength(0);
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            char e = raw.charAt(++i);
+            switch (e) {
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    sb.append((char) Integer.parseInt(raw.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    break;
+                default: sb.append(e); break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private String decodeUtf8(int from, int to) {
+        if (buf.hasArray()) {
+            return new String(buf.array(), buf.arrayOffset() + from, to - from, StandardCharsets.UTF_8);
+        }
+        ByteBuffer slice = buf.duplicate();
+        slice.limit(to).position(from);
+        return StandardCharsets.UTF_8.decode(slice).toString();
+    }
+
+    /**
+     * Scan a strict JSON number starting at pos, not reading past end.
+     * On success pos is just past the number and the num* fields are set.
+     */
+    private boolean tryScanNumber(int end) {
+        int p = pos;
+        numStart = p;
+        numNegative = false;
+        numMantissa = 0;
+        numExponent = 0;
+        numIntegral = true;
+        numExact = true;
+
+        if (p < end && buf.get(p) == '-') {
+            numNegative = true;
+            p++;
+        }
+        if (p >= end) {
+            return false;
+        }
+
+        // Integer part: 0 | [1-9][0-9]*
+        byte b = buf.get(p);
+        if (b == '0') {
+            p++;
+        } else if (b >= '1' && b <= '9') {
+            while (p < end && (b = buf.get(p)) >= '0' && b <= '9') {
+                accumulateDigit(b - '0', false);
+                p++;
+            }
+        } else {
+            return false;
+        }
+
+        // Fraction
+        if (p < end && buf.get(p) == '.') {
+            numIntegral = false;
+            p++;
+            int digits = 0;
+            while (p < end && (b = buf.get(p)) >= '0' && b <= '9') {
+                accumulateDigit(b - '0', true);
+                p++;
+                digits++;
+            }
+            if (digits == 0) {
+                return false;
+            }
+        }
+
+        // Exponent
+        if (p < end && ((b = buf.get(p)) == 'e' || b == 'E')) {
+            numIntegral = false;
+            p++;
+            boolean expNegative = false;
+            if (p < end && ((b = buf.get(p)) == '+' || b == '-')) {
+                expNegative = b == '-';
+                p++;
+            }
+            int exp = 0;
+            int digits = 0;
+            while (p < end && (b = buf.get(p)) >= '0' && b <= '9') {
+                if (exp < 100000) {
+                    exp = exp * 10 + (b - '0');
+                }
+                p++;
+                digits++;
+            }
+            if (digits == 0) {
+                return false;
+            }
+            numExponent += expNegative ? -exp : exp;
+        }
+
+        pos = p;
+        numEnd = p;
+        return true;
+    }
+
+    private void accumulateDigit(int digit, boolean fraction) {
+        if (numMantissa < (Long.MAX_VALUE - 9) / 10) {
+            numMantissa = numMantissa * 10 + digit;
+            if (fraction) {
+                numExponent--;
+            }
+        } else {
+            // Out of long range; keep magnitude, fall back to exact parsing later
+            numExact = false;
+            if (!fraction) {
+                numExponent++;
+            }
+        }
+    }
+
+    /**
+     * @param fromString whether the digits came from a quoted string, which
+     *                   Double.parseDouble sees verbatim
+     */
+    private double toDouble(boolean fromString) {
+        if (!fromString && numIntegral && numMantissa == 0) {
+            return 0.0; // org.json reads "-0" as the integer 0, not -0.0
+        }
+        if (numExact && numMantissa <= MAX_EXACT_DOUBLE_MANTISSA) {
+            double m = numMantissa;
+            double d;
+            if (numExponent == 0) {
+                d = m;
+            } else if (numExponent > 0 && numExponent <= 22) {
+                d = m * DOUBLE_POW10[numExponent];
+            } else if (numExponent < 0 && numExponent >= -22) {
+                d = m / DOUBLE_POW10[-numExponent];
+            } else {
+                return parseDoubleSlow(numStart, numEnd);
+            }
+            return numNegative ? -d : d;
+        }
+        return parseDoubleSlow(numStart, numEnd);
+    }
+
+    /**
+     * @param fromString whether the digits came from a quoted string, which
+     *                   Float.parseFloat sees verbatim
+     */
+    private float toFloat(boolean fromString) throws Bail {
+        if (!fromString && numIntegral && numMantissa == 0) {
+            return 0.0f;
+        }
+        if (numExact && numMantissa <= MAX_EXACT_FLOAT_MANTISSA
+                && numExponent >= -10 && numExponent <= 10) {
+            float m = numMantissa;
+            float f = numExponent >= 0 ? m * FLOAT_POW10[numExponent] : m / FLOAT_POW10[-numExponent];
+            return numNegative ? -f : f;
+        }
+        if (fromString) {
+            return parseFloatSlow(numStart, numEnd);
+        }
+        // A bare number reaches Float.parseFloat via org.json's own number
+        // rendering, which is not the same text for long mantissas
+        throw BAIL;
+    }
+
+    private double parseDoubleSlow(int from, int to) {
+        try {
+            return Double.parseDouble(decodeUtf8(from, to));
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+
+    private float parseFloatSlow(int from, int to) {
+        try {
+            return Float.parseFloat(decodeUtf8(from, to));
+        } catch (NumberFormatException e) {
+            return 0.0f;
+        }
+    }
+
+    private void skipLiteral() throws Bail {
+        byte b = peek();
+        String literal = b == 'n' ? "null" : b == 't' ? "true" : "false";
+        for (int i = 0; i < literal.length(); i++) {
+            if (next() != literal.charAt(i)) {
+                throw BAIL;
+            }
+        }
+    }
+
+    /**
+     * Skip any strict JSON value (used for keys we don't map)
+     */
+    private void skipValue(int depth) throws Bail {
+        if (depth > 32) {
+            throw BAIL;
+        }
+        byte b = peek();
+        if (b == '"') {
+            pos++;
+            scanString();
+        } else if (b == '{' || b == '[') {
+            byte close = b == '{' ? (byte) '}' : (byte) ']';
+            pos++;
+            skipWhitespace();
+            if (peek() == close) {
+                pos++;
+                return;
+            }
+            while (true) {
+                skipWhitespace();
+                if (b == '{') {
+                    expect('"');
+                    scanString();
+                    skipWhitespace();
+                    expect(':');
+                    skipWhitespace();
+                }
+                skipValue(depth + 1);
+                skipWhitespace();
+                byte sep = next();
+                if (sep == close) {
+                    return;
+                }
+                if (sep != ',') {
+                    throw BAIL;
+                }
+            }
+        } else if (b == '-' || (b >= '0' && b <= '9')) {
+            if (!tryScanNumber(limit)) {
+                throw BAIL;
+            }
+        } else {
+            skipLiteral();
+        }
+    }
+
+    private int lookupField(int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + buf.get(i);
+        }
+        int slot = h & TABLE_MASK;
+        byte[] key = TABLE_KEYS[slot];
+        if (key == null || key.length != to - from) {
+            return -1;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != buf.get(from + i)) {
+                return -1;
+            }
+        }
+        return TABLE_IDS[slot];
+    }
+
+    // --------------------------------------------------------------- setters
+
+    private static void setString(int field, RemoteIdData data, String value) {
+        switch (field) {
+            case F_UAS_ID: data.setUasId(value); break;
+            case F_REMOTE_ID: data.setRemoteId(value); break;
+            case F_SERIAL_NUMBER: data.setSerialNumber(value); break;
+            case F_CAA_REG_ID: data.setCaaRegId(value); break;
+            case F_DESCRIPTION: data.setDescription(value); break;
+            case F_OP_ID: data.setOpId(value); break;
+            case F_UTM_ID: data.setUtmId(value); break;
+        }
+    }
+
+    private static void setInt(int field, RemoteIdData data, int value) {
+        switch (field) {
+            case F_RSSI: data.setRssi(value); break;
+            case F_RECV_METHOD: data.setRecvMethod(value); break;
+            case F_UAS_TYPE: data.setUasType(value); break;
+            case F_SESSION_ID: data.setSessionId(value); break;
+            case F_OP_STATUS: data.setOpStatus(value); break;
+            case F_OP_LOCATION_TYPE: data.setOpLocationType(value); break;
+        }
+    }
+
+    private static void setDouble(int field, RemoteIdData data, double value) {
+        switch (field) {
+            case F_UAS_LAT: data.setUasLat(value); break;
+            case F_UAS_LON: data.setUasLon(value); break;
+            case F_OP_LAT: data.setOpLat(value); break;
+            case F_OP_LON: data.setOpLon(value); break;
+        }
+    }
+
+    private static void setFloat(int field, RemoteIdData data, float value) {
+        switch (field) {
+            case F_UAS_HEADING: data.setUasHeading(value); break;
+            case F_UAS_H_SPEED: data.setUasHSpeed(value); break;
+            case F_UAS_H_SPEED_ERROR: data.setUasHSpeedError(value); break;
+            case F_UAS_V_SPEED: data.setUasVSpeed(value); break;
+            case F_UAS_V_SPEED_ERROR: data.setUasVSpeedError(value); break;
+            case F_UAS_HAE: data.setUasHae(value); break;
+            case F_UAS_HAG: data.setUasHag(value); break;
+            case F_UAS_HAT: data.setUasHat(value); break;
+            case F_UAS_HORIZONTAL_ERROR: data.setUasHorizontalError(value); break;
+            case F_UAS_VERTICAL_ERROR: data.setUasVerticalError(value); break;
+            case F_UAS_BARO_PRESSURE: data.setUasBaroPressure(value); break;
+            case F_UAS_BARO_PRESSURE_ACC: data.setUasBaroPressureAcc(value); break;
+            case F_OP_HAE: data.setOpHae(value); break;
+        }
+    }
+}
@@ -7,7 +7,9 @@ import com.atakmap.coremap.maps.coords.GeoPoint;
 import com.atakmap.coremap.maps.time.CoordinatedTime;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Converts Remote ID drone detections to CoT (Cursor on Target) events for display in ATAK.
@@ -27,6 +29,135 @@ public class RemoteIdToCotConverter {
     // Operator/pilot marker: unknown ground. ATAK maps a-u-G to a default ground icon.
     private static final String COT_TYPE_OPERATOR_UNKNOWN = "a-u-G";
 
+    // Operator markers move little; only re-send when moved at least this far
+    // or when the last one is this old (stale time is 120 s)
+    public static final double DEFAULT_OPERATOR_MOVE_THRESHOLD_METERS = 10.0;
+    private static final long OPERATOR_REFRESH_MS = 60 * 1000;
+    private static final double METERS_PER_DEGREE = 111_320.0;
+    private static volatile double operatorMoveThresholdMeters = DEFAULT_OPERATOR_MOVE_THRESHOLD_METERS;
+
+    // Per-drone templates, least recently used evicted past this many.
+    // Access-ordered, so reads modify it too; guarded by itself.
+    private static final int MAX_TEMPLATES = 2048;
+    private static final Map<String, Template> TEMPLATES =
+            new LinkedHashMap<String, Template>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Template> eldest) {
+                    return size() > MAX_TEMPLATES;
+                }
+            };
+
+    /**
+     * Strings derived from a drone's identity fields, which rarely change
+     * between updates. Built once per drone and rebuilt only if one of those
+     * fields changes, so an update only formats the fields that move (point,
+     * track, rssi, speeds, timestamp). The CoT nodes themselves are still
+     * created per event, since dispatched events are read asynchronously.
+     *
+     * <p>Also remembers what was last emitted for the drone, guarded by the
+     * template's monitor: the remarks text with the values it was built from,
+     * and where and when the operator marker was last sent.
+     */
+    private static final class Template {
+        // Identity the template was built from
+        final String serialNumber;
+        final String uasId;
+        final String remoteId;
+        final String opId;
+        final String description;
+        final String caaRegId;
+        final String utmId;
+        final int uasType;
+        final int sessionId;
+
+        final String droneUid;
+        final String operatorUid;
+        final String callsign;
+        final String operatorCallsign;
+        final String uasTypeString;
+        final String sessionIdString;
+
+        // Last drone remarks and the (quantized) values they show
+        String remarks;
+        long remarksHae;
+        long remarksHag;
+        long remarksHSpeed;
+        long remarksVSpeed;
+        long remarksHeading;
+        long remarksOpLat;
+        long remarksOpLon;
+        int remarksRssi;
+        int remarksRecvMethod;
+        boolean remarksShowVSpeed;
+        boolean remarksShowOperator;
+
+        // Last operator marker sent
+        boolean operatorSent;
+        long operatorSentAtMs;
+        double operatorLat;
+        double operatorLon;
+        int operatorLocType;
+        boolean operatorDroneValid;
+
+        Template(RemoteIdData data, String uniqueId) {
+            serialNumber = data.getSerialNumber();
+            uasId = data.getUasId();
+            remoteId = data.getRemoteId();
+            opId = data.getOpId();
+            description = data.getDescription();
+            caaRegId = data.getCaaRegId();
+            utmId = data.getUtmId();
+            uasType = data.getUasType();
+            sessionId = data.getSessionId();
+
+            droneUid = "DRONE-" + uniqueId;
+            operatorUid = "RID-OP-" + uniqueId;
+            callsign = generateCallsign(data);
+            operatorCallsign = generateOperatorCallsign(data);
+            uasTypeString = String.valueOf(uasType);
+            sessionIdString = sessionId > 0 ? String.valueOf(sessionId) : null;
+        }
+
+        boolean matches(RemoteIdData data) {
+            return uasType == data.getUasType()
+                    && sessionId == data.getSessionId()
+                    && equal(serialNumber, data.getSerialNumber())
+                    && equal(uasId, data.getUasId())
+                    && equal(remoteId, data.getRemoteId())
+                    && equal(opId, data.getOpId())
+                    && equal(description, data.getDescription())
+                    && equal(caaRegId, data.getCaaRegId())
+                    && equal(utmId, data.getUtmId());
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    /**
+     * Get the template for a drone, building or rebuilding it if needed
+     */
+    private static Template templateFor(RemoteIdData data) {
+        String uniqueId = data.getUniqueId();
+        if (uniqueId.startsWith("UNKNOWN-")) {
+            // No stable identity; the id differs every time so don't cache it
+            return new Template(data, uniqueId);
+        }
+        Template template;
+        synchronized (TEMPLATES) {
+            template = TEMPLATES.get(uniqueId);
+        }
+        if (template == null || !template.matches(data)) {
+            // Built outside the lock; a racing build for the same drone is harmless
+            template = new Template(data, uniqueId);
+            synchronized (TEMPLATES) {
+                TEMPLATES.put(uniqueId, template);
+            }
+        }
+        return template;
+    }
+
     /**
      * Convert a Remote ID detection to all relevant CoT events.
      *
@@ -39,25 +170,51 @@ public class RemoteIdToCotConverter {
      * System message still carries the operator location, so the pilot marker keeps a detection
      * visible in ATAK even when the drone itself has no fix yet.
      *
+     * <p>The operator marker is only included when the operator has moved at
+     * least {@link #DEFAULT_OPERATOR_MOVE_THRESHOLD_METERS} (configurable) since
+     * it was last sent, or the last one is about to go stale, so the result can
+     * be empty even for a detection with a usable location.
+     *
      * @return a (possibly empty) list of CoT events to dispatch; never {@code null}.
      */
     public static List<CotEvent> convertToCotEvents(RemoteIdData data) {
+        if (data == null) {
+            return new ArrayList<>(2);
+        }
+        return convertToCotEvents(data, data.getUasLat(), data.getUasLon(), data.getUasHae());
+    }
+
+    /**
+     * Like {@link #convertToCotEvents(RemoteIdData)}, but the drone marker is
+     * placed at the given point, e.g. a filtered estimate of the reported
+     * position. Used only when the detection has a valid drone location.
+     */
+    public static List<CotEvent> convertToCotEvents(RemoteIdData data, double lat, double lon, double hae) {
+        return convertToCotEvents(data, lat, lon, hae, System.currentTimeMillis());
+    }
+
+    /**
+     * Conversion at {@code nowMs} on the wall clock, which paces operator
+     * marker refreshes
+     */
+    static List<CotEvent> convertToCotEvents(RemoteIdData data, double lat, double lon, double hae, long nowMs) {
         List<CotEvent> events = new ArrayList<>(2);
         if (data == null) {
             return events;
         }
 
         boolean droneValid = data.isValidLocation();
+        Template template = templateFor(data);
 
         if (droneValid) {
-            CotEvent drone = buildDroneCotEvent(data);
+            CotEvent drone = buildDroneCotEvent(data, template, lat, lon, hae, false);
             if (drone != null) {
                 events.add(drone);
             }
         }
 
-        if (isValidOperatorLocation(data)) {
-            CotEvent operator = buildOperatorCotEvent(data, droneValid);
+        if (isValidOperatorLocation(data) && operatorChanged(template, data, droneValid, nowMs)) {
+            CotEvent operator = buildOperatorCotEvent(data, template, droneValid);
             if (operator != null) {
                 events.add(operator);
             }
@@ -78,10 +235,61 @@ public class RemoteIdToCotConverter {
         return events.isEmpty() ? null : events.get(0);
     }
 
+    /**
+     * Build a drone CoT for a dead-reckoned position between Remote ID frames.
+     * Everything but the point comes from {@code latest}, the most recent
+     * detection; the event is flagged {@code predicted="true"} in its
+     * {@code __remoteid} detail. Meant for the local map only.
+     *
+     * @return the event, or {@code null} if it could not be built
+     */
+    public static CotEvent convertPredictedDroneEvent(RemoteIdData latest, double lat, double lon, double hae) {
+        if (latest == null) {
+            return null;
+        }
+        return buildDroneCotEvent(latest, templateFor(latest), lat, lon, hae, true);
+    }
+
+    /**
+     * Set how far the operator must move before its marker is re-sent
+     */
+    public static void setOperatorMoveThresholdMeters(double meters) {
+        operatorMoveThresholdMeters = meters;
+    }
+
+    /**
+     * Whether the operator marker needs sending: it moved at least the
+     * threshold, its location type or the drone's GPS state changed, or the
+     * last one is getting close to stale. Records the send if so.
+     */
+    private static boolean operatorChanged(Template template, RemoteIdData data, boolean droneValid, long now) {
+        synchronized (template) {
+            if (template.operatorSent
+                    && now - template.operatorSentAtMs < OPERATOR_REFRESH_MS
+                    && template.operatorLocType == data.getOpLocationType()
+                    && template.operatorDroneValid == droneValid) {
+                double dLat = (data.getOpLat() - template.operatorLat) * METERS_PER_DEGREE;
+                double dLon = (data.getOpLon() - template.operatorLon) * METERS_PER_DEGREE
+                        * Math.cos(Math.toRadians(template.operatorLat));
+                double threshold = operatorMoveThresholdMeters;
+                if (dLat * dLat + dLon * dLon < threshold * threshold) {
+                    return false;
+                }
+            }
+            template.operatorSent = true;
+            template.operatorSentAtMs = now;
+            template.operatorLat = data.getOpLat();
+            template.operatorLon = data.getOpLon();
+            template.operatorLocType = data.getOpLocationType();
+            template.operatorDroneValid = droneValid;
+            return true;
+        }
+    }
+
     /**
      * Validate operator (pilot) location: present, not NaN, not (0,0), within bounds.
      */
-    private static boolean isValidOperatorLocation(RemoteIdData data) {
+    public static boolean isValidOperatorLocation(RemoteIdData data) {
         double lat = data.getOpLat();
         double lon = data.getOpLon();
         if (Double.isNaN(lat) || Double.isNaN(lon)) return false;
@@ -92,15 +300,16 @@ public class RemoteIdToCotConverter {
     }
 
     /**
-     * Build the DRONE CoT event (airborne UAS). Caller must ensure the drone location is valid.
+     * Build the DRONE CoT event (airborne UAS) at the given point. Caller must
+     * ensure the point is valid.
      */
-    private static CotEvent buildDroneCotEvent(RemoteIdData data) {
+    private static CotEvent buildDroneCotEvent(RemoteIdData data, Template template,
+                                               double lat, double lon, double hae, boolean predicted) {
         try {
             CotEvent cotEvent = new CotEvent();
 
             // Set UID - use unique identifier from drone
-            String uid = "DRONE-" + data.getUniqueId();
-            cotEvent.setUID(uid);
+            cotEvent.setUID(template.droneUid);
 
             // Set CoT type - unknown drone
             cotEvent.setType(COT_TYPE_DRONE_UNKNOWN);
@@ -117,9 +326,9 @@ public class RemoteIdToCotConverter {
 
             // Set location point with altitude
             GeoPoint geoPoint = new GeoPoint(
-                data.getUasLat(),
-                data.getUasLon(),
-                data.getUasHae(), // altitude MSL in meters
+                lat,
+                lon,
+                hae, // altitude MSL in meters
                 GeoPoint.AltitudeReference.HAE  // Height Above Ellipsoid
             );
             cotEvent.setPoint(new CotPoint(geoPoint));
@@ -129,75 +338,80 @@ public class RemoteIdToCotConverter {
 
             // Add contact info
             CotDetail contact = new CotDetail("contact");
-            String callsign = generateCallsign(data);
-            contact.setAttribute("callsign", callsign);
+            contact.setAttribute("callsign", template.callsign);
             detail.addChild(contact);
 
             // Add track information (speed, heading)
             CotDetail track = new CotDetail("track");
-            track.setAttribute("course", String.valueOf(data.getUasHeading()));
-            track.setAttribute("speed", String.valueOf(data.getUasHSpeed())); // m/s
+            track.setAttribute("course", FixedPointFormat.format(data.getUasHeading(), 1));
+            track.setAttribute("speed", FixedPointFormat.format(data.getUasHSpeed(), 2)); // m/s
             detail.addChild(track);
 
             // Add Remote ID specific details
             CotDetail remoteIdDetail = new CotDetail("__remoteid");
 
             // Basic identification
-            if (data.getSerialNumber() != null && !data.getSerialNumber().isEmpty()) {
-                remoteIdDetail.setAttribute("serialNumber", data.getSerialNumber());
+            if (!isEmpty(template.serialNumber)) {
+                remoteIdDetail.setAttribute("serialNumber", template.serialNumber);
             }
-            if (data.getRemoteId() != null && !data.getRemoteId().isEmpty()) {
-                remoteIdDetail.setAttribute("operatorId", data.getRemoteId());
+            if (!isEmpty(template.remoteId)) {
+                remoteIdDetail.setAttribute("operatorId", template.remoteId);
             }
-            if (data.getOpId() != null && !data.getOpId().isEmpty()) {
-                remoteIdDetail.setAttribute("opId", data.getOpId());
+            if (!isEmpty(template.opId)) {
+                remoteIdDetail.setAttribute("opId", template.opId);
             }
-            if (data.getDescription() != null && !data.getDescription().isEmpty()) {
-                remoteIdDetail.setAttribute("description", data.getDescription());
+            if (!isEmpty(template.description)) {
+                remoteIdDetail.setAttribute("description", template.description);
             }
-            if (data.getCaaRegId() != null && !data.getCaaRegId().isEmpty()) {
-                remoteIdDetail.setAttribute("caaRegId", data.getCaaRegId());
+            if (!isEmpty(template.caaRegId)) {
+                remoteIdDetail.setAttribute("caaRegId", template.caaRegId);
             }
 
             // Reception info
             remoteIdDetail.setAttribute("rssi", String.valueOf(data.getRssi()));
             remoteIdDetail.setAttribute("recvMethod", data.getRecvMethodString());
-            remoteIdDetail.setAttribute("uasType", String.valueOf(data.getUasType()));
+            if (data.getReceptionPaths().size() > 1) {
+                remoteIdDetail.setAttribute("receptions", formatReceptionPaths(data.getReceptionPaths()));
+            }
+            remoteIdDetail.setAttribute("uasType", template.uasTypeString);
 
             // Altitude data
-            remoteIdDetail.setAttribute("heightAGL", String.format("%.1f", data.getUasHag()));
-            remoteIdDetail.setAttribute("heightTakeoff", String.format("%.1f", data.getUasHat()));
+            remoteIdDetail.setAttribute("heightAGL", FixedPointFormat.format(data.getUasHag(), 1));
+            remoteIdDetail.setAttribute("heightTakeoff", FixedPointFormat.format(data.getUasHat(), 1));
 
             // Speed data
-            remoteIdDetail.setAttribute("vSpeed", String.format("%.1f", data.getUasVSpeed()));
-            remoteIdDetail.setAttribute("hSpeed", String.format("%.1f", data.getUasHSpeed()));
+            remoteIdDetail.setAttribute("vSpeed", FixedPointFormat.format(data.getUasVSpeed(), 1));
+            remoteIdDetail.setAttribute("hSpeed", FixedPointFormat.format(data.getUasHSpeed(), 1));
 
             // Accuracy data
             if (data.getUasHorizontalError() > 0) {
-                remoteIdDetail.setAttribute("hAccuracy", String.format("%.1f", data.getUasHorizontalError()));
+                remoteIdDetail.setAttribute("hAccuracy", FixedPointFormat.format(data.getUasHorizontalError(), 1));
             }
             if (data.getUasVerticalError() > 0) {
-                remoteIdDetail.setAttribute("vAccuracy", String.format("%.1f", data.getUasVerticalError()));
+                remoteIdDetail.setAttribute("vAccuracy", FixedPointFormat.format(data.getUasVerticalError(), 1));
             }
 
             // Operator location (if available)
             if (data.getOpLat() != 0.0 && data.getOpLon() != 0.0) {
-                remoteIdDetail.setAttribute("opLat", String.valueOf(data.getOpLat()));
-                remoteIdDetail.setAttribute("opLon", String.valueOf(data.getOpLon()));
-                remoteIdDetail.setAttribute("opAlt", String.format("%.1f", data.getOpHae()));
+                remoteIdDetail.setAttribute("opLat", FixedPointFormat.format(data.getOpLat(), 7));
+                remoteIdDetail.setAttribute("opLon", FixedPointFormat.format(data.getOpLon(), 7));
+                remoteIdDetail.setAttribute("opAlt", FixedPointFormat.format(data.getOpHae(), 1));
                 remoteIdDetail.setAttribute("opLocType", getOperatorLocationTypeString(data.getOpLocationType()));
             }
 
             // Session info
-            if (data.getSessionId() > 0) {
-                remoteIdDetail.setAttribute("sessionId", String.valueOf(data.getSessionId()));
+            if (template.sessionIdString != null) {
+                remoteIdDetail.setAttribute("sessionId", template.sessionIdString);
             }
-            if (data.getUtmId() != null && !data.getUtmId().isEmpty()) {
-                remoteIdDetail.setAttribute("utmId", data.getUtmId());
+            if (!isEmpty(template.utmId)) {
+                remoteIdDetail.setAttribute("utmId", template.utmId);
             }
 
             remoteIdDetail.setAttribute("detectedBy", "gyb_detect");
             remoteIdDetail.setAttribute("timestamp", String.valueOf(data.getTimestamp()));
+            if (predicted) {
+                remoteIdDetail.setAttribute("predicted", "true");
+            }
 
             detail.addChild(remoteIdDetail);
 
@@ -209,7 +423,7 @@ public class RemoteIdToCotConverter {
 
             // Add remarks with summary
             CotDetail remarks = new CotDetail("remarks");
-            remarks.setInnerText(generateRemarks(data));
+            remarks.setInnerText(remarksFor(template, data));
             detail.addChild(remarks);
 
             cotEvent.setDetail(detail);
@@ -229,14 +443,13 @@ public class RemoteIdToCotConverter {
      * @param droneValid  whether the drone aircraft itself currently has a valid GPS fix; when
      *                    false the remarks note that the drone GPS has not yet been acquired.
      */
-    private static CotEvent buildOperatorCotEvent(RemoteIdData data, boolean droneValid) {
+    private static CotEvent buildOperatorCotEvent(RemoteIdData data, Template template, boolean droneValid) {
         try {
             CotEvent cotEvent = new CotEvent();
 
             // UID derived from the drone UID with an -OP suffix so the two markers never collide
             // and remain stably keyed to the same physical detection across updates.
-            String uid = "RID-OP-" + data.getUniqueId();
-            cotEvent.setUID(uid);
+            cotEvent.setUID(template.operatorUid);
 
             // Unknown ground - ATAK renders a default ground icon for a-u-G.
             cotEvent.setType(COT_TYPE_OPERATOR_UNKNOWN);
@@ -262,29 +475,32 @@ public class RemoteIdToCotConverter {
 
             // Contact / callsign
             CotDetail contact = new CotDetail("contact");
-            contact.setAttribute("callsign", generateOperatorCallsign(data));
+            contact.setAttribute("callsign", template.operatorCallsign);
             detail.addChild(contact);
 
             // Remote ID specific details (mirror the drone marker so this marker is self-describing)
             CotDetail remoteIdDetail = new CotDetail("__remoteid");
             remoteIdDetail.setAttribute("markerRole", "operator");
-            if (data.getSerialNumber() != null && !data.getSerialNumber().isEmpty()) {
-                remoteIdDetail.setAttribute("serialNumber", data.getSerialNumber());
+            if (!isEmpty(template.serialNumber)) {
+                remoteIdDetail.setAttribute("serialNumber", template.serialNumber);
             }
-            if (data.getRemoteId() != null && !data.getRemoteId().isEmpty()) {
-                remoteIdDetail.setAttribute("operatorId", data.getRemoteId());
+            if (!isEmpty(template.remoteId)) {
+                remoteIdDetail.setAttribute("operatorId", template.remoteId);
             }
-            if (data.getOpId() != null && !data.getOpId().isEmpty()) {
-                remoteIdDetail.setAttribute("opId", data.getOpId());
+            if (!isEmpty(template.opId)) {
+                remoteIdDetail.setAttribute("opId", template.opId);
             }
-            if (data.getDescription() != null && !data.getDescription().isEmpty()) {
-                remoteIdDetail.setAttribute("description", data.getDescription());
+            if (!isEmpty(template.description)) {
+                remoteIdDetail.setAttribute("description", template.description);
             }
             remoteIdDetail.setAttribute("rssi", String.valueOf(data.getRssi()));
             remoteIdDetail.setAttribute("recvMethod", data.getRecvMethodString());
-            remoteIdDetail.setAttribute("opLat", String.valueOf(data.getOpLat()));
-            remoteIdDetail.setAttribute("opLon", String.valueOf(data.getOpLon()));
-            remoteIdDetail.setAttribute("opAlt", String.format("%.1f", data.getOpHae()));
+            if (data.getReceptionPaths().size() > 1) {
+                remoteIdDetail.setAttribute("receptions", formatReceptionPaths(data.getReceptionPaths()));
+            }
+            remoteIdDetail.setAttribute("opLat", FixedPointFormat.format(data.getOpLat(), 7));
+            remoteIdDetail.setAttribute("opLon", FixedPointFormat.format(data.getOpLon(), 7));
+            remoteIdDetail.setAttribute("opAlt", FixedPointFormat.format(data.getOpHae(), 1));
             remoteIdDetail.setAttribute("opLocType", getOperatorLocationTypeString(data.getOpLocationType()));
             remoteIdDetail.setAttribute("droneGpsValid", String.valueOf(droneValid));
             remoteIdDetail.setAttribute("detectedBy", "gyb_detect");
@@ -334,6 +550,53 @@ public class RemoteIdToCotConverter {
         return "DRONE-" + System.currentTimeMillis() % 10000;
     }
 
+    /**
+     * Drone remarks, reusing the last text when every value it shows is
+     * unchanged at the precision shown
+     */
+    private static String remarksFor(Template template, RemoteIdData data) {
+        long hae = FixedPointFormat.quantize(data.getUasHae(), 0);
+        long hag = FixedPointFormat.quantize(data.getUasHag(), 0);
+        long hSpeed = FixedPointFormat.quantize(data.getUasHSpeed(), 1);
+        long vSpeed = FixedPointFormat.quantize(data.getUasVSpeed(), 1);
+        long heading = FixedPointFormat.quantize(data.getUasHeading(), 0);
+        boolean showVSpeed = data.getUasVSpeed() != 0;
+        boolean showOperator = data.getOpLat() != 0.0 && data.getOpLon() != 0.0;
+        long opLat = showOperator ? FixedPointFormat.quantize(data.getOpLat(), 6) : 0;
+        long opLon = showOperator ? FixedPointFormat.quantize(data.getOpLon(), 6) : 0;
+
+        synchronized (template) {
+            if (template.remarks != null
+                    && hae != FixedPointFormat.NOT_QUANTIZED && hae == template.remarksHae
+                    && hag != FixedPointFormat.NOT_QUANTIZED && hag == template.remarksHag
+                    && hSpeed != FixedPointFormat.NOT_QUANTIZED && hSpeed == template.remarksHSpeed
+                    && vSpeed != FixedPointFormat.NOT_QUANTIZED && vSpeed == template.remarksVSpeed
+                    && heading != FixedPointFormat.NOT_QUANTIZED && heading == template.remarksHeading
+                    && showVSpeed == template.remarksShowVSpeed
+                    && showOperator == template.remarksShowOperator
+                    && opLat != FixedPointFormat.NOT_QUANTIZED && opLat == template.remarksOpLat
+                    && opLon != FixedPointFormat.NOT_QUANTIZED && opLon == template.remarksOpLon
+                    && data.getRssi() == template.remarksRssi
+                    && data.getRecvMethod() == template.remarksRecvMethod) {
+                return template.remarks;
+            }
+
+            template.remarks = generateRemarks(data);
+            template.remarksHae = hae;
+            template.remarksHag = hag;
+            template.remarksHSpeed = hSpeed;
+            template.remarksVSpeed = vSpeed;
+            template.remarksHeading = heading;
+            template.remarksShowVSpeed = showVSpeed;
+            template.remarksShowOperator = showOperator;
+            template.remarksOpLat = opLat;
+            template.remarksOpLon = opLon;
+            template.remarksRssi = data.getRssi();
+            template.remarksRecvMethod = data.getRecvMethod();
+            return template.remarks;
+        }
+    }
+
     /**
      * Generate human-readable remarks for the drone detection
      */
@@ -349,23 +612,28 @@ public class RemoteIdToCotConverter {
             remarks.append("S/N: ").append(data.getSerialNumber()).append("\n");
         }
 
-        remarks.append("Alt: ").append(String.format("%.0f", data.getUasHae())).append("m MSL, ");
-        remarks.append(String.format("%.0f", data.getUasHag())).append("m AGL\n");
+        remarks.append("Alt: ");
+        FixedPointFormat.append(remarks, data.getUasHae(), 0).append("m MSL, ");
+        FixedPointFormat.append(remarks, data.getUasHag(), 0).append("m AGL\n");
 
-        remarks.append("Speed: ").append(String.format("%.1f", data.getUasHSpeed())).append("m/s");
+        remarks.append("Speed: ");
+        FixedPointFormat.append(remarks, data.getUasHSpeed(), 1).append("m/s");
         if (data.getUasVSpeed() != 0) {
-            remarks.append(" (V: ").append(String.format("%.1f", data.getUasVSpeed())).append("m/s)");
+            remarks.append(" (V: ");
+            FixedPointFormat.append(remarks, data.getUasVSpeed(), 1).append("m/s)");
         }
         remarks.append("\n");
 
-        remarks.append("Heading: ").append(String.format("%.0f", data.getUasHeading())).append("°\n");
+        remarks.append("Heading: ");
+        FixedPointFormat.append(remarks, data.getUasHeading(), 0).append("°\n");
 
         remarks.append("Detection: ").append(data.getRecvMethodString());
         remarks.append(" (RSSI: ").append(data.getRssi()).append("dBm)\n");
 
         if (data.getOpLat() != 0.0 && data.getOpLon() != 0.0) {
-            remarks.append("Operator: ").append(String.format("%.6f", data.getOpLat()))
-                   .append(", ").append(String.format("%.6f", data.getOpLon())).append("\n");
+            remarks.append("Operator: ");
+            FixedPointFormat.append(remarks, data.getOpLat(), 6).append(", ");
+            FixedPointFormat.append(remarks, data.getOpLon(), 6).append("\n");
         }
 
         return remarks.toString();
@@ -409,8 +677,9 @@ public class RemoteIdToCotConverter {
             remarks.append("Desc: ").append(data.getDescription()).append("\n");
         }
 
-        remarks.append("Operator: ").append(String.format("%.6f", data.getOpLat()))
-               .append(", ").append(String.format("%.6f", data.getOpLon())).append("\n");
+        remarks.append("Operator: ");
+        FixedPointFormat.append(remarks, data.getOpLat(), 6).append(", ");
+        FixedPointFormat.append(remarks, data.getOpLon(), 6).append("\n");
         remarks.append("Loc type: ").append(getOperatorLocationTypeString(data.getOpLocationType())).append("\n");
 
         remarks.append("Detection: ").append(data.getRecvMethodString());
@@ -419,6 +688,27 @@ public class RemoteIdToCotConverter {
         return remarks.toString();
     }
 
+    /**
+     * Every path a fused detection was heard on, as
+     * {@code sensor/method/rssi} separated by ';'
+     */
+    private static String formatReceptionPaths(List<RemoteIdData.ReceptionPath> paths) {
+        StringBuilder sb = new StringBuilder(paths.size() * 32);
+        for (RemoteIdData.ReceptionPath path : paths) {
+            if (sb.length() > 0) {
+                sb.append(';');
+            }
+            sb.append(path.getSensorId() != null ? path.getSensorId() : "local")
+                    .append('/').append(path.getRecvMethod())
+                    .append('/').append(path.getRssi());
+        }
+        return sb.toString();
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+
     /**
      * Get operator location type as string
      */
@@ -0,0 +1,176 @@
+package com.engindearing.omnicot.remoteid;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * One SPP connection to a gyb_detect unit.
+ * Each link owns its socket, reader thread and {@link SppStreamReader} (and so
+ * its own JSON framing); frames are handed to the {@link Callback} on the
+ * reader thread. The sensor ID is the unit's Bluetooth address.
+ */
+public class SensorLink {
+
+    private static final String TAG = "SensorLink";
+
+    /**
+     * Link events. All methods are called on the link's own thread.
+     */
+    public interface Callback {
+        void onLinkConnected(SensorLink link);
+
+        /** The buffer is only valid during the call */
+        void onLinkFrame(SensorLink link, ByteBuffer frame);
+
+        /**
+         * The link is gone, either closed on request or lost
+         *
+         * @param error the failure, or null if the link was closed on request
+         *              or the stream ended
+         */
+        void onLinkClosed(SensorLink link, IOException error);
+    }
+
+    private final BluetoothDevice device;
+    private final UUID serviceUuid;
+    private final String sensorId;
+    private final String name;
+    private final Callback callback;
+    private final SensorStats stats;
+
+    private volatile BluetoothSocket socket;
+    private volatile SppStreamReader streamReader;
+    private volatile boolean connected = false;
+    private volatile boolean closed = false;
+    private Thread thread;
+
+    public SensorLink(BluetoothDevice device, String name, UUID serviceUuid, Callback callback) {
+        this.device = device;
+        this.serviceUuid = serviceUuid;
+        this.sensorId = device.getAddress();
+        this.name = name != null ? name : sensorId;
+        this.callback = callback;
+        this.stats = new SensorStats(sensorId, this.name);
+    }
+
+    public String getSensorId() {
+        return sensorId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public SensorStats getStats() {
+        return stats;
+    }
+
+    public boolean isConnected() {
+        BluetoothSocket s = socket;
+        return connected && s != null && s.isConnected();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Connect and read on a new thread
+     */
+    public synchronized void open() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this::run, "omnicot-link-" + sensorId);
+        thread.start();
+    }
+
+    /**
+     * Close the link and wait briefly for its thread to finish
+     */
+    public void close() {
+        Thread t;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            t = thread;
+        }
+        shutdownStreams();
+        if (t != null && t != Thread.currentThread()) {
+            t.interrupt();
+            try {
+                t.join(2000);
+            } catch (InterruptedException e) {
+                Log.w(TAG, "Interrupted while waiting for " + name + " to close");
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        IOException failure = null;
+        try {
+            Log.d(TAG, "Connecting to " + name);
+            socket = device.createRfcommSocketToServiceRecord(serviceUuid);
+            socket.connect();
+            if (closed) {
+                return;
+            }
+
+            InputStream inputStream = socket.getInputStream();
+            streamReader = new SppStreamReader(inputStream, this::onFrame);
+            connected = true;
+            stats.markConnected(System.currentTimeMillis());
+            Log.i(TAG, "Connected to " + name);
+            callback.onLinkConnected(this);
+
+            // Blocks until data arrives; returns on end of stream or stop()
+            streamReader.readLoop();
+            Log.d(TAG, "Read loop exited for " + name);
+        } catch (IOException e) {
+            if (!closed) {
+                Log.e(TAG, "Link to " + name + " failed", e);
+                failure = e;
+            }
+        } finally {
+            closed = true;
+            connected = false;
+            stats.markDisconnected(System.currentTimeMillis());
+            shutdownStreams();
+            callback.onLinkClosed(this, failure);
+        }
+    }
+
+    private void onFrame(ByteBuffer frame) {
+        stats.recordFrame(frame.remaining(), System.currentTimeMillis());
+        callback.onLinkFrame(this, frame);
+    }
+
+    private void shutdownStreams() {
+        SppStreamReader reader = streamReader;
+        if (reader != null) {
+            reader.stop();
+        }
+        BluetoothSocket s = socket;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Error closing socket for " + name, e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SensorLink{" + name + " (" + sensorId + ")" + (connected ? " connected" : "") + '}';
+    }
+}
@@ -0,0 +1,174 @@
+package com.engindearing.omnicot.remoteid;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Health and throughput counters for one gyb_detect link.
+ * Totals are lifetime counts; rates are measured over a tumbling window of
+ * {@link #RATE_WINDOW_MS}. Frames and detections are recorded by the link's
+ * reader thread; everything may be read from any thread.
+ */
+public class SensorStats {
+
+    /** Window the frame and byte rates are measured over */
+    public static final long RATE_WINDOW_MS = 10 * 1000;
+
+    /** A connected link that has sent nothing for this long is reported quiet */
+    public static final long QUIET_AFTER_MS = 30 * 1000;
+
+    public enum Health {
+        CONNECTING,
+        HEALTHY,
+        QUIET,
+        DISCONNECTED
+    }
+
+    private final String sensorId;
+    private final String name;
+
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong detections = new AtomicLong();
+    private final AtomicLong unparsed = new AtomicLong();
+
+    private volatile long connectedAtMs = 0;
+    private volatile long disconnectedAtMs = 0;
+    private volatile long lastFrameMs = 0;
+
+    // Rate window, guarded by this
+    private long windowStartMs = 0;
+    private long windowFrames = 0;
+    private long windowBytes = 0;
+    private double frameRate = 0;
+    private double byteRate = 0;
+
+    public SensorStats(String sensorId, String name) {
+        this.sensorId = sensorId;
+        this.name = name;
+    }
+
+    public String getSensorId() {
+        return sensorId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void markConnected(long nowMs) {
+        connectedAtMs = nowMs;
+        disconnectedAtMs = 0;
+        synchronized (this) {
+            windowStartMs = nowMs;
+            windowFrames = 0;
+            windowBytes = 0;
+        }
+    }
+
+    public void markDisconnected(long nowMs) {
+        disconnectedAtMs = nowMs;
+    }
+
+    /**
+     * Record a frame read from the link
+     */
+    public void recordFrame(int length, long nowMs) {
+        frames.incrementAndGet();
+        bytes.addAndGet(length);
+        lastFrameMs = nowMs;
+        synchronized (this) {
+            windowFrames++;
+            windowBytes += length;
+            rollWindow(nowMs);
+        }
+    }
+
+    public void recordDetection() {
+        detections.incrementAndGet();
+    }
+
+    /**
+     * Record a frame the parser could not make sense of
+     */
+    public void recordUnparsed() {
+        unparsed.incrementAndGet();
+    }
+
+    public long getFrameCount() {
+        return frames.get();
+    }
+
+    public long getByteCount() {
+        return bytes.get();
+    }
+
+    public long getDetectionCount() {
+        return detections.get();
+    }
+
+    public long getUnparsedCount() {
+        return unparsed.get();
+    }
+
+    public long getConnectedAtMs() {
+        return connectedAtMs;
+    }
+
+    public long getLastFrameMs() {
+        return lastFrameMs;
+    }
+
+    /**
+     * Frames per second over the last completed window
+     */
+    public synchronized double getFrameRate(long nowMs) {
+        rollWindow(nowMs);
+        return frameRate;
+    }
+
+    /**
+     * Bytes per second over the last completed window
+     */
+    public synchronized double getByteRate(long nowMs) {
+        rollWindow(nowMs);
+        return byteRate;
+    }
+
+    public Health getHealth(long nowMs) {
+        if (disconnectedAtMs != 0) {
+            return Health.DISCONNECTED;
+        }
+        long connectedAt = connectedAtMs;
+        if (connectedAt == 0) {
+            return Health.CONNECTING;
+        }
+        long lastActivity = Math.max(connectedAt, lastFrameMs);
+        return nowMs - lastActivity > QUIET_AFTER_MS ? Health.QUIET : Health.HEALTHY;
+    }
+
+    /**
+     * Close the current window if it has run its length. A window with no
+     * frames at all still closes, so a link that goes silent drops to zero.
+     */
+    private void rollWindow(long nowMs) {
+        long elapsed = nowMs - windowStartMs;
+        if (elapsed < RATE_WINDOW_MS) {
+            return;
+        }
+        frameRate = windowFrames * 1000.0 / elapsed;
+        byteRate = windowBytes * 1000.0 / elapsed;
+        windowStartMs = nowMs;
+        windowFrames = 0;
+        windowBytes = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "SensorStats{" + name + " (" + sensorId + ")" +
+                ", frames=" + frames.get() +
+                ", bytes=" + bytes.get() +
+                ", detections=" + detections.get() +
+                ", unparsed=" + unparsed.get() +
+                '}';
+    }
+}
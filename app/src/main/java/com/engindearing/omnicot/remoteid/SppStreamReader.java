@@ -0,0 +1,109 @@
+package com.engindearing.omnicot.remoteid;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Blocking read loop for the gyb_detect SPP stream.
+ * The calling thread sleeps inside read() until bytes arrive, so there is no
+ * polling delay and no wakeups while the device is idle. Bytes are split into
+ * JSON frames by a {@link JsonFramer} without decoding them to chars. The loop
+ * ends on end of stream, on an I/O error, or when {@link #stop()} is called.
+ */
+public class SppStreamReader {
+
+    private static final String TAG = "SppStreamReader";
+
+    /** Sized for burst traffic from a busy airfield */
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    /**
+     * Receives each complete JSON object read from the stream.
+     * See {@link JsonFramer.FrameHandler} for the lifetime of the buffer.
+     */
+    public interface FrameListener {
+        void onFrame(ByteBuffer frame);
+    }
+
+    private final InputStream inputStream;
+    private final FrameListener listener;
+    private final JsonFramer framer = new JsonFramer();
+    private volatile boolean stopped = false;
+    private volatile Thread readThread;
+
+    public SppStreamReader(InputStream inputStream, FrameListener listener) {
+        this.inputStream = inputStream;
+        this.listener = listener;
+    }
+
+    /**
+     * Read frames until the stream ends or {@link #stop()} is called.
+     * Runs on the calling thread.
+     *
+     * @throws IOException if the stream fails while the reader is still running
+     */
+    public void readLoop() throws IOException {
+        readThread = Thread.currentThread();
+        try {
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            ByteBuffer chunk = ByteBuffer.wrap(buffer);
+            JsonFramer.FrameHandler handler = this::deliver;
+
+            while (!stopped) {
+                // Blocks until at least one byte is available
+                int numRead = inputStream.read(buffer, 0, buffer.length);
+                if (numRead == -1) {
+                    Log.w(TAG, "End of stream reached");
+                    return;
+                }
+
+                chunk.limit(numRead).position(0);
+                framer.feed(chunk, handler);
+            }
+        } catch (InterruptedIOException e) {
+            Log.d(TAG, "Read interrupted, shutting down");
+        } catch (IOException e) {
+            // Closing the stream from stop() unblocks read() with an IOException
+            if (!stopped) {
+                throw e;
+            }
+            Log.d(TAG, "Stream closed, shutting down");
+        } finally {
+            readThread = null;
+        }
+    }
+
+    /**
+     * Stop the read loop. Closes the stream and interrupts the read thread so a
+     * blocked read() returns immediately.
+     */
+    public void stop() {
+        stopped = true;
+        try {
+            inputStream.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Error closing input stream", e);
+        }
+        Thread thread = readThread;
+        if (thread != null && thread != Thread.currentThread()) {
+            thread.interrupt();
+        }
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    private void deliver(ByteBuffer frame) {
+        try {
+            listener.onFrame(frame);
+        } catch (Exception e) {
+            // Don't break the read loop - continue reading
+            Log.e(TAG, "Error processing JSON data", e);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.engindearing.omnicot.remoteid;
+
+/**
+ * Constant-velocity Kalman filter for one drone track.
+ * Works in a local east/north/up frame in meters around the first fix, with
+ * each axis filtered independently as a [position, velocity] pair. Each
+ * Remote ID frame contributes a position measurement weighted by the reported
+ * accuracy ({@code uasHorizontalError} / {@code uasVerticalError}) and a
+ * velocity measurement from {@code uasHSpeed}, {@code uasHeading} and
+ * {@code uasVSpeed}. Between frames the state is extrapolated to give
+ * predicted positions for rendering.
+ *
+ * <p>All state is held in primitive fields; updates and predictions allocate
+ * nothing. Not thread-safe; callers synchronize.
+ */
+public class TrackKalmanFilter {
+
+    private static final double METERS_PER_DEGREE = 111_320.0;
+
+    /** Used when a frame doesn't report its accuracy */
+    private static final double DEFAULT_HORIZONTAL_ERROR_M = 10.0;
+    private static final double DEFAULT_VERTICAL_ERROR_M = 15.0;
+    private static final double DEFAULT_SPEED_ERROR_MPS = 3.0;
+
+    /** Process noise: how hard a drone can plausibly accelerate (m^2/s^3) */
+    private static final double HORIZONTAL_PROCESS_NOISE = 4.0;
+    private static final double VERTICAL_PROCESS_NOISE = 1.0;
+
+    // Local frame origin
+    private double originLat;
+    private double originLon;
+    private double metersPerDegreeLon;
+
+    // Per-axis state [position, velocity] and covariance [[p00, p01], [p01, p11]]
+    private double east, eastVelocity, eastP00, eastP01, eastP11;
+    private double north, northVelocity, northP00, northP01, northP11;
+    private double up, upVelocity, upP00, upP01, upP11;
+
+    private long lastUpdateMs;
+    private boolean initialized = false;
+
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    public long getLastUpdateMs() {
+        return lastUpdateMs;
+    }
+
+    /**
+     * Incorporate a detection. Detections without a valid drone location are
+     * ignored.
+     */
+    public void update(RemoteIdData data) {
+        if (!data.isValidLocation()) {
+            return;
+        }
+        update(data.getTimestamp(), data.getUasLat(), data.getUasLon(), data.getUasHae(),
+                data.getUasHSpeed(), data.getUasHeading(), data.getUasVSpeed(),
+                data.getUasHorizontalError(), data.getUasVerticalError(), data.getUasHSpeedError());
+    }
+
+    /**
+     * Incorporate a fix. Accuracy arguments that are zero or negative mean
+     * "not reported" and fall back to defaults.
+     */
+    public void update(long timeMs, double lat, double lon, double hae,
+                       double hSpeed, double headingDeg, double vSpeed,
+                       double horizontalError, double verticalError, double speedError) {
+        double hR = sq(horizontalError > 0 ? horizontalError : DEFAULT_HORIZONTAL_ERROR_M);
+        double vR = sq(verticalError > 0 ? verticalError : DEFAULT_VERTICAL_ERROR_M);
+        double sR = sq(speedError > 0 ? speedError : DEFAULT_SPEED_ERROR_MPS);
+
+        double heading = Math.toRadians(headingDeg);
+        double ve = hSpeed * Math.sin(heading);
+        double vn = hSpeed * Math.cos(heading);
+
+        if (!initialized) {
+            originLat = lat;
+            originLon = lon;
+            metersPerDegreeLon = METERS_PER_DEGREE * Math.cos(Math.toRadians(lat));
+            // Seed from the first frame, velocity included
+            east = 0;
+            north = 0;
+            up = hae;
+            eastVelocity = ve;
+            northVelocity = vn;
+            upVelocity = vSpeed;
+            eastP00 = northP00 = hR;
+            upP00 = vR;
+            eastP11 = northP11 = upP11 = sR;
+            eastP01 = northP01 = upP01 = 0;
+            lastUpdateMs = timeMs;
+            initialized = true;
+            return;
+        }
+
+        double dt = Math.max(0, (timeMs - lastUpdateMs) / 1000.0);
+        lastUpdateMs = Math.max(lastUpdateMs, timeMs);
+
+        double e = (lon - originLon) * metersPerDegreeLon;
+        double n = (lat - originLat) * METERS_PER_DEGREE;
+
+        // East axis
+        predictEast(dt);
+        correctEastPosition(e, hR);
+        correctEastVelocity(ve, sR);
+        // North axis
+        predictNorth(dt);
+        correctNorthPosition(n, hR);
+        correctNorthVelocity(vn, sR);
+        // Up axis
+        predictUp(dt);
+        correctUpPosition(hae, vR);
+        correctUpVelocity(vSpeed, sR);
+    }
+
+    /** Predicted latitude at {@code timeMs} */
+    public double predictLat(long timeMs) {
+        return originLat + (north + northVelocity * secondsSinceUpdate(timeMs)) / METERS_PER_DEGREE;
+    }
+
+    /** Predicted longitude at {@code timeMs} */
+    public double predictLon(long timeMs) {
+        return originLon + (east + eastVelocity * secondsSinceUpdate(timeMs)) / metersPerDegreeLon;
+    }
+
+    /** Predicted height above ellipsoid at {@code timeMs} */
+    public double predictHae(long timeMs) {
+        return up + upVelocity * secondsSinceUpdate(timeMs);
+    }
+
+    /**
+     * One-sigma horizontal position uncertainty in meters at {@code timeMs}
+     */
+    public double predictHorizontalError(long timeMs) {
+        double dt = secondsSinceUpdate(timeMs);
+        double pe = eastP00 + dt * (2 * eastP01 + dt * eastP11) + HORIZONTAL_PROCESS_NOISE * dt * dt * dt / 3;
+        double pn = northP00 + dt * (2 * northP01 + dt * northP11) + HORIZONTAL_PROCESS_NOISE * dt * dt * dt / 3;
+        return Math.sqrt(Math.max(pe, pn));
+    }
+
+    /** Estimated ground speed in m/s */
+    public double getSpeed() {
+        return Math.hypot(eastVelocity, northVelocity);
+    }
+
+    /** Estimated course over ground in degrees, 0-360 */
+    public double getCourse() {
+        double course = Math.toDegrees(Math.atan2(eastVelocity, northVelocity));
+        return course < 0 ? course + 360 : course;
+    }
+
+    private double secondsSinceUpdate(long timeMs) {
+        return Math.max(0, (timeMs - lastUpdateMs) / 1000.0);
+    }
+
+    // The three axes are written out rather than held in arrays so the filter
+    // is a flat object with no indirection
+
+    private void predictEast(double dt) {
+        double q = HORIZONTAL_PROCESS_NOISE;
+        east += eastVelocity * dt;
+        eastP00 += dt * (2 * eastP01 + dt * eastP11) + q * dt * dt * dt / 3;
+        eastP01 += dt * eastP11 + q * dt * dt / 2;
+        eastP11 += q * dt;
+    }
+
+    private void correctEastPosition(double z, double r) {
+        double s = eastP00 + r;
+        double k0 = eastP00 / s;
+        double k1 = eastP01 / s;
+        double y = z - east;
+        east += k0 * y;
+        eastVelocity += k1 * y;
+        eastP11 -= k1 * eastP01;
+        eastP00 *= 1 - k0;
+        eastP01 *= 1 - k0;
+    }
+
+    private void correctEastVelocity(double z, double r) {
+        double s = eastP11 + r;
+        double k0 = eastP01 / s;
+        double k1 = eastP11 / s;
+        double y = z - eastVelocity;
+        east += k0 * y;
+        eastVelocity += k1 * y;
+        eastP00 -= k0 * eastP01;
+        eastP01 *= 1 - k1;
+        eastP11 *= 1 - k1;
+    }
+
+    private void predictNorth(double dt) {
+        double q = HORIZONTAL_PROCESS_NOISE;
+        north += northVelocity * dt;
+        northP00 += dt * (2 * northP01 + dt * northP11) + q * dt * dt * dt / 3;
+        northP01 += dt * northP11 + q * dt * dt / 2;
+        northP11 += q * dt;
+    }
+
+    private void correctNorthPosition(double z, double r) {
+        double s = northP00 + r;
+        double k0 = northP00 / s;
+        double k1 = northP01 / s;
+        double y = z - north;
+        north += k0 * y;
+        northVelocity += k1 * y;
+        northP11 -= k1 * northP01;
+        northP00 *= 1 - k0;
+        northP01 *= 1 - k0;
+    }
+
+    private void correctNorthVelocity(double z, double r) {
+        double s = northP11 + r;
+        double k0 = northP01 / s;
+        double k1 = northP11 / s;
+        double y = z - northVelocity;
+        north += k0 * y;
+        northVelocity += k1 * y;
+        northP00 -= k0 * northP01;
+        northP01 *= 1 - k1;
+        northP11 *= 1 - k1;
+    }
+
+    private void predictUp(double dt) {
+        double q = VERTICAL_PROCESS_NOISE;
+        up += upVelocity * dt;
+        upP00 += dt * (2 * upP01 + dt * upP11) + q * dt * dt * dt / 3;
+        upP01 += dt * upP11 + q * dt * dt / 2;
+        upP11 += q * dt;
+    }
+
+    private void correctUpPosition(double z, double r) {
+        double s = upP00 + r;
+        double k0 = upP00 / s;
+        double k1 = upP01 / s;
+        double y = z - up;
+        up += k0 * y;
+        upVelocity += k1 * y;
+        upP11 -= k1 * upP01;
+        upP00 *= 1 - k0;
+        upP01 *= 1 - k0;
+    }
+
+    private void correctUpVelocity(double z, double r) {
+        double s = upP11 + r;
+        double k0 = upP01 / s;
+        double k1 = upP11 / s;
+        double y = z - upVelocity;
+        up += k0 * y;
+        upVelocity += k1 * y;
+        upP00 -= k0 * upP01;
+        upP01 *= 1 - k1;
+        upP11 *= 1 - k1;
+    }
+
+    private static double sq(double x) {
+        return x * x;
+    }
+}
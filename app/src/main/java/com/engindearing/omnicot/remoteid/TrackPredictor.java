@@ -0,0 +1,247 @@
+package com.engindearing.omnicot.remoteid;
+
+import android.util.Log;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dead-reckons drone markers between Remote ID frames.
+ * Each drone gets a {@link TrackKalmanFilter} fed with every detection. Real
+ * frames are drawn at the filter's estimate, taken from
+ * {@link #renderFrame} when the frame's marker is dispatched. At the render
+ * rate, drones whose marker was last drawn from a real frame more than one
+ * render interval ago get their predicted position handed to the
+ * {@link PredictionSink}, so markers glide along their track instead of
+ * jumping once per dispatched frame. Because both are estimates for the time
+ * they are drawn, a frame dispatched late never pulls the marker back behind
+ * a prediction. Prediction stops once a drone has been silent for
+ * {@code maxPredictionMs}, and slow or hovering drones are left where their
+ * last frame put them.
+ *
+ * <p>Updating an existing track allocates nothing.
+ */
+public class TrackPredictor {
+
+    private static final String TAG = "TrackPredictor";
+
+    public static final double DEFAULT_RENDER_RATE_HZ = 2.0;
+    public static final long DEFAULT_MAX_PREDICTION_MS = 5000;
+
+    /** Below this ground speed a drone is treated as hovering */
+    private static final double MIN_PREDICTION_SPEED_MPS = 0.5;
+
+    /** Tracks not heard from for this long are forgotten */
+    private static final long TRACK_EXPIRY_MS = 5 * 60 * 1000;
+
+    /**
+     * Receives predicted positions, on the render thread
+     */
+    public interface PredictionSink {
+        void onPrediction(RemoteIdData latest, double lat, double lon, double hae);
+    }
+
+    private static final class Track {
+        final TrackKalmanFilter filter = new TrackKalmanFilter();
+        RemoteIdData latest;
+        // When a real frame's marker was last drawn; 0 until one is
+        long frameRenderedMs;
+    }
+
+    private final PredictionSink sink;
+    private final ConcurrentHashMap<String, Track> tracks = new ConcurrentHashMap<>();
+
+    private volatile double renderRateHz = DEFAULT_RENDER_RATE_HZ;
+    private volatile long maxPredictionMs = DEFAULT_MAX_PREDICTION_MS;
+
+    private ScheduledExecutorService renderExecutor;
+    private ScheduledFuture<?> renderTask;
+
+    private final AtomicLong predictions = new AtomicLong();
+
+    public TrackPredictor(PredictionSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Set how many times per second predicted positions are rendered. Takes
+     * effect immediately if running.
+     */
+    public synchronized void setRenderRateHz(double renderRateHz) {
+        if (renderRateHz <= 0) {
+            throw new IllegalArgumentException("Render rate must be positive: " + renderRateHz);
+        }
+        this.renderRateHz = renderRateHz;
+        if (renderExecutor != null) {
+            schedule();
+        }
+    }
+
+    public double getRenderRateHz() {
+        return renderRateHz;
+    }
+
+    public void setMaxPredictionMs(long maxPredictionMs) {
+        this.maxPredictionMs = maxPredictionMs;
+    }
+
+    /**
+     * Start rendering predictions
+     */
+    public synchronized void start() {
+        if (renderExecutor != null) {
+            return;
+        }
+        renderExecutor = Executors.newSingleThreadScheduledExecutor(
+                r -> new Thread(r, "omnicot-predictor"));
+        schedule();
+    }
+
+    /**
+     * Stop rendering and forget all tracks
+     */
+    public synchronized void stop() {
+        if (renderTask != null) {
+            renderTask.cancel(false);
+            renderTask = null;
+        }
+        if (renderExecutor != null) {
+            renderExecutor.shutdownNow();
+            renderExecutor = null;
+        }
+        tracks.clear();
+    }
+
+    /**
+     * Feed a detection to its drone's filter. Detections without a valid drone
+     * location are ignored.
+     */
+    public void update(RemoteIdData data) {
+        if (!data.isValidLocation()) {
+            return;
+        }
+        String uid = data.getUniqueId();
+        Track track = tracks.get(uid);
+        if (track == null) {
+            track = new Track();
+            Track existing = tracks.putIfAbsent(uid, track);
+            if (existing != null) {
+                track = existing;
+            }
+        }
+        synchronized (track) {
+            track.filter.update(data);
+            track.latest = data;
+        }
+    }
+
+    /**
+     * Record that a real detection's marker is being drawn at {@code nowMs}
+     * and get the filtered position to draw it at. Predictions for the drone
+     * resume one render interval after this.
+     *
+     * @param out receives latitude, longitude and height above ellipsoid
+     * @return false if the drone has no track, in which case the detection's
+     * own position should be drawn
+     */
+    public boolean renderFrame(RemoteIdData data, long nowMs, double[] out) {
+        Track track = tracks.get(data.getUniqueId());
+        if (track == null) {
+            return false;
+        }
+        synchronized (track) {
+            TrackKalmanFilter filter = track.filter;
+            if (!filter.isInitialized()) {
+                return false;
+            }
+            track.frameRenderedMs = nowMs;
+            long at = nowMs;
+            if (nowMs - filter.getLastUpdateMs() > maxPredictionMs
+                    || filter.getSpeed() < MIN_PREDICTION_SPEED_MPS) {
+                // Same rule as renderDue(): no dead reckoning, just the filtered fix
+                at = filter.getLastUpdateMs();
+            }
+            out[0] = filter.predictLat(at);
+            out[1] = filter.predictLon(at);
+            out[2] = filter.predictHae(at);
+        }
+        return true;
+    }
+
+    /**
+     * Render predictions for drones between frames and forget drones that
+     * have gone quiet.
+     *
+     * @return number of predictions rendered
+     */
+    public int renderDue(long nowMs) {
+        long intervalMs = renderIntervalMs();
+        long horizonMs = maxPredictionMs;
+        int count = 0;
+        Iterator<Track> it = tracks.values().iterator();
+        while (it.hasNext()) {
+            Track track = it.next();
+            RemoteIdData latest;
+            double lat;
+            double lon;
+            double hae;
+            synchronized (track) {
+                TrackKalmanFilter filter = track.filter;
+                long age = nowMs - filter.getLastUpdateMs();
+                if (age > TRACK_EXPIRY_MS) {
+                    it.remove();
+                    continue;
+                }
+                // Time since the marker was last drawn from a real frame; the
+                // last fix if none has been drawn through renderFrame()
+                long drawnAge = track.frameRenderedMs != 0 ? nowMs - track.frameRenderedMs : age;
+                if (drawnAge < intervalMs || age > horizonMs || filter.getSpeed() < MIN_PREDICTION_SPEED_MPS) {
+                    continue;
+                }
+                latest = track.latest;
+                lat = filter.predictLat(nowMs);
+                lon = filter.predictLon(nowMs);
+                hae = filter.predictHae(nowMs);
+            }
+            try {
+                sink.onPrediction(latest, lat, lon, hae);
+                count++;
+            } catch (Exception e) {
+                Log.e(TAG, "Error rendering prediction for " + latest.getUniqueId(), e);
+            }
+        }
+        predictions.addAndGet(count);
+        return count;
+    }
+
+    public int getTrackCount() {
+        return tracks.size();
+    }
+
+    public long getPredictionCount() {
+        return predictions.get();
+    }
+
+    private long renderIntervalMs() {
+        return Math.max(1, Math.round(1000 / renderRateHz));
+    }
+
+    private void schedule() {
+        if (renderTask != null) {
+            renderTask.cancel(false);
+        }
+        long period = renderIntervalMs();
+        renderTask = renderExecutor.scheduleAtFixedRate(() -> {
+            try {
+                renderDue(System.currentTimeMillis());
+            } catch (Exception e) {
+                Log.e(TAG, "Error rendering predictions", e);
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,58 @@
+package com.engindearing.omnicot;
+
+import static org.junit.Assert.*;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class AOIAlertRuleTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    @Test
+    public void jsonRoundTripKeepsEveryField() throws Exception {
+        AOIAlertRule rule = new AOIAlertRule("shape-1", true, AOIAlertRule.TRIGGER_ENTRY, "Hostile",
+                4, 10, 120, new int[]{2, 3}, 1_000_000L);
+        AOIAlertRule copy = AOIAlertRule.fromJson(new JSONObject(rule.toJson().toString()));
+
+        assertEquals("shape-1", copy.getUid());
+        assertTrue(copy.isEnabled());
+        assertEquals(AOIAlertRule.TRIGGER_ENTRY, copy.getTriggerType());
+        assertEquals("Hostile", copy.getMonitoredType());
+        assertEquals(4, copy.getDurationHours());
+        assertEquals(10, copy.getFloorM(), 0);
+        assertEquals(120, copy.getCeilingM(), 0);
+        assertArrayEquals(new int[]{2, 3}, copy.getUasTypes());
+        assertEquals(1_000_000L, copy.getArmedAtMs());
+    }
+
+    @Test
+    public void unsetLimitsStayUnset() throws Exception {
+        AOIAlertRule rule = new AOIAlertRule("shape-1", true, null, null,
+                24, Double.NaN, Double.NaN, new int[0], 0);
+        AOIAlertRule copy = AOIAlertRule.fromJson(new JSONObject(rule.toJson().toString()));
+
+        assertEquals(AOIAlertRule.TRIGGER_BOTH, copy.getTriggerType());
+        assertEquals(AOIAlertRule.MONITOR_ALL, copy.getMonitoredType());
+        assertTrue(Double.isNaN(copy.getFloorM()));
+        assertTrue(Double.isNaN(copy.getCeilingM()));
+        assertNull(copy.getUasTypes());
+    }
+
+    @Test
+    public void activeUntilDurationRunsOut() {
+        AOIAlertRule rule = new AOIAlertRule("a", true, "Both", "All", 2, Double.NaN, Double.NaN, null, HOUR);
+        assertEquals(3 * HOUR, rule.getExpiresAtMs());
+        assertTrue(rule.isActive(2 * HOUR));
+        assertFalse(rule.isActive(3 * HOUR));
+        assertEquals("Alert expired", rule.getStatus(3 * HOUR));
+
+        AOIAlertRule forever = new AOIAlertRule("b", true, "Both", "All", 0, Double.NaN, Double.NaN, null, HOUR);
+        assertEquals(0, forever.getExpiresAtMs());
+        assertTrue(forever.isActive(1000 * HOUR));
+
+        AOIAlertRule disabled = new AOIAlertRule("c", false, "Both", "All", 2, Double.NaN, Double.NaN, null, HOUR);
+        assertFalse(disabled.isActive(HOUR));
+        assertEquals("No alerts configured", disabled.getStatus(HOUR));
+    }
+}
@@ -0,0 +1,102 @@
+package com.engindearing.omnicot;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class AOISpatialIndexTest {
+
+    @Test
+    public void pointQueryFindsContainingBoxesOnly() {
+        AOISpatialIndex<String> index = new AOISpatialIndex<>();
+        index.put("field", "field", 47.00, -122.02, 47.01, -122.00);
+        index.put("town", "town", 47.005, -122.03, 47.05, -121.99);
+        index.put("far", "far", 10, 10, 11, 11);
+
+        assertEquals(set("field", "town"), query(index, 47.008, -122.01));
+        assertEquals(set("town"), query(index, 47.04, -122.01));
+        assertEquals(set(), query(index, 46.9, -122.01));
+    }
+
+    @Test
+    public void replaceAndRemoveUpdateCells() {
+        AOISpatialIndex<String> index = new AOISpatialIndex<>();
+        index.put("a", "a", 47.00, -122.02, 47.01, -122.00);
+        index.put("a", "a", 48.00, -122.02, 48.01, -122.00);
+        assertEquals(1, index.size());
+        assertEquals(set(), query(index, 47.005, -122.01));
+        assertEquals(set("a"), query(index, 48.005, -122.01));
+
+        assertTrue(index.remove("a"));
+        assertFalse(index.remove("a"));
+        assertEquals(set(), query(index, 48.005, -122.01));
+    }
+
+    @Test
+    public void oversizedAndAntimeridianBoxes() {
+        AOISpatialIndex<String> index = new AOISpatialIndex<>();
+        index.put("state", "state", 42, -124.5, 46.3, -116.5);
+        index.put("dateline", "dateline", -20, 179.5, -10, -179.5);
+
+        assertEquals(set("state"), query(index, 44, -120));
+        assertEquals(set("dateline"), query(index, -15, 179.9));
+        assertEquals(set("dateline"), query(index, -15, -179.9));
+        assertEquals(set("dateline"), query(index, -15, 180.1));
+        assertEquals(set(), query(index, -15, 0));
+
+        List<String> out = new ArrayList<>();
+        index.queryBox(-16, 179, -14, -179, out);
+        assertEquals(List.of("dateline"), out);
+    }
+
+    @Test
+    public void matchesBruteForceOnRandomBoxes() {
+        Random random = new Random(7);
+        AOISpatialIndex<Integer> index = new AOISpatialIndex<>();
+        double[][] boxes = new double[2000][];
+        for (int i = 0; i < boxes.length; i++) {
+            double s = 40 + random.nextDouble() * 2;
+            double w = -120 + random.nextDouble() * 2;
+            double[] box = {s, w, s + random.nextDouble() * 0.05, w + random.nextDouble() * 0.05};
+            boxes[i] = box;
+            index.put("aoi-" + i, i, box[0], box[1], box[2], box[3]);
+        }
+
+        for (int q = 0; q < 500; q++) {
+            double lat = 40 + random.nextDouble() * 2;
+            double lon = -120 + random.nextDouble() * 2;
+            Set<Integer> expected = new HashSet<>();
+            for (int i = 0; i < boxes.length; i++) {
+                double[] b = boxes[i];
+                if (lat >= b[0] && lat <= b[2] && lon >= b[1] && lon <= b[3]) {
+                    expected.add(i);
+                }
+            }
+            Set<Integer> actual = new HashSet<>();
+            index.queryPoint(lat, lon, actual);
+            assertEquals(expected, actual);
+
+            // Box queries report each AOI once even when it spans many cells
+            List<Integer> inBox = new ArrayList<>();
+            index.queryBox(lat - 0.1, lon - 0.1, lat + 0.1, lon + 0.1, inBox);
+            assertEquals(new HashSet<>(inBox).size(), inBox.size());
+            assertTrue(inBox.containsAll(expected));
+        }
+    }
+
+    private static Set<String> query(AOISpatialIndex<String> index, double lat, double lon) {
+        Set<String> out = new HashSet<>();
+        index.queryPoint(lat, lon, out);
+        return out;
+    }
+
+    private static Set<String> set(String... values) {
+        return new HashSet<>(List.of(values));
+    }
+}
@@ -0,0 +1,97 @@
+package com.engindearing.omnicot;
+
+import static org.junit.Assume.assumeTrue;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares the cost of persisting one affiliation change with the append-only
+ * log against rewriting every entry, which is what SharedPreferences does on
+ * each apply(). Prints a table rather than asserting, since absolute numbers
+ * depend on the storage underneath.
+ *
+ * <p>Skipped unless run with {@code -Domnicot.bench=true}, e.g.
+ * {@code ./gradlew testDebugUnitTest -Domnicot.bench=true --tests '*AffiliationLogBenchmarkTest'}.
+ */
+public class AffiliationLogBenchmarkTest {
+
+    private static final int[] SIZES = {1_000, 10_000, 100_000};
+    private static final int WRITES = 50;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void compareWriteCost() throws Exception {
+        assumeTrue(Boolean.getBoolean("omnicot.bench"));
+
+        System.out.println(String.format(Locale.US, "%10s %18s %18s", "UIDs", "log us/write", "rewrite us/write"));
+        for (int size : SIZES) {
+            List<AffiliationData> all = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                all.add(new AffiliationData(String.format(Locale.US, "ANDROID-%08x", i),
+                        AffiliationData.Affiliation.UNKNOWN, "System", "server:8089"));
+            }
+
+            double logMicros = timeLog(all);
+            double rewriteMicros = timeRewrite(all);
+            System.out.println(String.format(Locale.US, "%10d %18.1f %18.1f", size, logMicros, rewriteMicros));
+        }
+    }
+
+    /** One put + sync per change, as AffiliationManager does for an isolated change */
+    private double timeLog(List<AffiliationData> all) throws Exception {
+        File file = tmp.newFile();
+        file.delete();
+        AffiliationLog log = new AffiliationLog(file);
+        log.open();
+        log.compact(all);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < WRITES; i++) {
+            AffiliationData changed = all.get(i * 7919 % all.size());
+            changed.setAffiliation(AffiliationData.Affiliation.ASSUMED_HOSTILE);
+            log.put(changed);
+            log.sync();
+        }
+        long elapsed = System.nanoTime() - start;
+        log.close();
+        return elapsed / 1000.0 / WRITES;
+    }
+
+    /** Baseline: serialize every entry to JSON and rewrite the whole file per change */
+    private double timeRewrite(List<AffiliationData> all) throws Exception {
+        File file = tmp.newFile();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < WRITES; i++) {
+            all.get(i * 7919 % all.size()).setAffiliation(AffiliationData.Affiliation.ASSUMED_FRIENDLY);
+            try (FileOutputStream fos = new FileOutputStream(file)) {
+                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8));
+                writer.write("<map>\n");
+                for (AffiliationData data : all) {
+                    JSONObject json = data.toJson();
+                    writer.write("<string name=\"affiliation_" + data.getUid() + "\">");
+                    writer.write(json.toString());
+                    writer.write("</string>\n");
+                }
+                writer.write("</map>\n");
+                writer.flush();
+                fos.getFD().sync();
+            }
+        }
+        return (System.nanoTime() - start) / 1000.0 / WRITES;
+    }
+}
@@ -0,0 +1,130 @@
+package com.engindearing.omnicot;
+
+import static org.junit.Assert.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class AffiliationLogTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void putsAndRemovesSurviveReopen() throws Exception {
+        File file = new File(tmp.getRoot(), "affiliations.log");
+        AffiliationLog log = new AffiliationLog(file);
+        assertTrue(log.open().isEmpty());
+
+        AffiliationData a = data("uid-a", AffiliationData.Affiliation.ASSUMED_HOSTILE);
+        a.setNotes("seen over the ridge");
+        log.put(a);
+        log.put(data("uid-b", AffiliationData.Affiliation.ASSUMED_FRIENDLY));
+        log.put(data("uid-a", AffiliationData.Affiliation.PENDING));
+        log.remove("uid-b");
+        log.close();
+
+        Map<String, AffiliationData> live = new AffiliationLog(file).open();
+        assertEquals(1, live.size());
+        AffiliationData restored = live.get("uid-a");
+        assertEquals(AffiliationData.Affiliation.PENDING, restored.getAffiliation());
+        assertEquals("tester", restored.getMarkedBy());
+        assertEquals("", restored.getNotes());
+        assertNull(restored.getServerConnection());
+    }
+
+    @Test
+    public void tornTailIsTruncatedOnRecovery() throws Exception {
+        File file = new File(tmp.getRoot(), "affiliations.log");
+        AffiliationLog log = new AffiliationLog(file);
+        log.open();
+        log.put(data("uid-a", AffiliationData.Affiliation.ASSUMED_HOSTILE));
+        log.sync();
+        long intact = file.length();
+        log.put(data("uid-b", AffiliationData.Affiliation.ASSUMED_FRIENDLY));
+        log.close();
+
+        // Simulate a crash part way through the second record
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(file.length() - 5);
+        }
+
+        AffiliationLog recovered = new AffiliationLog(file);
+        Map<String, AffiliationData> live = recovered.open();
+        assertEquals(1, live.size());
+        assertTrue(live.containsKey("uid-a"));
+        assertEquals(intact, file.length());
+
+        // Appends after recovery land on a clean record boundary
+        recovered.put(data("uid-c", AffiliationData.Affiliation.UNKNOWN));
+        recovered.close();
+        assertEquals(2, new AffiliationLog(file).open().size());
+    }
+
+    @Test
+    public void corruptRecordStopsReplay() throws Exception {
+        File file = new File(tmp.getRoot(), "affiliations.log");
+        AffiliationLog log = new AffiliationLog(file);
+        log.open();
+        log.put(data("uid-a", AffiliationData.Affiliation.ASSUMED_HOSTILE));
+        log.sync();
+        long firstEnd = file.length();
+        log.put(data("uid-b", AffiliationData.Affiliation.ASSUMED_FRIENDLY));
+        log.close();
+
+        // Flip a payload byte in the second record so its CRC no longer matches
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(firstEnd + 12);
+            int b = raf.read();
+            raf.seek(firstEnd + 12);
+            raf.write(b ^ 0xFF);
+        }
+
+        Map<String, AffiliationData> live = new AffiliationLog(file).open();
+        assertEquals(1, live.size());
+        assertEquals(firstEnd, file.length());
+    }
+
+    @Test
+    public void compactionKeepsOnlyLiveRecords() throws Exception {
+        File file = new File(tmp.getRoot(), "affiliations.log");
+        AffiliationLog log = new AffiliationLog(file);
+        log.open();
+
+        List<AffiliationData> live = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            live.add(data("uid-" + i, AffiliationData.Affiliation.ASSUMED_FRIENDLY));
+        }
+        for (int round = 0; round < 200; round++) {
+            for (AffiliationData d : live) {
+                log.put(d);
+            }
+        }
+        log.sync();
+        assertTrue(log.needsCompaction(live.size()));
+        long before = file.length();
+
+        log.compact(live);
+        assertEquals(live.size(), log.getRecordCount());
+        assertFalse(log.needsCompaction(live.size()));
+        assertTrue(file.length() < before / 100);
+
+        // Log stays appendable after compaction
+        log.remove("uid-0");
+        log.close();
+        Map<String, AffiliationData> reopened = new AffiliationLog(file).open();
+        assertEquals(9, reopened.size());
+        assertFalse(reopened.containsKey("uid-0"));
+    }
+
+    private static AffiliationData data(String uid, AffiliationData.Affiliation affiliation) {
+        return new AffiliationData(uid, affiliation, "tester", null);
+    }
+}
@@ -0,0 +1,97 @@
+package com.engindearing.omnicot;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class CompiledPolygonTest {
+
+    @Test
+    public void concavePolygonContainment() {
+        // U shape opening north
+        double[] lats = {47.00, 47.00, 47.03, 47.03, 47.01, 47.01, 47.03, 47.03};
+        double[] lons = {-122.03, -122.00, -122.00, -122.01, -122.01, -122.02, -122.02, -122.03};
+        CompiledPolygon polygon = new CompiledPolygon(lats, lons);
+
+        assertTrue(polygon.contains(47.005, -122.015));   // base
+        assertTrue(polygon.contains(47.02, -122.025));    // left arm
+        assertTrue(polygon.contains(47.02, -122.005));    // right arm
+        assertFalse(polygon.contains(47.02, -122.015));   // gap between arms
+        assertFalse(polygon.contains(46.99, -122.015));   // south of it
+        assertFalse(polygon.contains(47.005, -121.99));   // east of it
+    }
+
+    @Test
+    public void matchesNaiveRayCastOnRandomOutlines() {
+        Random random = new Random(23);
+        for (int round = 0; round < 50; round++) {
+            int n = 3 + random.nextInt(200);
+            double[][] outline = round % 5 == 0 ? scribble(random, n) : star(random, n);
+            CompiledPolygon polygon = new CompiledPolygon(outline[0], outline[1]);
+            for (int i = 0; i < 2000; i++) {
+                double lat = 46.98 + random.nextDouble() * 0.04;
+                double lon = -122.02 + random.nextDouble() * 0.04;
+                assertEquals("round " + round + " at " + lat + "," + lon,
+                        rayCast(outline[0], outline[1], lat, lon), polygon.contains(lat, lon));
+            }
+        }
+    }
+
+    @Test
+    public void distanceToEdgeIsInMeters() {
+        CompiledPolygon polygon = new CompiledPolygon(
+                new double[]{47.000, 47.000, 47.010, 47.010},
+                new double[]{-122.010, -122.000, -122.000, -122.010});
+        // 0.001 degrees of latitude south of the south edge is ~110 m
+        assertEquals(110.5, polygon.distanceToEdge(46.999, -122.005), 0.5);
+        assertEquals(110.5, polygon.distanceToEdge(47.001, -122.005), 0.5);
+    }
+
+    @Test
+    public void crossesAntimeridian() {
+        CompiledPolygon polygon = new CompiledPolygon(
+                new double[]{-17.0, -17.0, -16.0, -16.0},
+                new double[]{179.5, -179.5, -179.5, 179.5});
+        assertTrue(polygon.contains(-16.5, 179.9));
+        assertTrue(polygon.contains(-16.5, -179.9));
+        assertFalse(polygon.contains(-16.5, 179.0));
+        assertFalse(polygon.contains(-16.5, -179.0));
+    }
+
+    /** Simple star-shaped outline around 47.0, -122.0 */
+    static double[][] star(Random random, int n) {
+        double[] lats = new double[n];
+        double[] lons = new double[n];
+        for (int i = 0; i < n; i++) {
+            double angle = 2 * Math.PI * i / n;
+            double radius = 0.002 + random.nextDouble() * 0.015;
+            lats[i] = 47.0 + radius * Math.sin(angle);
+            lons[i] = -122.0 + radius * Math.cos(angle);
+        }
+        return new double[][]{lats, lons};
+    }
+
+    /** Random vertices, so edges cross */
+    private static double[][] scribble(Random random, int n) {
+        double[] lats = new double[n];
+        double[] lons = new double[n];
+        for (int i = 0; i < n; i++) {
+            lats[i] = 46.985 + random.nextDouble() * 0.03;
+            lons[i] = -122.015 + random.nextDouble() * 0.03;
+        }
+        return new double[][]{lats, lons};
+    }
+
+    private static boolean rayCast(double[] lats, double[] lons, double lat, double lon) {
+        boolean inside = false;
+        for (int i = 0, j = lats.length - 1; i < lats.length; j = i++) {
+            if ((lats[i] > lat) != (lats[j] > lat)
+                    && lon < (lons[j] - lons[i]) * (lat - lats[i]) / (lats[j] - lats[i]) + lons[i]) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+}
@@ -0,0 +1,131 @@
+package com.engindearing.omnicot;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.List;
+
+public class GeofenceEngineTest {
+
+    // Roughly 1.1 km square
+    private static GeofenceEngine.Fence square(String id) {
+        return new GeofenceEngine.Fence(id, id,
+                new double[]{47.000, 47.000, 47.010, 47.010},
+                new double[]{-122.010, -122.000, -122.000, -122.010});
+    }
+
+    @Test
+    public void entryAndExitAreReported() {
+        GeofenceEngine engine = new GeofenceEngine();
+        engine.putFence(square("field"));
+
+        assertTrue(engine.updateTrack("d1", 46.990, -122.005, 50, 2, 0).isEmpty());
+        List<GeofenceEngine.Breach> in = engine.updateTrack("d1", 47.005, -122.005, 50, 2, 1000);
+        assertEquals(1, in.size());
+        assertEquals(GeofenceEngine.BreachType.ENTRY, in.get(0).getType());
+        assertEquals("field", in.get(0).getFence().getId());
+        assertTrue(engine.updateTrack("d1", 47.006, -122.005, 50, 2, 2000).isEmpty());
+
+        List<GeofenceEngine.Breach> out = engine.updateTrack("d1", 47.020, -122.005, 50, 2, 3000);
+        assertEquals(1, out.size());
+        assertEquals(GeofenceEngine.BreachType.EXIT, out.get(0).getType());
+    }
+
+    @Test
+    public void hoveringOnTheEdgeDoesNotFlap() {
+        GeofenceEngine engine = new GeofenceEngine();
+        engine.putFence(square("field"));
+
+        assertEquals(1, engine.updateTrack("d1", 47.0099, -122.005, 50, 2, 0).size());
+        // ~5 m north of the edge, then back in: still inside
+        assertTrue(engine.updateTrack("d1", 47.01005, -122.005, 50, 2, 1000).isEmpty());
+        assertTrue(engine.updateTrack("d1", 47.0099, -122.005, 50, 2, 2000).isEmpty());
+        // ~55 m out
+        assertEquals(1, engine.updateTrack("d1", 47.0105, -122.005, 50, 2, 3000).size());
+    }
+
+    @Test
+    public void exitFiresAfterStoppingInTheMarginInAnotherCell() {
+        GeofenceEngine engine = new GeofenceEngine();
+        // North edge inside a grid cell, so the cell north of it holds no edge
+        // but is within the hysteresis margin
+        engine.putFence(new GeofenceEngine.Fence("field", "field",
+                new double[]{47.000, 47.000, 47.00995, 47.00995},
+                new double[]{-122.010, -122.000, -122.000, -122.010}));
+
+        assertEquals(1, engine.updateTrack("d1", 47.0098, -122.005, 50, 2, 0).size());
+        // ~8 m out, in the next cell: held inside
+        assertTrue(engine.updateTrack("d1", 47.01002, -122.005, 50, 2, 1000).isEmpty());
+        // ~1 km out in the same cell
+        List<GeofenceEngine.Breach> out = engine.updateTrack("d1", 47.0195, -122.005, 50, 2, 2000);
+        assertEquals(1, out.size());
+        assertEquals(GeofenceEngine.BreachType.EXIT, out.get(0).getType());
+        assertTrue(engine.updateTrack("d1", 47.0199, -122.005, 50, 2, 3000).isEmpty());
+    }
+
+    @Test
+    public void altitudeBandAndTypeFilterApply() {
+        GeofenceEngine engine = new GeofenceEngine();
+        GeofenceEngine.Fence fence = square("low");
+        fence.setFloorM(10);
+        fence.setCeilingM(120);
+        fence.setUasTypes(new int[]{2});
+        fence.setTrigger(GeofenceEngine.Trigger.ENTRY);
+        engine.putFence(fence);
+
+        assertTrue(engine.updateTrack("d1", 47.005, -122.005, 200, 2, 0).isEmpty());
+        assertEquals(1, engine.updateTrack("d1", 47.005, -122.005, 100, 2, 1000).size());
+        // An entry-only fence reports no exit, but does report re-entry
+        assertTrue(engine.updateTrack("d1", 47.005, -122.005, 130, 2, 2000).isEmpty());
+        assertEquals(1, engine.updateTrack("d1", 47.005, -122.005, 110, 2, 3000).size());
+        // Within the vertical margin of the ceiling: still inside
+        assertTrue(engine.updateTrack("d1", 47.005, -122.005, 123, 2, 4000).isEmpty());
+
+        // Wrong UAS type never triggers; unknown height ignores the band
+        assertTrue(engine.updateTrack("d2", 47.005, -122.005, 50, 4, 0).isEmpty());
+        assertEquals(1, engine.updateTrack("op", 47.005, -122.005, Double.NaN, 2, 0).size());
+    }
+
+    @Test
+    public void tracksAreOnlyRetestedWhenChangingCellsOrNearEdges() {
+        GeofenceEngine engine = new GeofenceEngine();
+        // 5 km square; its interior cells hold no edges
+        engine.putFence(new GeofenceEngine.Fence("big", "big",
+                new double[]{47.00, 47.00, 47.05, 47.05},
+                new double[]{-122.05, -122.00, -122.00, -122.05}));
+
+        engine.updateTrack("d1", 47.0251, -122.0251, 50, 2, 0);
+        long retests = engine.getRetestCount();
+        for (int i = 0; i < 10; i++) {
+            engine.updateTrack("d1", 47.0251 + i * 0.0001, -122.0251, 50, 2, i);
+        }
+        assertEquals(retests, engine.getRetestCount());
+
+        // Into the next cell
+        engine.updateTrack("d1", 47.0351, -122.0251, 50, 2, 20);
+        assertEquals(retests + 1, engine.getRetestCount());
+
+        // Cells along an edge are always re-tested
+        engine.updateTrack("d2", 47.0001, -122.0251, 50, 2, 0);
+        engine.updateTrack("d2", 47.0002, -122.0251, 50, 2, 1);
+        assertEquals(retests + 3, engine.getRetestCount());
+    }
+
+    @Test
+    public void unchangedOutlineIsNotRecompiled() {
+        GeofenceEngine engine = new GeofenceEngine();
+        engine.putFence(square("field"));
+        GeofenceEngine.Fence fence = engine.getFence("field");
+
+        assertTrue(engine.updateGeometry("field",
+                new double[]{47.000, 47.000, 47.010, 47.010},
+                new double[]{-122.010, -122.000, -122.000, -122.010}));
+        assertSame(fence, engine.getFence("field"));
+
+        assertTrue(engine.updateGeometry("field",
+                new double[]{47.000, 47.000, 47.020, 47.020},
+                new double[]{-122.010, -122.000, -122.000, -122.010}));
+        assertNotSame(fence, engine.getFence("field"));
+    }
+}
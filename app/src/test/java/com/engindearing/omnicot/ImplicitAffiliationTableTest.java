@@ -0,0 +1,62 @@
+package com.engindearing.omnicot;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ImplicitAffiliationTableTest {
+
+    private static final long GRACE = 60_000;
+
+    @Test
+    public void touchCreatesImplicitUnknownOnce() {
+        ImplicitAffiliationTable table = new ImplicitAffiliationTable(100, GRACE);
+        AffiliationData first = table.touch("uid-a", "srv", 1_000, 0);
+        AffiliationData again = table.touch("uid-a", "srv", 2_000, 500);
+
+        assertSame(first, again);
+        assertTrue(first.isImplicit());
+        assertEquals(AffiliationData.Affiliation.UNKNOWN, first.getAffiliation());
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void sweepEvictsOnlyTracksStalePastGrace() {
+        ImplicitAffiliationTable table = new ImplicitAffiliationTable(100, GRACE);
+        table.touch("stale", null, 10_000, 0);
+        table.touch("live", null, 10_000, 0);
+        // Receiving "live" again pushes its stale time out
+        table.touch("live", null, 200_000, 150_000);
+
+        assertEquals(0, table.sweep(10_000 + GRACE - 1));
+        assertEquals(1, table.sweep(10_000 + GRACE));
+        assertNull(table.get("stale"));
+        assertNotNull(table.get("live"));
+    }
+
+    @Test
+    public void sizeStaysBoundedUnderChurn() {
+        ImplicitAffiliationTable table = new ImplicitAffiliationTable(1000, GRACE);
+        // Simulate a long exercise: a steady stream of never-seen-again UIDs
+        for (int i = 0; i < 100_000; i++) {
+            long now = i * 100L;
+            table.touch("transient-" + i, null, now + 30_000, now);
+            assertTrue(table.size() <= 1000);
+        }
+        assertNotNull("newest entry must survive eviction", table.get("transient-99999"));
+    }
+
+    @Test
+    public void fullTableEvictsEntriesClosestToExpiry() {
+        ImplicitAffiliationTable table = new ImplicitAffiliationTable(10, GRACE);
+        for (int i = 0; i < 10; i++) {
+            table.touch("uid-" + i, null, 1_000 * i, 0);
+        }
+        table.touch("uid-new", null, 50_000, 0);
+
+        assertNull(table.get("uid-0"));
+        assertNotNull(table.get("uid-9"));
+        assertNotNull(table.get("uid-new"));
+        assertTrue(table.size() <= 10);
+    }
+}
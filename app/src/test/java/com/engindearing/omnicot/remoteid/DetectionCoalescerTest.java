@@ -0,0 +1,115 @@
+package com.engindearing.omnicot.remoteid;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drives DetectionCoalescer with explicit timestamps and checks what reaches
+ * the emitter.
+ */
+public class DetectionCoalescerTest {
+
+    private final List<RemoteIdData> emitted = new ArrayList<>();
+    private DetectionCoalescer coalescer;
+
+    @Before
+    public void setUp() {
+        coalescer = new DetectionCoalescer(emitted::add);
+        coalescer.setMinIntervalMs(1000);
+        coalescer.setPositionJumpMeters(50);
+        coalescer.setAltitudeJumpMeters(15);
+    }
+
+    @Test
+    public void firstDetectionIsEmittedImmediately() {
+        assertTrue(coalescer.offer(detection("A", 47.0, -122.0, 100, 2), 10_000));
+        assertEquals(1, emitted.size());
+    }
+
+    @Test
+    public void burstIsCoalescedToNewestState() {
+        long t = 10_000;
+        coalescer.offer(detection("A", 47.0, -122.0, 100, 2), t);
+        RemoteIdData last = null;
+        for (int i = 1; i <= 10; i++) {
+            last = detection("A", 47.0 + i * 1e-5, -122.0, 100, 2);
+            assertFalse(coalescer.offer(last, t + i * 50));
+        }
+        assertEquals(1, emitted.size());
+
+        // Nothing is due until the interval expires
+        assertEquals(0, coalescer.flushDue(t + 900));
+        assertEquals(1, coalescer.flushDue(t + 1000));
+        assertEquals(2, emitted.size());
+        assertSame(last, emitted.get(1));
+
+        // Pending state was consumed
+        assertEquals(0, coalescer.flushDue(t + 5000));
+        assertEquals(11, coalescer.getReceivedCount());
+        assertEquals(2, coalescer.getEmittedCount());
+    }
+
+    @Test
+    public void dronesAreRateLimitedIndependently() {
+        coalescer.offer(detection("A", 47.0, -122.0, 100, 2), 10_000);
+        assertTrue(coalescer.offer(detection("B", 47.0, -122.0, 100, 2), 10_010));
+        assertFalse(coalescer.offer(detection("A", 47.0, -122.0, 100, 2), 10_020));
+        assertEquals(2, coalescer.getTrackCount());
+    }
+
+    @Test
+    public void detectionAfterIntervalIsEmittedImmediately() {
+        coalescer.offer(detection("A", 47.0, -122.0, 100, 2), 10_000);
+        assertTrue(coalescer.offer(detection("A", 47.0, -122.0, 100, 2), 11_000));
+    }
+
+    @Test
+    public void positionJumpBypassesRateLimit() {
+        coalescer.offer(detection("A", 47.0, -122.0, 100, 2), 10_000);
+        // ~11 m north: held back
+        assertFalse(coalescer.offer(detection("A", 47.0001, -122.0, 100, 2), 10_100));
+        // ~111 m north of the last emitted position
+        assertTrue(coalescer.offer(detection("A", 47.001, -122.0, 100, 2), 10_200));
+        assertEquals(2, emitted.size());
+        // The held-back update is older than what was just sent
+        assertEquals(0, coalescer.flushDue(11_300));
+    }
+
+    @Test
+    public void altitudeJumpBypassesRateLimit() {
+        coalescer.offer(detection("A", 47.0, -122.0, 100, 2), 10_000);
+        assertFalse(coalescer.offer(detection("A", 47.0, -122.0, 110, 2), 10_100));
+        assertTrue(coalescer.offer(detection("A", 47.0, -122.0, 120, 2), 10_200));
+    }
+
+    @Test
+    public void opStatusChangeBypassesRateLimit() {
+        coalescer.offer(detection("A", 47.0, -122.0, 100, 2), 10_000);
+        assertTrue(coalescer.offer(detection("A", 47.0, -122.0, 100, 3), 10_100));
+        assertEquals(3, emitted.get(1).getOpStatus());
+    }
+
+    @Test
+    public void quietTracksAreForgotten() {
+        coalescer.offer(detection("A", 47.0, -122.0, 100, 2), 10_000);
+        coalescer.flushDue(10_000 + 6 * 60 * 1000);
+        assertEquals(0, coalescer.getTrackCount());
+        // A returning drone is treated as new
+        assertTrue(coalescer.offer(detection("A", 47.0, -122.0, 100, 2), 10_000 + 6 * 60 * 1000 + 1));
+    }
+
+    private static RemoteIdData detection(String serial, double lat, double lon, float hae, int opStatus) {
+        RemoteIdData data = new RemoteIdData();
+        data.setSerialNumber(serial);
+        data.setUasLat(lat);
+        data.setUasLon(lon);
+        data.setUasHae(hae);
+        data.setOpStatus(opStatus);
+        return data;
+    }
+}
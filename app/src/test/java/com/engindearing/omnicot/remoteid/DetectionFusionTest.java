@@ -0,0 +1,84 @@
+package com.engindearing.omnicot.remoteid;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DetectionFusionTest {
+
+    private final List<RemoteIdData> emitted = new ArrayList<>();
+    private DetectionFusion fusion;
+
+    @Before
+    public void setUp() {
+        fusion = new DetectionFusion(emitted::add);
+        fusion.setWindowMs(100);
+    }
+
+    @Test
+    public void copiesInsideWindowAreFusedIntoOne() {
+        fusion.offer(detection("D1", 1, "sensorA", 16, -70, 8f, 47.0), 0);
+        fusion.offer(detection("D1", 1, "sensorA", 1, -60, 3f, 47.1), 20);
+        fusion.offer(detection("D1", 1, "sensorB", 16, -80, 0f, 47.2), 40);
+
+        assertEquals(0, fusion.flushDue(99));
+        assertEquals(1, fusion.flushDue(100));
+        assertEquals(1, emitted.size());
+
+        RemoteIdData fused = emitted.get(0);
+        // Best reported accuracy wins; unreported accuracy ranks last
+        assertEquals(47.1, fused.getUasLat(), 0);
+        assertEquals(-60, fused.getRssi());
+        assertEquals(3, fused.getReceptionPaths().size());
+        assertEquals(-80, fused.getReceptionPaths().get(2).getRssi());
+        assertEquals(0, fusion.getOpenWindowCount());
+    }
+
+    @Test
+    public void repeatOnSamePathUpdatesItsRssi() {
+        fusion.offer(detection("D1", 1, "sensorA", 16, -70, 5f, 47.0), 0);
+        fusion.offer(detection("D1", 1, "sensorA", 16, -65, 5f, 47.0), 10);
+        fusion.flushDue(100);
+
+        List<RemoteIdData.ReceptionPath> paths = emitted.get(0).getReceptionPaths();
+        assertEquals(1, paths.size());
+        assertEquals(-65, paths.get(0).getRssi());
+    }
+
+    @Test
+    public void differentDronesAndSessionsAreNotMerged() {
+        fusion.offer(detection("D1", 1, "sensorA", 16, -70, 5f, 47.0), 0);
+        fusion.offer(detection("D1", 2, "sensorA", 16, -70, 5f, 47.0), 0);
+        fusion.offer(detection("D2", 1, "sensorA", 16, -70, 5f, 47.0), 0);
+        assertEquals(3, fusion.flushDue(100));
+    }
+
+    @Test
+    public void reportAfterWindowClosesOpensNewWindow() {
+        fusion.offer(detection("D1", 1, "sensorA", 16, -70, 5f, 47.0), 0);
+        fusion.flushDue(100);
+        fusion.offer(detection("D1", 1, "sensorB", 16, -70, 5f, 47.0), 120);
+        assertEquals(0, fusion.flushDue(150));
+        assertEquals(1, fusion.flushDue(220));
+        assertEquals(2, emitted.size());
+        assertEquals(2, fusion.getReceivedCount());
+    }
+
+    private static RemoteIdData detection(String serial, int session, String sensor, int method,
+                                          int rssi, float hError, double lat) {
+        RemoteIdData data = new RemoteIdData();
+        data.setSerialNumber(serial);
+        data.setSessionId(session);
+        data.setSensorId(sensor);
+        data.setRecvMethod(method);
+        data.setRssi(rssi);
+        data.setUasHorizontalError(hError);
+        data.setUasLat(lat);
+        data.setUasLon(-122);
+        return data;
+    }
+}
@@ -0,0 +1,152 @@
+package com.engindearing.omnicot.remoteid;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class DispatchLaneTest {
+
+    private DispatchLane<String> lane;
+
+    @After
+    public void tearDown() {
+        if (lane != null) {
+            lane.stop();
+        }
+    }
+
+    @Test
+    public void immediateLaneDeliversInOrder() throws Exception {
+        BlockingQueue<String> out = new LinkedBlockingQueue<>();
+        lane = new DispatchLane<>("test-local", 16, 0, 16, null, out::add);
+        lane.start();
+
+        for (int i = 0; i < 5; i++) {
+            lane.offer("e" + i);
+        }
+        for (int i = 0; i < 5; i++) {
+            assertEquals("e" + i, out.poll(1, TimeUnit.SECONDS));
+        }
+        assertEquals(0, lane.getDroppedCount());
+    }
+
+    @Test
+    public void fullLaneDropsOldest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> out = new ArrayList<>();
+        lane = new DispatchLane<>("test-full", 3, 0, 16, null, event -> {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+            synchronized (out) {
+                out.add(event);
+            }
+        });
+        lane.start();
+
+        // First event is taken by the (blocked) sender, the rest queue up
+        lane.offer("first");
+        waitForDepth(0);
+        assertTrue(lane.offer("a"));
+        assertTrue(lane.offer("b"));
+        assertTrue(lane.offer("c"));
+        assertFalse(lane.offer("d"));
+        assertEquals(3, lane.getDepth());
+        assertEquals(1, lane.getDroppedCount());
+
+        release.countDown();
+        waitForDepth(0);
+        waitForSent(4);
+        synchronized (out) {
+            assertEquals(List.of("first", "b", "c", "d"), out);
+        }
+    }
+
+    @Test
+    public void keyedLaneReplacesQueuedEventAndBatchesOnInterval() throws Exception {
+        BlockingQueue<String> out = new LinkedBlockingQueue<>();
+        lane = new DispatchLane<>("test-fed", 16, 300, 16,
+                event -> event.substring(0, 1), out::add);
+        lane.start();
+
+        // First batch goes immediately; the lane then holds off for the interval
+        lane.offer("A0");
+        assertEquals("A0", out.poll(1, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        lane.offer("A1");
+        lane.offer("B1");
+        lane.offer("A2");
+        assertEquals(2, lane.getDepth());
+        assertEquals(1, lane.getSupersededCount());
+
+        assertEquals("A2", out.poll(1, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 250);
+        assertEquals("B1", out.poll(1, TimeUnit.SECONDS));
+        assertNull(out.poll(50, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void sinkExceptionDoesNotStopLane() throws Exception {
+        BlockingQueue<String> out = new LinkedBlockingQueue<>();
+        lane = new DispatchLane<>("test-err", 16, 0, 16, null, event -> {
+            if (event.equals("bad")) {
+                throw new IllegalStateException("boom");
+            }
+            out.add(event);
+        });
+        lane.start();
+
+        lane.offer("bad");
+        lane.offer("good");
+        assertEquals("good", out.poll(1, TimeUnit.SECONDS));
+
+        // Only what the sink accepted counts as sent
+        waitForSent(1);
+        assertEquals(1, lane.getFailedCount());
+        assertTrue(lane.toString(), lane.toString().contains("failed=1"));
+    }
+
+    @Test
+    public void sentEventsWithOriginReportLatency() throws Exception {
+        BlockingQueue<String> out = new LinkedBlockingQueue<>();
+        LatencyHistogram histogram = new LatencyHistogram("local");
+        lane = new DispatchLane<>("test-latency", 16, 0, 16, null, out::add);
+        lane.setLatencyHistogram(histogram);
+        lane.start();
+
+        lane.offer("timed", System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(20));
+        lane.offer("untimed");
+        assertEquals("timed", out.poll(1, TimeUnit.SECONDS));
+        assertEquals("untimed", out.poll(1, TimeUnit.SECONDS));
+        waitForSent(2);
+
+        assertEquals(1, histogram.getCount());
+        assertTrue(histogram.snapshot().getMaxNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    private void waitForDepth(int depth) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (lane.getDepth() != depth && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(depth, lane.getDepth());
+    }
+
+    private void waitForSent(long sent) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (lane.getSentCount() < sent && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(sent, lane.getSentCount());
+    }
+}
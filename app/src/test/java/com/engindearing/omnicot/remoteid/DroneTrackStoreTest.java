@@ -0,0 +1,85 @@
+package com.engindearing.omnicot.remoteid;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DroneTrackStoreTest {
+
+    @Test
+    public void ringBufferKeepsNewestFixesInOrder() {
+        DroneTrackStore store = new DroneTrackStore(4, 10, 60_000);
+        for (int i = 0; i < 10; i++) {
+            store.record("A", 1_000 + i, 47 + i, -122, i, i, i);
+        }
+        DroneTrackStore.Track track = store.get("A");
+        assertEquals(4, track.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(1_006 + i, track.getTime(i));
+            assertEquals(47 + 6 + i, track.getLat(i), 0);
+        }
+    }
+
+    @Test
+    public void windowQueryReturnsInclusiveRange() {
+        DroneTrackStore store = new DroneTrackStore(8, 10, 60_000);
+        for (int i = 0; i < 12; i++) {
+            store.record("A", i * 100L, i, i, i, i, i);
+        }
+        DroneTrackStore.Track track = store.get("A");
+
+        List<Long> times = new ArrayList<>();
+        int n = track.forEachInWindow(500, 900, (t, lat, lon, hae, speed, heading) -> times.add(t));
+        assertEquals(5, n);
+        assertEquals(List.of(500L, 600L, 700L, 800L, 900L), times);
+        assertEquals(5, track.countInWindow(500, 900));
+        // Window reaching before the retained history
+        assertEquals(2, track.countInWindow(0, 500));
+        assertEquals(0, track.countInWindow(1_200, 5_000));
+    }
+
+    @Test
+    public void outOfOrderFixIsClampedToNewestTime() {
+        DroneTrackStore store = new DroneTrackStore(8, 10, 60_000);
+        store.record("A", 1_000, 1, 1, 0, 0, 0);
+        store.record("A", 900, 2, 2, 0, 0, 0);
+        DroneTrackStore.Track track = store.get("A");
+        assertEquals(1_000, track.getTime(1));
+        assertEquals(2, track.countInWindow(1_000, 1_000));
+    }
+
+    @Test
+    public void inactiveTracksAreEvicted() {
+        DroneTrackStore store = new DroneTrackStore(8, 10, 60_000);
+        store.record("old", 0, 1, 1, 0, 0, 0);
+        store.record("new", 50_000, 1, 1, 0, 0, 0);
+        assertEquals(1, store.evictInactive(70_000));
+        assertNull(store.get("old"));
+        assertNotNull(store.get("new"));
+    }
+
+    @Test
+    public void fullStoreEvictsLeastRecentlyUpdated() {
+        DroneTrackStore store = new DroneTrackStore(8, 3, 600_000);
+        store.record("A", 1_000, 1, 1, 0, 0, 0);
+        store.record("B", 2_000, 1, 1, 0, 0, 0);
+        store.record("C", 3_000, 1, 1, 0, 0, 0);
+        store.record("A", 4_000, 1, 1, 0, 0, 0);
+        store.record("D", 5_000, 1, 1, 0, 0, 0);
+        assertEquals(3, store.getTrackCount());
+        assertNull(store.get("B"));
+        assertNotNull(store.get("A"));
+    }
+
+    @Test
+    public void ignoresDetectionsWithoutDroneFix() {
+        DroneTrackStore store = new DroneTrackStore();
+        RemoteIdData data = new RemoteIdData();
+        data.setSerialNumber("SN1");
+        assertNull(store.record(data));
+        assertEquals(0, store.getTrackCount());
+    }
+}
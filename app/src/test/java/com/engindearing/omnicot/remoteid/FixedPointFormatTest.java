@@ -0,0 +1,87 @@
+package com.engindearing.omnicot.remoteid;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Locale;
+import java.util.Random;
+
+public class FixedPointFormatTest {
+
+    @Test
+    public void matchesStringFormatForTypicalValues() {
+        double[] values = {0, 1, -1, 12.34, -122.3493, 47.6205, 359.96, 0.04, 1234.5678, 9.99, 100};
+        for (double v : values) {
+            for (int d = 0; d <= 7; d++) {
+                assertEquals(v + " @" + d, String.format(Locale.US, "%." + d + "f", v),
+                        FixedPointFormat.format(v, d));
+            }
+        }
+    }
+
+    @Test
+    public void roundsToNearestRepresentableDecimal() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            double v = (random.nextDouble() - 0.5) * 400;
+            int d = random.nextInt(8);
+            String formatted = FixedPointFormat.format(v, d);
+
+            // Never worse than half a unit in the last place, always exactly d decimals
+            BigDecimal exact = new BigDecimal(v);
+            BigDecimal error = new BigDecimal(formatted).subtract(exact).abs();
+            BigDecimal halfUlp = BigDecimal.ONE.movePointLeft(d).divide(BigDecimal.valueOf(2));
+            assertTrue(formatted + " for " + v, error.compareTo(halfUlp.add(new BigDecimal("1e-12"))) <= 0);
+            int dot = formatted.indexOf('.');
+            assertEquals(formatted, d, dot < 0 ? 0 : formatted.length() - dot - 1);
+            if (error.compareTo(halfUlp.subtract(new BigDecimal("1e-9"))) < 0) {
+                // Not a near-tie: must agree with exact half-up rounding
+                assertEquals(formatted + " for " + v, 0,
+                        exact.setScale(d, RoundingMode.HALF_UP).compareTo(new BigDecimal(formatted)));
+            }
+        }
+    }
+
+    @Test
+    public void quantizeAgreesWithFormat() {
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            int d = random.nextInt(3);
+            double a = (random.nextDouble() - 0.5) * 2;
+            double b = a + (random.nextDouble() - 0.5) * 0.2;
+            boolean sameText = FixedPointFormat.format(a, d).equals(FixedPointFormat.format(b, d));
+            boolean sameKey = FixedPointFormat.quantize(a, d) == FixedPointFormat.quantize(b, d);
+            assertEquals(a + " vs " + b + " @" + d, sameText, sameKey);
+        }
+        assertEquals(FixedPointFormat.NOT_QUANTIZED, FixedPointFormat.quantize(Double.NaN, 1));
+    }
+
+    @Test
+    public void usesDotRegardlessOfDefaultLocale() {
+        Locale saved = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.GERMANY);
+            assertEquals("12.5", FixedPointFormat.format(12.5, 1));
+        } finally {
+            Locale.setDefault(saved);
+        }
+    }
+
+    @Test
+    public void appendWritesIntoBuilder() {
+        StringBuilder sb = new StringBuilder("Alt: ");
+        FixedPointFormat.append(sb, 123.456f, 0).append("m");
+        assertEquals("Alt: 123m", sb.toString());
+    }
+
+    @Test
+    public void handlesSpecialAndHugeValues() {
+        assertEquals("NaN", FixedPointFormat.format(Double.NaN, 1));
+        assertEquals("-Infinity", FixedPointFormat.format(Double.NEGATIVE_INFINITY, 1));
+        assertEquals(String.format(Locale.US, "%.1f", 1e20), FixedPointFormat.format(1e20, 1));
+        assertEquals("-0.0", FixedPointFormat.format(-0.04, 1));
+    }
+}
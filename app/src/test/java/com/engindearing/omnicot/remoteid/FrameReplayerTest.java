@@ -0,0 +1,98 @@
+package com.engindearing.omnicot.remoteid;
+
+import static org.junit.Assert.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class FrameReplayerTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static final class Received {
+        final String sensorId;
+        final String frame;
+        final long nanos;
+
+        Received(String sensorId, String frame, long nanos) {
+            this.sensorId = sensorId;
+            this.frame = frame;
+            this.nanos = nanos;
+        }
+    }
+
+    @Test
+    public void replayDeliversFramesAndSensorsInOrder() throws Exception {
+        File file = tmp.newFile("capture.bin");
+        long t0 = System.nanoTime();
+        try (FrameRecorder recorder = new FrameRecorder(file)) {
+            recorder.record("AA:01", frame("{\"a\":1}"), t0);
+            recorder.record("AA:02", frame("{\"b\":2}"), t0 + 1_000_000);
+            recorder.record("AA:01", frame("{\"c\":3}"), t0 + 2_000_000);
+            recorder.record(null, frame("{}"), t0 + 3_000_000);
+            assertEquals(4, recorder.getFrameCount());
+        }
+
+        List<Received> received = replay(file, FrameReplayer.AS_FAST_AS_POSSIBLE);
+        assertEquals(4, received.size());
+        assertEquals("AA:01", received.get(0).sensorId);
+        assertEquals("{\"a\":1}", received.get(0).frame);
+        assertEquals("AA:02", received.get(1).sensorId);
+        assertEquals("AA:01", received.get(2).sensorId);
+        assertEquals("{\"c\":3}", received.get(2).frame);
+        assertNull(received.get(3).sensorId);
+    }
+
+    @Test
+    public void acceleratedReplayKeepsScaledSpacing() throws Exception {
+        File file = tmp.newFile("timed.bin");
+        long t0 = System.nanoTime();
+        try (FrameRecorder recorder = new FrameRecorder(file)) {
+            // Idle time before the first frame is not replayed
+            recorder.record("AA:01", frame("{}"), t0 + TimeUnit.SECONDS.toNanos(5));
+            recorder.record("AA:01", frame("{}"), t0 + TimeUnit.SECONDS.toNanos(6));
+        }
+
+        long start = System.nanoTime();
+        List<Received> received = replay(file, 10);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long gapMs = TimeUnit.NANOSECONDS.toMillis(received.get(1).nanos - received.get(0).nanos);
+
+        // One recorded second at 10x is ~100 ms
+        assertTrue("gap " + gapMs, gapMs >= 90 && gapMs < 500);
+        assertTrue("elapsed " + elapsedMs, elapsedMs < 1000);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsFilesThatAreNotCaptures() throws Exception {
+        File file = tmp.newFile("junk.bin");
+        Files.write(file.toPath(), new byte[64]);
+        new FrameReplayer(file, (sensorId, frame) -> { }, FrameReplayer.AS_FAST_AS_POSSIBLE).run();
+    }
+
+    private static List<Received> replay(File file, double speed) throws IOException {
+        List<Received> received = new ArrayList<>();
+        FrameReplayer replayer = new FrameReplayer(file, (sensorId, frame) -> {
+            byte[] bytes = new byte[frame.remaining()];
+            frame.get(bytes);
+            received.add(new Received(sensorId, new String(bytes, StandardCharsets.UTF_8), System.nanoTime()));
+        }, speed);
+        assertEquals(replayer.run(), received.size());
+        return received;
+    }
+
+    private static ByteBuffer frame(String json) {
+        return ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
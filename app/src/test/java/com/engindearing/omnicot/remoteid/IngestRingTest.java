@@ -0,0 +1,91 @@
+package com.engindearing.omnicot.remoteid;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class IngestRingTest {
+
+    private static IngestRing<String> ring(int capacity, IngestRing.OverflowPolicy policy) {
+        // Key is the drone part of "drone:seq"
+        return new IngestRing<>(capacity, policy, item -> item.substring(0, item.indexOf(':')));
+    }
+
+    @Test
+    public void dropOldestPerKeyRemovesSupersededItem() throws Exception {
+        IngestRing<String> ring = ring(3, IngestRing.OverflowPolicy.DROP_OLDEST_PER_KEY);
+        assertTrue(ring.offer("A:1"));
+        assertTrue(ring.offer("B:1"));
+        assertTrue(ring.offer("C:1"));
+
+        // B:1 goes, order of the rest is kept
+        assertFalse(ring.offer("B:2"));
+        // No queued D, so the oldest overall goes
+        assertFalse(ring.offer("D:1"));
+
+        assertEquals(List.of("C:1", "B:2", "D:1"), drain(ring));
+        assertEquals(5, ring.getEnqueuedCount());
+        assertEquals(2, ring.getDroppedCount());
+        assertEquals(3, ring.getHighWaterMark());
+    }
+
+    @Test
+    public void dropNewestKeepsQueuedItems() throws Exception {
+        IngestRing<String> ring = ring(2, IngestRing.OverflowPolicy.DROP_NEWEST);
+        ring.offer("A:1");
+        ring.offer("A:2");
+        assertFalse(ring.offer("A:3"));
+        assertEquals(List.of("A:1", "A:2"), drain(ring));
+        assertEquals(1, ring.getDroppedCount());
+    }
+
+    @Test
+    public void blockWaitsForRoom() throws Exception {
+        IngestRing<String> ring = ring(1, IngestRing.OverflowPolicy.BLOCK);
+        ring.offer("A:1");
+        CountDownLatch offered = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            ring.offer("A:2");
+            offered.countDown();
+        });
+        producer.start();
+
+        assertFalse(offered.await(100, TimeUnit.MILLISECONDS));
+        assertEquals("A:1", ring.take());
+        assertTrue(offered.await(1, TimeUnit.SECONDS));
+        assertEquals("A:2", ring.take());
+        assertEquals(0, ring.getDroppedCount());
+    }
+
+    @Test
+    public void closeReleasesProducersAndConsumers() throws Exception {
+        IngestRing<String> ring = ring(1, IngestRing.OverflowPolicy.BLOCK);
+        ring.offer("A:1");
+        Thread producer = new Thread(() -> ring.offer("A:2"));
+        producer.start();
+        Thread.sleep(50);
+
+        ring.close();
+        producer.join(1000);
+        assertFalse(producer.isAlive());
+        assertFalse(ring.offer("A:3"));
+        // Queued items are still drained, then take() reports the end
+        assertEquals("A:1", ring.take());
+        assertNull(ring.take());
+    }
+
+    private static List<String> drain(IngestRing<String> ring) throws InterruptedException {
+        List<String> out = new ArrayList<>();
+        ring.close();
+        String item;
+        while ((item = ring.take()) != null) {
+            out.add(item);
+        }
+        return out;
+    }
+}
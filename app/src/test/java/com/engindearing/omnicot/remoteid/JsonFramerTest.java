@@ -0,0 +1,80 @@
+package com.engindearing.omnicot.remoteid;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class JsonFramerTest {
+
+    private final JsonFramer framer = new JsonFramer();
+    private final List<String> frames = new ArrayList<>();
+
+    private void feed(String text) {
+        framer.feed(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)),
+                frame -> frames.add(RemoteIdParser.decodeFrame(frame)));
+    }
+
+    @Test
+    public void splitsBackToBackFrames() {
+        feed("{\"a\":1}\n{\"b\":{\"c\":2}}\r\n{}");
+        assertEquals(3, frames.size());
+        assertEquals("{\"a\":1}", frames.get(0));
+        assertEquals("{\"b\":{\"c\":2}}", frames.get(1));
+        assertEquals("{}", frames.get(2));
+    }
+
+    @Test
+    public void ignoresBracesInsideStrings() {
+        feed("{\"description\":\"survey } grid {north\",\"opId\":\"op\\\"}{\\\"\"}{\"x\":1}");
+        assertEquals(2, frames.size());
+        assertEquals("{\"description\":\"survey } grid {north\",\"opId\":\"op\\\"}{\\\"\"}", frames.get(0));
+        assertEquals("{\"x\":1}", frames.get(1));
+    }
+
+    @Test
+    public void reassemblesFramesSplitAcrossReads() {
+        String frame = "{\"uasId\":\"aa:bb\",\"description\":\"{ \\\\\",\"rssi\":-70}";
+        for (int split = 1; split < frame.length(); split++) {
+            frames.clear();
+            feed(frame.substring(0, split));
+            assertTrue(frames.isEmpty());
+            feed(frame.substring(split) + "{\"n\":");
+            assertEquals("split at " + split, frame, frames.get(0));
+            feed("1}");
+            assertEquals("{\"n\":1}", frames.get(1));
+        }
+    }
+
+    @Test
+    public void wholeFramesAreViewsOverTheInput() {
+        byte[] bytes = "junk{\"a\":1}".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer input = ByteBuffer.wrap(bytes);
+        List<ByteBuffer> seen = new ArrayList<>();
+        framer.feed(input, frame -> {
+            assertSame(bytes, frame.array());
+            assertEquals(4, frame.position());
+            assertEquals(bytes.length, frame.limit());
+            seen.add(frame);
+        });
+        assertEquals(1, seen.size());
+        assertFalse(input.hasRemaining());
+    }
+
+    @Test
+    public void dropsOversizedFrameAndResyncs() {
+        JsonFramer small = new JsonFramer(16);
+        List<String> out = new ArrayList<>();
+        JsonFramer.FrameHandler handler = frame -> out.add(RemoteIdParser.decodeFrame(frame));
+        small.feed(ByteBuffer.wrap("{\"long\":\"aaaaaaaa".getBytes(StandardCharsets.UTF_8)), handler);
+        small.feed(ByteBuffer.wrap("aaaaaaaaaaaa\"}".getBytes(StandardCharsets.UTF_8)), handler);
+        small.feed(ByteBuffer.wrap("{\"ok\":1}".getBytes(StandardCharsets.UTF_8)), handler);
+        assertEquals(1, small.getFramesDropped());
+        assertEquals(1, out.size());
+        assertEquals("{\"ok\":1}", out.get(0));
+    }
+}
@@ -0,0 +1,117 @@
+package com.engindearing.omnicot.remoteid;
+
+import static org.junit.Assert.*;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Differential test: the streaming parser must produce exactly what the
+ * org.json based RemoteIdParser produces, field for field, over a corpus of
+ * gyb_detect frames (see resources/remoteid/gyb_detect_frames.jsonl).
+ */
+public class RemoteIdStreamParserTest {
+
+    private static final String CORPUS = "/remoteid/gyb_detect_frames.jsonl";
+
+    private static List<String> frames;
+
+    @BeforeClass
+    public static void loadCorpus() throws Exception {
+        frames = new ArrayList<>();
+        try (InputStream in = RemoteIdStreamParserTest.class.getResourceAsStream(CORPUS)) {
+            assertNotNull("missing corpus " + CORPUS, in);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    frames.add(line);
+                }
+            }
+        }
+        assertFalse(frames.isEmpty());
+    }
+
+    @Test
+    public void matchesOrgJsonParserFieldForField() throws Exception {
+        RemoteIdStreamParser parser = new RemoteIdStreamParser();
+        int fastPath = 0;
+        int detections = 0;
+
+        for (String frame : frames) {
+            Object expected = RemoteIdParser.parseMessage(frame);
+            RemoteIdData streamed = parser.parse(wrap(frame));
+
+            if (streamed != null) {
+                fastPath++;
+                assertTrue("stream parser accepted a non-detection frame: " + frame,
+                        expected instanceof RemoteIdData);
+                assertSameFields(frame, expected, streamed);
+            }
+            if (expected instanceof RemoteIdData) {
+                detections++;
+            }
+
+            // The public entry point must agree whichever path it takes
+            Object viaBytes = RemoteIdParser.parseMessage(wrap(frame));
+            if (expected == null) {
+                assertNull(frame, viaBytes);
+            } else {
+                assertNotNull(frame, viaBytes);
+                assertSame(frame, expected.getClass(), viaBytes.getClass());
+                assertSameFields(frame, expected, viaBytes);
+            }
+        }
+
+        // Plain detection frames must not fall back to org.json
+        assertTrue("fast path taken for only " + fastPath + " of " + detections + " detections",
+                fastPath >= detections - 4);
+    }
+
+    @Test
+    public void doesNotMoveBufferBounds() {
+        String frame = frames.get(frames.size() / 2);
+        ByteBuffer buffer = ByteBuffer.wrap(("xx" + frame + "yy").getBytes(StandardCharsets.UTF_8));
+        buffer.position(2).limit(buffer.capacity() - 2);
+
+        assertNotNull(RemoteIdParser.parseMessage(buffer));
+        assertEquals(2, buffer.position());
+        assertEquals(buffer.capacity() - 2, buffer.limit());
+    }
+
+    @Test
+    public void rejectsTruncatedFrames() {
+        RemoteIdStreamParser parser = new RemoteIdStreamParser();
+        for (String frame : frames) {
+            for (int cut = 1; cut < frame.length() - 1; cut += 7) {
+                assertNull(parser.parse(wrap(frame.substring(0, cut))));
+            }
+        }
+    }
+
+    private static ByteBuffer wrap(String frame) {
+        return ByteBuffer.wrap(frame.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertSameFields(String frame, Object expected, Object actual) throws Exception {
+        for (Field field : expected.getClass().getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || field.getName().equals("timestamp")) {
+                continue; // timestamp is the parse time
+            }
+            field.setAccessible(true);
+            Object e = field.get(expected);
+            Object a = field.get(actual);
+            assertEquals(field.getName() + " in " + frame, e, a);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.engindearing.omnicot.remoteid;
+
+import static org.junit.Assert.*;
+
+import com.atakmap.coremap.cot.event.CotDetail;
+import com.atakmap.coremap.cot.event.CotEvent;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+
+public class RemoteIdToCotConverterTest {
+
+    private static final double METERS_PER_DEGREE = 111_320.0;
+    private static final double LAT = 47.0;
+    private static final double LON = -122.0;
+
+    @After
+    public void resetThreshold() {
+        RemoteIdToCotConverter.setOperatorMoveThresholdMeters(
+                RemoteIdToCotConverter.DEFAULT_OPERATOR_MOVE_THRESHOLD_METERS);
+    }
+
+    @Test
+    public void operatorIsSkippedUntilItMovesOrGoesStale() {
+        RemoteIdData data = detection("OP-SKIP");
+        assertNotNull(operator(convert(data, 0)));
+
+        // 5 m is under the default 10 m threshold
+        data.setOpLat(LAT + 5 / METERS_PER_DEGREE);
+        List<CotEvent> events = convert(data, 1000);
+        assertNull(operator(events));
+        assertNotNull(drone(events));
+
+        // Moved 15 m from where it was last sent
+        data.setOpLat(LAT + 15 / METERS_PER_DEGREE);
+        assertNotNull(operator(convert(data, 2000)));
+
+        // Not moved, but the last marker is 60 s old
+        assertNull(operator(convert(data, 61_000)));
+        assertNotNull(operator(convert(data, 62_000)));
+    }
+
+    @Test
+    public void operatorIsResentWhenTheDroneGpsStateChanges() {
+        RemoteIdData data = detection("OP-GPS");
+        assertNotNull(operator(convert(data, 0)));
+
+        data.setUasLat(0);
+        data.setUasLon(0);
+        List<CotEvent> events = convert(data, 1000);
+        assertNull(drone(events));
+        assertNotNull(operator(events));
+    }
+
+    @Test
+    public void moveThresholdIsConfigurable() {
+        RemoteIdToCotConverter.setOperatorMoveThresholdMeters(2);
+        RemoteIdData data = detection("OP-THRESHOLD");
+        assertNotNull(operator(convert(data, 0)));
+
+        data.setOpLat(LAT + 1 / METERS_PER_DEGREE);
+        assertNull(operator(convert(data, 1000)));
+        // Sent at 0; 3 m from there
+        data.setOpLat(LAT + 3 / METERS_PER_DEGREE);
+        assertNotNull(operator(convert(data, 2000)));
+    }
+
+    @Test
+    public void remarksAreReusedWhileTheValuesShownAreUnchanged() {
+        RemoteIdData data = detection("REMARKS-SAME");
+        String first = remarks(drone(convert(data, 0)));
+
+        // The drone moves and altitude changes below the precision shown
+        data.setUasLat(LAT + 0.001);
+        data.setUasHae(100.2f);
+        String second = remarks(drone(convert(data, 1000)));
+        assertSame(first, second);
+    }
+
+    @Test
+    public void remarksAreRebuiltWhenAValueShownChanges() {
+        RemoteIdData data = detection("REMARKS-CHANGED");
+        String first = remarks(drone(convert(data, 0)));
+
+        data.setUasHae(130);
+        String altitude = remarks(drone(convert(data, 1000)));
+        assertNotEquals(first, altitude);
+        assertTrue(altitude, altitude.contains("130m MSL"));
+
+        data.setRssi(-40);
+        String rssi = remarks(drone(convert(data, 2000)));
+        assertNotEquals(altitude, rssi);
+        assertTrue(rssi, rssi.contains("-40"));
+
+        // A changed identity field rebuilds the template along with its remarks
+        data.setDescription("Survey flight");
+        String description = remarks(drone(convert(data, 3000)));
+        assertTrue(description, description.contains("Desc: Survey flight"));
+    }
+
+    private static List<CotEvent> convert(RemoteIdData data, long nowMs) {
+        return RemoteIdToCotConverter.convertToCotEvents(data,
+                data.getUasLat(), data.getUasLon(), data.getUasHae(), nowMs);
+    }
+
+    private static CotEvent drone(List<CotEvent> events) {
+        for (CotEvent event : events) {
+            if (event.getUID().startsWith("DRONE-")) {
+                return event;
+            }
+        }
+        return null;
+    }
+
+    private static CotEvent operator(List<CotEvent> events) {
+        for (CotEvent event : events) {
+            if (event.getUID().startsWith("RID-OP-")) {
+                return event;
+            }
+        }
+        return null;
+    }
+
+    private static String remarks(CotEvent event) {
+        CotDetail detail = event.getDetail();
+        for (int i = 0; i < detail.childCount(); i++) {
+            if ("remarks".equals(detail.getChild(i).getElementName())) {
+                return detail.getChild(i).getInnerText();
+            }
+        }
+        fail("No remarks in " + event.getUID());
+        return null;
+    }
+
+    private static RemoteIdData detection(String serial) {
+        RemoteIdData data = new RemoteIdData();
+        data.setSerialNumber(serial);
+        data.setUasLat(LAT);
+        data.setUasLon(LON);
+        data.setUasHae(100);
+        data.setUasHag(50);
+        data.setUasHSpeed(5);
+        data.setUasHeading(90);
+        data.setOpLat(LAT);
+        data.setOpLon(LON + 0.01);
+        data.setOpLocationType(1);
+        data.setRssi(-60);
+        data.setRecvMethod(16);
+        return data;
+    }
+}
@@ -0,0 +1,54 @@
+package com.engindearing.omnicot.remoteid;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SensorStatsTest {
+
+    @Test
+    public void healthFollowsConnectionAndActivity() {
+        SensorStats stats = new SensorStats("AA:BB", "gyb_detect_1");
+        assertEquals(SensorStats.Health.CONNECTING, stats.getHealth(0));
+
+        stats.markConnected(1_000);
+        assertEquals(SensorStats.Health.HEALTHY, stats.getHealth(2_000));
+        // Connected but silent
+        assertEquals(SensorStats.Health.QUIET, stats.getHealth(1_000 + SensorStats.QUIET_AFTER_MS + 1));
+
+        stats.recordFrame(100, 40_000);
+        assertEquals(SensorStats.Health.HEALTHY, stats.getHealth(41_000));
+
+        stats.markDisconnected(42_000);
+        assertEquals(SensorStats.Health.DISCONNECTED, stats.getHealth(42_000));
+    }
+
+    @Test
+    public void ratesAreMeasuredOverCompletedWindows() {
+        SensorStats stats = new SensorStats("AA:BB", "gyb_detect_1");
+        stats.markConnected(0);
+        for (int i = 0; i < 50; i++) {
+            stats.recordFrame(200, i * 100L);
+        }
+        // Window still open: no rate yet
+        assertEquals(0, stats.getFrameRate(5_000), 0);
+
+        assertEquals(5.0, stats.getFrameRate(10_000), 1e-9);
+        assertEquals(1000.0, stats.getByteRate(10_000), 1e-9);
+        assertEquals(50, stats.getFrameCount());
+        assertEquals(10_000, stats.getByteCount());
+
+        // A silent window brings the rate back down
+        assertEquals(0, stats.getFrameRate(20_000), 0);
+    }
+
+    @Test
+    public void countsDetectionsAndUnparsedFrames() {
+        SensorStats stats = new SensorStats("AA:BB", "gyb_detect_1");
+        stats.recordDetection();
+        stats.recordDetection();
+        stats.recordUnparsed();
+        assertEquals(2, stats.getDetectionCount());
+        assertEquals(1, stats.getUnparsedCount());
+    }
+}
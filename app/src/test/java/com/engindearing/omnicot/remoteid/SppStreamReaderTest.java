@@ -0,0 +1,114 @@
+package com.engindearing.omnicot.remoteid;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds a piped stream (standing in for the SPP socket) into SppStreamReader
+ * and checks that frames are delivered as soon as they are written.
+ */
+public class SppStreamReaderTest {
+
+    private static final String FRAME =
+            "{\"uasId\":\"60:60:1f:aa:bb:cc\",\"rssi\":-61,\"uasLat\":\"47.6205\",\"uasLon\":\"-122.3493\"}";
+
+    private PipedOutputStream sppOut;
+    private PipedInputStream sppIn;
+    private SppStreamReader reader;
+    private Thread readThread;
+    private final BlockingQueue<Long> arrivals = new LinkedBlockingQueue<>();
+    private volatile Throwable readError;
+
+    @Before
+    public void setUp() throws IOException {
+        sppOut = new PipedOutputStream();
+        sppIn = new PipedInputStream(sppOut, 8192);
+        reader = new SppStreamReader(sppIn, frame -> arrivals.add(System.nanoTime()));
+        readThread = new Thread(() -> {
+            try {
+                reader.readLoop();
+            } catch (Throwable t) {
+                readError = t;
+            }
+        }, "spp-test-reader");
+        readThread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        reader.stop();
+        readThread.join(1000);
+    }
+
+    @Test
+    public void deliversFramesWithoutPollingDelay() throws Exception {
+        final int frames = 200;
+        long[] latencies = new long[frames];
+        byte[] bytes = FRAME.getBytes(StandardCharsets.UTF_8);
+
+        // Let the reader block in read() with nothing pending, like an idle gyb_detect
+        Thread.sleep(50);
+
+        for (int i = 0; i < frames; i++) {
+            long sent = System.nanoTime();
+            sppOut.write(bytes);
+            sppOut.flush();
+            Long received = arrivals.poll(1, TimeUnit.SECONDS);
+            assertNotNull("frame " + i + " not delivered", received);
+            latencies[i] = received - sent;
+        }
+
+        Arrays.sort(latencies);
+        long medianMicros = TimeUnit.NANOSECONDS.toMicros(latencies[frames / 2]);
+        // The old ready()/sleep(10) loop put the median around 5 ms
+        assertTrue("median latency " + medianMicros + "us", medianMicros < 2000);
+        assertNull(readError);
+    }
+
+    @Test
+    public void frameSplitAcrossWritesIsReassembled() throws Exception {
+        byte[] bytes = FRAME.getBytes(StandardCharsets.UTF_8);
+        int half = bytes.length / 2;
+        sppOut.write(bytes, 0, half);
+        sppOut.flush();
+        assertNull(arrivals.poll(50, TimeUnit.MILLISECONDS));
+
+        sppOut.write(bytes, half, bytes.length - half);
+        sppOut.flush();
+        assertNotNull(arrivals.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void stopUnblocksIdleReader() throws Exception {
+        Thread.sleep(50);
+        assertTrue(readThread.isAlive());
+
+        long start = System.nanoTime();
+        reader.stop();
+        readThread.join(1000);
+
+        assertFalse("reader still blocked after stop()", readThread.isAlive());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+        assertNull("stop() should not surface as a read error", readError);
+    }
+
+    @Test
+    public void endOfStreamEndsLoop() throws Exception {
+        sppOut.close();
+        readThread.join(1000);
+        assertFalse(readThread.isAlive());
+        assertNull(readError);
+    }
+}
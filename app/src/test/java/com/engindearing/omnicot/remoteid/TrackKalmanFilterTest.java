@@ -0,0 +1,146 @@
+package com.engindearing.omnicot.remoteid;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class TrackKalmanFilterTest {
+
+    private static final double METERS_PER_DEGREE = 111_320.0;
+    private static final double LAT = 47.0;
+    private static final double LON = -122.0;
+
+    @Test
+    public void firstFixSeedsPositionAndVelocity() {
+        TrackKalmanFilter filter = new TrackKalmanFilter();
+        assertFalse(filter.isInitialized());
+        // Heading east at 10 m/s, climbing 1 m/s
+        filter.update(0, LAT, LON, 100, 10, 90, 1, 5, 5, 1);
+        assertTrue(filter.isInitialized());
+        assertEquals(10, filter.getSpeed(), 1e-6);
+        assertEquals(90, filter.getCourse(), 1e-6);
+
+        // One second later the drone should be ~10 m east and 1 m higher
+        double east = (filter.predictLon(1000) - LON) * METERS_PER_DEGREE * Math.cos(Math.toRadians(LAT));
+        assertEquals(10, east, 1e-3);
+        assertEquals(LAT, filter.predictLat(1000), 1e-9);
+        assertEquals(101, filter.predictHae(1000), 1e-6);
+    }
+
+    @Test
+    public void tracksConstantVelocityThroughNoisyFixes() {
+        TrackKalmanFilter filter = new TrackKalmanFilter();
+        Random random = new Random(42);
+        // North at 15 m/s, fixes once a second with ~5 m of noise
+        for (int i = 0; i <= 30; i++) {
+            double north = 15.0 * i + random.nextGaussian() * 5;
+            filter.update(i * 1000L, LAT + north / METERS_PER_DEGREE, LON, 50,
+                    15, 0, 0, 5, 5, 1);
+        }
+        assertEquals(15, filter.getSpeed(), 0.5);
+
+        // Predict 2 s past the last fix and compare with the true track
+        double north = (filter.predictLat(32_000) - LAT) * METERS_PER_DEGREE;
+        assertEquals(15.0 * 32, north, 6);
+        assertTrue(filter.predictHorizontalError(32_000) > filter.predictHorizontalError(30_000));
+    }
+
+    @Test
+    public void accurateFixesAreTrustedMoreThanInaccurateOnes() {
+        TrackKalmanFilter precise = new TrackKalmanFilter();
+        TrackKalmanFilter sloppy = new TrackKalmanFilter();
+        precise.update(0, LAT, LON, 0, 0, 0, 0, 30, 5, 1);
+        sloppy.update(0, LAT, LON, 0, 0, 0, 0, 30, 5, 1);
+
+        // Same 20 m jump north, reported with very different accuracy
+        double lat = LAT + 20 / METERS_PER_DEGREE;
+        precise.update(100, lat, LON, 0, 0, 0, 0, 1, 5, 1);
+        sloppy.update(100, lat, LON, 0, 0, 0, 0, 100, 5, 1);
+
+        double preciseNorth = (precise.predictLat(100) - LAT) * METERS_PER_DEGREE;
+        double sloppyNorth = (sloppy.predictLat(100) - LAT) * METERS_PER_DEGREE;
+        assertTrue(preciseNorth > 19);
+        assertTrue(sloppyNorth < 5);
+    }
+
+    @Test
+    public void predictorRendersOnlyBetweenFramesAndWithinHorizon() {
+        List<double[]> rendered = new ArrayList<>();
+        TrackPredictor predictor = new TrackPredictor(
+                (latest, lat, lon, hae) -> rendered.add(new double[]{lat, lon, hae}));
+        predictor.setRenderRateHz(4); // 250 ms
+        predictor.setMaxPredictionMs(3000);
+
+        predictor.update(detection("moving", 10_000, 20));
+        predictor.update(detection("hovering", 10_000, 0));
+
+        // A fresh frame needs no prediction
+        assertEquals(0, predictor.renderDue(10_100));
+
+        assertEquals(1, predictor.renderDue(11_000));
+        double north = (rendered.get(0)[0] - LAT) * METERS_PER_DEGREE;
+        assertEquals(20, north, 1e-3);
+
+        // Past the horizon the marker stays at the last real fix
+        assertEquals(0, predictor.renderDue(13_500));
+        assertEquals(2, predictor.getTrackCount());
+        assertEquals(1, predictor.getPredictionCount());
+    }
+
+    @Test
+    public void fastBroadcasterBehindCoalescerIsPredictedWithoutSnappingBack() {
+        // Every marker drawn, real or predicted, as northing in meters
+        List<Double> drawn = new ArrayList<>();
+        TrackPredictor predictor = new TrackPredictor(
+                (latest, lat, lon, hae) -> drawn.add((lat - LAT) * METERS_PER_DEGREE));
+        predictor.setRenderRateHz(2); // 500 ms
+        double[] estimate = new double[3];
+        long[] clock = new long[1];
+        DetectionCoalescer coalescer = new DetectionCoalescer(data -> {
+            assertTrue(predictor.renderFrame(data, clock[0], estimate));
+            drawn.add((estimate[0] - LAT) * METERS_PER_DEGREE);
+        });
+        coalescer.setMinIntervalMs(1000);
+
+        // 4 Hz broadcasts from a drone flying north at 20 m/s
+        int frames = 0;
+        for (long t = 0; t <= 5000; t += 250) {
+            clock[0] = t;
+            RemoteIdData data = detection("fast", t, 20);
+            data.setUasLat(LAT + 20 * t / 1000.0 / METERS_PER_DEGREE);
+            predictor.update(data);
+            coalescer.offer(data, t);
+            coalescer.flushDue(t);
+            predictor.renderDue(t);
+            frames++;
+        }
+
+        // Markers were drawn more often than the coalescer lets frames through
+        long predicted = predictor.getPredictionCount();
+        assertTrue(predicted > 0);
+        assertEquals(coalescer.getEmittedCount() + predicted, drawn.size());
+        assertTrue(drawn.size() > coalescer.getEmittedCount());
+        assertTrue(coalescer.getEmittedCount() < frames);
+        // and never moved backwards along the track
+        for (int i = 1; i < drawn.size(); i++) {
+            assertTrue("Marker " + i + " moved back", drawn.get(i) >= drawn.get(i - 1) - 1e-6);
+        }
+    }
+
+    private static RemoteIdData detection(String serial, long timeMs, float northSpeed) {
+        RemoteIdData data = new RemoteIdData();
+        data.setSerialNumber(serial);
+        data.setTimestamp(timeMs);
+        data.setUasLat(LAT);
+        data.setUasLon(LON);
+        data.setUasHae(100);
+        data.setUasHSpeed(northSpeed);
+        data.setUasHeading(0);
+        data.setUasHorizontalError(3);
+        return data;
+    }
+}
@@ -0,0 +1,80 @@
+package com.engindearing.omnicot.bench;
+
+import android.content.Context;
+
+import com.engindearing.omnicot.AffiliationData;
+import com.engindearing.omnicot.AffiliationManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * AffiliationManager lookups and updates with {@code entries} UIDs already
+ * stored. Updates measure the caller's cost; the log write happens on the
+ * persist thread. JMH forks per parameter, so each run gets a fresh manager.
+ */
+@State(Scope.Benchmark)
+public class AffiliationBenchmark {
+
+    @Param({"1000", "100000"})
+    public int entries;
+
+    private File dir;
+    private AffiliationManager manager;
+    private String[] uids;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("omnicot-bench").toFile();
+        manager = AffiliationManager.getInstance(new Context(dir));
+        uids = new String[entries];
+        for (int i = 0; i < entries; i++) {
+            uids[i] = "BENCH-UID-" + i;
+            manager.setAffiliation(new AffiliationData(uids[i],
+                    AffiliationData.Affiliation.ASSUMED_FRIENDLY, "bench", "server"));
+        }
+        manager.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        manager.flush();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Benchmark
+    public Object get() {
+        return manager.getAffiliation(uids[advance()]);
+    }
+
+    @Benchmark
+    public void set() {
+        String uid = uids[advance()];
+        AffiliationData.Affiliation affiliation = (next & 1) == 0
+                ? AffiliationData.Affiliation.ASSUMED_HOSTILE
+                : AffiliationData.Affiliation.ASSUMED_FRIENDLY;
+        manager.setAffiliation(new AffiliationData(uid, affiliation, "bench", "server"));
+    }
+
+    private int advance() {
+        // Large stride so consecutive operations touch unrelated entries
+        next = (next + 7919) % uids.length;
+        return next;
+    }
+}
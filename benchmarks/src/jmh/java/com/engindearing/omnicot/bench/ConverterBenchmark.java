@@ -0,0 +1,64 @@
+package com.engindearing.omnicot.bench;
+
+import com.engindearing.omnicot.remoteid.RemoteIdData;
+import com.engindearing.omnicot.remoteid.RemoteIdParser;
+import com.engindearing.omnicot.remoteid.RemoteIdToCotConverter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RemoteIdToCotConverter.convertToCotEvents for a busy airspace. Each
+ * operation converts one detection from one of {@code drones} aircraft, each
+ * nudged along so position-dependent caching behaves as in live traffic.
+ * The target is at least 10k conversions per second on a phone-class core.
+ */
+@State(Scope.Thread)
+public class ConverterBenchmark {
+
+    @Param({"1", "100"})
+    public int drones;
+
+    private RemoteIdData[] detections;
+    private int next;
+    private long step;
+
+    @Setup
+    public void setUp() {
+        // The corpus also holds malformed frames; only real detections are converted
+        List<String> corpus = new ArrayList<>();
+        for (String frame : Corpus.detections()) {
+            if (parse(frame) != null) {
+                corpus.add(frame);
+            }
+        }
+        detections = new RemoteIdData[drones];
+        for (int i = 0; i < drones; i++) {
+            RemoteIdData data = parse(corpus.get(i % corpus.size()));
+            data.setSerialNumber("BENCH-" + i);
+            detections[i] = data;
+        }
+    }
+
+    @Benchmark
+    public Object convert() {
+        RemoteIdData data = detections[next];
+        next = next + 1 < detections.length ? next + 1 : 0;
+        // ~1 m north per step, wrapping every 64 steps
+        data.setUasLat(data.getUasLat() + ((step++ & 63) == 0 ? -63e-5 : 1e-5));
+        return RemoteIdToCotConverter.convertToCotEvents(data);
+    }
+
+    private static RemoteIdData parse(String frame) {
+        Object parsed = RemoteIdParser.parseMessage(ByteBuffer.wrap(frame.getBytes(StandardCharsets.UTF_8)));
+        return parsed instanceof RemoteIdData ? (RemoteIdData) parsed : null;
+    }
+}
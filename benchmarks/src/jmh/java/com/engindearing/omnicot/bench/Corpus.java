@@ -0,0 +1,91 @@
+package com.engindearing.omnicot.bench;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recorded gyb_detect frames shared by the benchmarks. Loaded from the same
+ * corpus the parser tests use, so benchmark inputs track real traffic.
+ */
+final class Corpus {
+
+    private static final String RESOURCE = "/remoteid/gyb_detect_frames.jsonl";
+
+    /** Size of the synthetic SPP stream fed to the framers */
+    static final int STREAM_SIZE = 64 * 1024;
+
+    private static List<String> frames;
+
+    private Corpus() {
+    }
+
+    static synchronized List<String> frames() {
+        if (frames == null) {
+            List<String> loaded = new ArrayList<>();
+            try (InputStream in = Corpus.class.getResourceAsStream(RESOURCE)) {
+                if (in == null) {
+                    throw new IllegalStateException("Missing corpus " + RESOURCE);
+                }
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        loaded.add(line);
+                    }
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not read corpus " + RESOURCE, e);
+            }
+            frames = loaded;
+        }
+        return frames;
+    }
+
+    /**
+     * Drone detection frames only
+     */
+    static List<String> detections() {
+        List<String> detections = new ArrayList<>();
+        for (String frame : frames()) {
+            if (frame.contains("\"uasId\"") || frame.contains("\"remoteId\"")) {
+                detections.add(frame);
+            }
+        }
+        return detections;
+    }
+
+    /**
+     * Battery status frames only
+     */
+    static List<String> batteryStatus() {
+        List<String> battery = new ArrayList<>();
+        for (String frame : frames()) {
+            if (frame.contains("\"batteryLevel\"")) {
+                battery.add(frame);
+            }
+        }
+        return battery;
+    }
+
+    /**
+     * The corpus repeated back to back, newline separated, until it reaches
+     * {@link #STREAM_SIZE} bytes, as the SPP link would deliver it
+     */
+    static byte[] stream() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(STREAM_SIZE + 4096);
+        while (out.size() < STREAM_SIZE) {
+            for (String frame : frames()) {
+                byte[] bytes = frame.getBytes(StandardCharsets.UTF_8);
+                out.write(bytes, 0, bytes.length);
+                out.write('\n');
+            }
+        }
+        return out.toByteArray();
+    }
+}
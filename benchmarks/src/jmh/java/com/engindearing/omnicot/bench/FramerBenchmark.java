@@ -0,0 +1,52 @@
+package com.engindearing.omnicot.bench;
+
+import com.engindearing.omnicot.remoteid.JsonFramer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Splitting a 64 KB SPP stream into JSON frames: JsonFramer against the old
+ * brace counter. One operation frames the whole stream.
+ */
+@State(Scope.Thread)
+public class FramerBenchmark {
+
+    /** Bytes handed to the framer per read, as the socket would deliver them */
+    @Param({"256", "8192"})
+    public int chunkSize;
+
+    private byte[] stream;
+    private JsonFramer framer;
+
+    @Setup
+    public void setUp() {
+        stream = Corpus.stream();
+        framer = new JsonFramer();
+    }
+
+    @Benchmark
+    public long jsonFramer(Blackhole bh) {
+        JsonFramer.FrameHandler handler = frame -> bh.consume(frame.remaining());
+        ByteBuffer chunk = ByteBuffer.wrap(stream);
+        for (int pos = 0; pos < stream.length; pos += chunkSize) {
+            chunk.limit(Math.min(stream.length, pos + chunkSize)).position(pos);
+            framer.feed(chunk, handler);
+        }
+        return framer.getFramesEmitted();
+    }
+
+    @Benchmark
+    public int legacyBraceCounter(Blackhole bh) throws IOException {
+        // The legacy reader does its own buffering, so chunk size doesn't apply
+        return LegacyBraceFramer.frame(new ByteArrayInputStream(stream), bh::consume);
+    }
+}
@@ -0,0 +1,65 @@
+package com.engindearing.omnicot.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * The brace-counting framer BluetoothManager used before JsonFramer, kept as
+ * a baseline. Decodes the stream to chars, accumulates each object in a
+ * StringBuilder and hands out a String per frame. Braces inside JSON strings
+ * are counted too, as they were.
+ */
+final class LegacyBraceFramer {
+
+    interface FrameHandler {
+        void onFrame(String json);
+    }
+
+    private LegacyBraceFramer() {
+    }
+
+    /**
+     * Frame the whole stream
+     *
+     * @return number of frames
+     */
+    static int frame(InputStream inputStream, FrameHandler handler) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream), 8192);
+        StringBuilder jsonBuffer = new StringBuilder();
+        int braceCount = 0;
+        boolean inJson = false;
+        char[] buffer = new char[1024];
+        int frames = 0;
+
+        int numRead;
+        while ((numRead = reader.read(buffer, 0, buffer.length)) != -1) {
+            for (int i = 0; i < numRead; i++) {
+                char c = buffer[i];
+                if (c == '{') {
+                    if (!inJson) {
+                        inJson = true;
+                        jsonBuffer.setLength(0);
+                    }
+                    braceCount++;
+                    jsonBuffer.append(c);
+                } else if (c == '}') {
+                    if (inJson) {
+                        jsonBuffer.append(c);
+                        braceCount--;
+                        if (braceCount == 0) {
+                            handler.onFrame(jsonBuffer.toString());
+                            frames++;
+                            inJson = false;
+                            jsonBuffer.setLength(0);
+                        }
+                    }
+                } else if (inJson) {
+                    jsonBuffer.append(c);
+                }
+            }
+        }
+        return frames;
+    }
+}
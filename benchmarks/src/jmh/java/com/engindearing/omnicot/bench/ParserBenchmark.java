@@ -0,0 +1,64 @@
+package com.engindearing.omnicot.bench;
+
+import com.engindearing.omnicot.remoteid.RemoteIdParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * RemoteIdParser.parseMessage on single frames: the org.json String path
+ * against the streaming ByteBuffer path. Each operation parses the next frame
+ * of the corpus.
+ */
+@State(Scope.Thread)
+public class ParserBenchmark {
+
+    private String[] detectionStrings;
+    private ByteBuffer[] detectionFrames;
+    private ByteBuffer[] batteryFrames;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<String> detections = Corpus.detections();
+        detectionStrings = detections.toArray(new String[0]);
+        detectionFrames = toBuffers(detections);
+        batteryFrames = toBuffers(Corpus.batteryStatus());
+    }
+
+    @Benchmark
+    public Object detectionFromString() {
+        return RemoteIdParser.parseMessage(detectionStrings[advance(detectionStrings.length)]);
+    }
+
+    @Benchmark
+    public Object detectionFromBytes() {
+        return RemoteIdParser.parseMessage(detectionFrames[advance(detectionFrames.length)]);
+    }
+
+    /** Non-detection frames fall back to org.json after the streaming parser declines */
+    @Benchmark
+    public Object batteryFromBytes() {
+        return RemoteIdParser.parseMessage(batteryFrames[advance(batteryFrames.length)]);
+    }
+
+    private int advance(int length) {
+        int i = next;
+        next = i + 1 < length ? i + 1 : 0;
+        return i % length;
+    }
+
+    private static ByteBuffer[] toBuffers(List<String> frames) {
+        ByteBuffer[] buffers = new ByteBuffer[frames.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(frames.get(i).getBytes(StandardCharsets.UTF_8));
+        }
+        return buffers;
+    }
+}
@@ -0,0 +1,45 @@
+package com.engindearing.omnicot.bench;
+
+import com.engindearing.omnicot.remoteid.RemoteIdData;
+import com.engindearing.omnicot.remoteid.RemoteIdParser;
+import com.engindearing.omnicot.remoteid.RemoteIdToCotConverter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * One detection frame through parse and convert, i.e. the work done per
+ * frame on the ingest worker before dispatch
+ */
+@State(Scope.Thread)
+public class PipelineBenchmark {
+
+    private ByteBuffer[] frames;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<String> detections = Corpus.detections();
+        frames = new ByteBuffer[detections.size()];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = ByteBuffer.wrap(detections.get(i).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Benchmark
+    public Object parseAndConvert() {
+        ByteBuffer frame = frames[next];
+        next = next + 1 < frames.length ? next + 1 : 0;
+        Object result = RemoteIdParser.parseMessage(frame);
+        if (result instanceof RemoteIdData) {
+            return RemoteIdToCotConverter.convertToCotEvents((RemoteIdData) result);
+        }
+        return result;
+    }
+}
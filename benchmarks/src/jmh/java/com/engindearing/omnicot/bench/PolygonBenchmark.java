@@ -0,0 +1,85 @@
+package com.engindearing.omnicot.bench;
+
+import com.engindearing.omnicot.CompiledPolygon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Point-in-AOI tests against a jagged star-shaped outline of {@code vertices}
+ * points: the compiled slab tables against a plain ray cast over the lat/lon
+ * arrays, plus the one-off cost of compiling. Query points are spread over the
+ * outline's bounds so about half fall inside.
+ */
+@State(Scope.Benchmark)
+public class PolygonBenchmark {
+
+    private static final int POINTS = 1024;
+
+    @Param({"10", "100", "1000"})
+    public int vertices;
+
+    private double[] lats;
+    private double[] lons;
+    private CompiledPolygon polygon;
+    private double[] pointLats;
+    private double[] pointLons;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(vertices);
+        lats = new double[vertices];
+        lons = new double[vertices];
+        for (int i = 0; i < vertices; i++) {
+            double angle = 2 * Math.PI * i / vertices;
+            double radius = 0.01 + random.nextDouble() * 0.04;
+            lats[i] = 47.0 + radius * Math.sin(angle);
+            lons[i] = -122.0 + radius * Math.cos(angle);
+        }
+        polygon = new CompiledPolygon(lats, lons);
+        pointLats = new double[POINTS];
+        pointLons = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            pointLats[i] = 46.95 + random.nextDouble() * 0.1;
+            pointLons[i] = -122.05 + random.nextDouble() * 0.1;
+        }
+    }
+
+    @Benchmark
+    public boolean compiled() {
+        int i = advance();
+        return polygon.contains(pointLats[i], pointLons[i]);
+    }
+
+    @Benchmark
+    public boolean naiveRayCast() {
+        int i = advance();
+        double lat = pointLats[i];
+        double lon = pointLons[i];
+        boolean inside = false;
+        for (int a = 0, b = lats.length - 1; a < lats.length; b = a++) {
+            if ((lats[a] > lat) != (lats[b] > lat)
+                    && lon < (lons[b] - lons[a]) * (lat - lats[a]) / (lats[b] - lats[a]) + lons[a]) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    @Benchmark
+    public Object compile() {
+        return new CompiledPolygon(lats, lons);
+    }
+
+    private int advance() {
+        next = (next + 1) & (POINTS - 1);
+        return next;
+    }
+}
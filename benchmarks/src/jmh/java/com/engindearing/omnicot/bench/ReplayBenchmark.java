@@ -0,0 +1,98 @@
+package com.engindearing.omnicot.bench;
+
+import com.engindearing.omnicot.remoteid.FrameRecorder;
+import com.engindearing.omnicot.remoteid.FrameReplayer;
+import com.engindearing.omnicot.remoteid.FrameSink;
+import com.engindearing.omnicot.remoteid.JsonFramer;
+import com.engindearing.omnicot.remoteid.RemoteIdData;
+import com.engindearing.omnicot.remoteid.RemoteIdParser;
+import com.engindearing.omnicot.remoteid.RemoteIdToCotConverter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A whole {@link FrameRecorder} capture replayed through framing, parsing and
+ * CoT conversion, the work the plugin does for a busy airfield before
+ * dispatch. Each sensor's frames go through their own {@link JsonFramer}, as
+ * they would on the sensor's link. One operation replays the capture once,
+ * as fast as possible.
+ *
+ * <p>Replays the capture named by the {@code omnicot.capture} system property
+ * ({@code -Preplay.capture=<file>}, see build.gradle), e.g. one recorded from
+ * the dashboard and pulled off the device. Without one, the corpus is
+ * recorded into a temporary capture spread over three sensors.
+ */
+@State(Scope.Thread)
+public class ReplayBenchmark {
+
+    private static final int SENSORS = 3;
+
+    private File capture;
+    private boolean temporary;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String path = System.getProperty("omnicot.capture");
+        if (path != null && !path.isEmpty()) {
+            capture = new File(path);
+            if (!capture.isFile()) {
+                throw new IOException("No capture at " + capture);
+            }
+            return;
+        }
+        capture = File.createTempFile("omnicot-replay", ".ocfr");
+        temporary = true;
+        List<String> frames = Corpus.frames();
+        long nanos = System.nanoTime();
+        try (FrameRecorder recorder = new FrameRecorder(capture)) {
+            for (int i = 0; i < frames.size(); i++) {
+                ByteBuffer frame = ByteBuffer.wrap(frames.get(i).getBytes(StandardCharsets.UTF_8));
+                // Timing is ignored at full speed, but keep it plausible
+                recorder.record("AA:BB:CC:DD:EE:0" + (i % SENSORS), frame, nanos + i * 10_000_000L);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (temporary) {
+            capture.delete();
+        }
+    }
+
+    @Benchmark
+    public long replayCapture(Blackhole bh) throws IOException {
+        final Map<String, JsonFramer> framers = new HashMap<>();
+        final JsonFramer.FrameHandler handler = frame -> {
+            Object result = RemoteIdParser.parseMessage(frame);
+            if (result instanceof RemoteIdData) {
+                bh.consume(RemoteIdToCotConverter.convertToCotEvents((RemoteIdData) result));
+            } else {
+                bh.consume(result);
+            }
+        };
+        FrameSink sink = (sensorId, frame) -> {
+            JsonFramer framer = framers.get(sensorId);
+            if (framer == null) {
+                framer = new JsonFramer();
+                framers.put(sensorId, framer);
+            }
+            framer.feed(frame, handler);
+        };
+        return new FrameReplayer(capture, sink, FrameReplayer.AS_FAST_AS_POSSIBLE).run();
+    }
+}
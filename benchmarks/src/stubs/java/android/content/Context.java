@@ -0,0 +1,52 @@
+package android.content;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * JVM stand-in for android.content.Context: a files directory and empty
+ * preferences
+ */
+public class Context {
+
+    public static final int MODE_PRIVATE = 0;
+
+    private final File filesDir;
+
+    public Context(File filesDir) {
+        this.filesDir = filesDir;
+    }
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public File getFilesDir() {
+        return filesDir;
+    }
+
+    public SharedPreferences getSharedPreferences(String name, int mode) {
+        return new SharedPreferences() {
+            @Override
+            public Map<String, ?> getAll() {
+                return Collections.emptyMap();
+            }
+
+            @Override
+            public Editor edit() {
+                return new Editor() {
+                    @Override
+                    public Editor clear() {
+                        return this;
+                    }
+
+                    @Override
+                    public boolean commit() {
+                        return true;
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,19 @@
+package android.content;
+
+import java.util.Map;
+
+/**
+ * JVM stand-in for the parts of android.content.SharedPreferences the plugin
+ * uses
+ */
+public interface SharedPreferences {
+
+    interface Editor {
+        Editor clear();
+        boolean commit();
+    }
+
+    Map<String, ?> getAll();
+
+    Editor edit();
+}
@@ -0,0 +1,58 @@
+package com.atakmap.coremap.cot.event;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JVM stand-in for ATAK's CotDetail. Holds attributes and children the same
+ * way, so allocation figures stay representative.
+ */
+public class CotDetail {
+
+    private final String elementName;
+    private final Map<String, String> attributes = new HashMap<>();
+    private final List<CotDetail> children = new ArrayList<>();
+    private String innerText;
+
+    public CotDetail() {
+        this("detail");
+    }
+
+    public CotDetail(String elementName) {
+        this.elementName = elementName;
+    }
+
+    public String getElementName() {
+        return elementName;
+    }
+
+    public void setAttribute(String name, String value) {
+        attributes.put(name, value);
+    }
+
+    public String getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    public void addChild(CotDetail child) {
+        children.add(child);
+    }
+
+    public int childCount() {
+        return children.size();
+    }
+
+    public CotDetail getChild(int index) {
+        return children.get(index);
+    }
+
+    public void setInnerText(String innerText) {
+        this.innerText = innerText;
+    }
+
+    public String getInnerText() {
+        return innerText;
+    }
+}
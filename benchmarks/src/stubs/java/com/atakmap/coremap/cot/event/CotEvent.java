@@ -0,0 +1,82 @@
+package com.atakmap.coremap.cot.event;
+
+import com.atakmap.coremap.maps.time.CoordinatedTime;
+
+/**
+ * JVM stand-in for ATAK's CotEvent
+ */
+public class CotEvent {
+
+    private String uid;
+    private String type;
+    private String how;
+    private CoordinatedTime time;
+    private CoordinatedTime start;
+    private CoordinatedTime stale;
+    private CotPoint point;
+    private CotDetail detail;
+
+    public String getUID() {
+        return uid;
+    }
+
+    public void setUID(String uid) {
+        this.uid = uid;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getHow() {
+        return how;
+    }
+
+    public void setHow(String how) {
+        this.how = how;
+    }
+
+    public CoordinatedTime getTime() {
+        return time;
+    }
+
+    public void setTime(CoordinatedTime time) {
+        this.time = time;
+    }
+
+    public CoordinatedTime getStart() {
+        return start;
+    }
+
+    public void setStart(CoordinatedTime start) {
+        this.start = start;
+    }
+
+    public CoordinatedTime getStale() {
+        return stale;
+    }
+
+    public void setStale(CoordinatedTime stale) {
+        this.stale = stale;
+    }
+
+    public CotPoint getCotPoint() {
+        return point;
+    }
+
+    public void setPoint(CotPoint point) {
+        this.point = point;
+    }
+
+    public CotDetail getDetail() {
+        return detail;
+    }
+
+    public void setDetail(CotDetail detail) {
+        this.detail = detail;
+    }
+}
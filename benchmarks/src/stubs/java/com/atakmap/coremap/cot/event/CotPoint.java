@@ -0,0 +1,31 @@
+package com.atakmap.coremap.cot.event;
+
+import com.atakmap.coremap.maps.coords.GeoPoint;
+
+/**
+ * JVM stand-in for ATAK's CotPoint
+ */
+public class CotPoint {
+
+    private final double lat;
+    private final double lon;
+    private final double hae;
+
+    public CotPoint(GeoPoint point) {
+        this.lat = point.getLatitude();
+        this.lon = point.getLongitude();
+        this.hae = point.getAltitude();
+    }
+
+    public double getLat() {
+        return lat;
+    }
+
+    public double getLon() {
+        return lon;
+    }
+
+    public double getHae() {
+        return hae;
+    }
+}
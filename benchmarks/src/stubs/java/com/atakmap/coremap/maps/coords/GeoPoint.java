@@ -0,0 +1,40 @@
+package com.atakmap.coremap.maps.coords;
+
+/**
+ * JVM stand-in for ATAK's GeoPoint
+ */
+public class GeoPoint {
+
+    public enum AltitudeReference {
+        HAE,
+        AGL
+    }
+
+    private final double latitude;
+    private final double longitude;
+    private final double altitude;
+    private final AltitudeReference altitudeReference;
+
+    public GeoPoint(double latitude, double longitude, double altitude, AltitudeReference altitudeReference) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.altitude = altitude;
+        this.altitudeReference = altitudeReference;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public double getAltitude() {
+        return altitude;
+    }
+
+    public AltitudeReference getAltitudeReference() {
+        return altitudeReference;
+    }
+}
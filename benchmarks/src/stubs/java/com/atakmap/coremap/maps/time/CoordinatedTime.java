@@ -0,0 +1,21 @@
+package com.atakmap.coremap.maps.time;
+
+/**
+ * JVM stand-in for ATAK's CoordinatedTime
+ */
+public class CoordinatedTime {
+
+    private final long milliseconds;
+
+    public CoordinatedTime() {
+        this(System.currentTimeMillis());
+    }
+
+    public CoordinatedTime(long milliseconds) {
+        this.milliseconds = milliseconds;
+    }
+
+    public long getMilliseconds() {
+        return milliseconds;
+    }
+}